@@ -0,0 +1,99 @@
+package com.plasstech.lang.c.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.codegen.CodeEmission;
+import com.plasstech.lang.c.codegen.tacky.TackyCodeGen;
+import com.plasstech.lang.c.codegen.tacky.TackyToAsmCodeGen;
+import com.plasstech.lang.c.common.UniqueId;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * The inputs that benchmarks are parameterized by:
+ * <ul>
+ * <li>examples: every program in the examples directory that compiles (override the directory
+ * with -Dexamples.dir)
+ * <li>functions: thousands of small functions
+ * <li>nested: deeply nested blocks
+ * <li>expressions: long expression chains
+ * <li>scopes: thousands of globals, visible in deeply nested blocks
+ * <li>large: tens of thousands of small functions
+ * </ul>
+ */
+public class Inputs {
+  public static final String EXAMPLES = "examples";
+  public static final String FUNCTIONS = "functions";
+  public static final String NESTED = "nested";
+  public static final String EXPRESSIONS = "expressions";
+  public static final String SCOPES = "scopes";
+  public static final String LARGE = "large";
+
+  /** Returns the source of each translation unit of the given input. */
+  public static List<String> sources(String name) {
+    return switch (name) {
+      case EXAMPLES -> examples(Path.of(System.getProperty("examples.dir", "examples")));
+      case FUNCTIONS -> ImmutableList.of(SyntheticPrograms.manyFunctions(2000));
+      case NESTED -> ImmutableList.of(SyntheticPrograms.nestedBlocks(200));
+      case EXPRESSIONS -> ImmutableList.of(SyntheticPrograms.expressionChains(100, 200));
+      case SCOPES -> ImmutableList.of(SyntheticPrograms.globalsAndNestedBlocks(10000, 1000));
+      case LARGE -> ImmutableList.of(SyntheticPrograms.manyFunctions(20000));
+      default -> throw new IllegalArgumentException("Unknown input " + name);
+    };
+  }
+
+  private static List<String> examples(Path dir) {
+    try (Stream<Path> files = Files.list(dir)) {
+      List<String> sources = files.filter(path -> path.toString().endsWith(".c"))
+          .sorted()
+          .map(Inputs::read)
+          .filter(Inputs::compiles)
+          .collect(ImmutableList.toImmutableList());
+      if (sources.isEmpty()) {
+        throw new IllegalStateException("No compilable examples in " + dir.toAbsolutePath());
+      }
+      return sources;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not list " + dir.toAbsolutePath(), e);
+    }
+  }
+
+  private static String read(Path path) {
+    try {
+      return Files.readString(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read " + path, e);
+    }
+  }
+
+  /**
+   * Returns if the source compiles all the way to assembly language. Some examples are meant to
+   * fail, and some need the preprocessor.
+   */
+  private static boolean compiles(String source) {
+    try {
+      UniqueId.withFreshIds(() -> {
+        SymbolTable symbolTable = new SymbolTable();
+        Program program = new Parser(new Scanner(source)).parse();
+        program = new SemanticAnalyzer(symbolTable).validate(program);
+        new CodeEmission(symbolTable).generate(new TackyToAsmCodeGen(symbolTable)
+            .generate(new TackyCodeGen(symbolTable).generate(program)).program(),
+            Writer.nullWriter());
+        return null;
+      });
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.plasstech.lang.c.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of every phase, with the GC profiler, so that the results include the
+ * allocation rate ("gc.alloc.rate.norm" is bytes per operation) as well as the throughput. Takes
+ * the same arguments as the JMH main, e.g., a regular expression to select benchmarks; with none,
+ * runs them all.
+ */
+public class RunBenchmarks {
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    new Runner(new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+}
@@ -0,0 +1,91 @@
+package com.plasstech.lang.c.bench;
+
+/** Generates large C programs for benchmarks. */
+public class SyntheticPrograms {
+  /**
+   * Returns a program with the given number of functions, each of which does a little arithmetic,
+   * branching and looping.
+   */
+  public static String manyFunctions(int count) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("long total = 0;\n");
+    for (int i = 0; i < count; ++i) {
+      sb.append(String.format("""
+          int f%d(int a, int b) {
+            int c = a * %d + b / 3 - (a %% 7);
+            long d = c * 2l;
+            for (int i = 0; i < b; i = i + 1) {
+              if (i > a && c != 0) c = c - 1; else c = c + i;
+            }
+            total = total + d;
+            return a < b ? c : -c;
+          }
+          """, i, i));
+    }
+    sb.append("int main(void) { return f0(1, 2); }\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a program whose main function has blocks nested to the given depth. Each block
+   * declares a variable that shadows the one in the enclosing block.
+   */
+  public static String nestedBlocks(int depth) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("int main(void) {\n  int x = 0;\n  int sum = 0;\n");
+    for (int i = 0; i < depth; ++i) {
+      sb.append(String.format("  {\n    int x = %d;\n    sum = sum + x;\n", i));
+      sb.append("    while (x > 100) { x = x - 1; if (x == 5) break; }\n");
+    }
+    for (int i = 0; i < depth; ++i) {
+      sb.append("  }\n");
+    }
+    sb.append("  return sum;\n}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a program with the given number of global variables, and a main function with blocks
+   * nested to the given depth. Each block declares a variable, and uses some of the globals.
+   */
+  public static String globalsAndNestedBlocks(int globals, int depth) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < globals; ++i) {
+      sb.append(String.format("int g%d = %d;\n", i, i));
+    }
+    sb.append("int main(void) {\n  int sum = 0;\n");
+    for (int i = 0; i < depth; ++i) {
+      sb.append(String.format("  {\n    int x%d = g%d;\n    sum = sum + x%d + g%d;\n", i,
+          i % globals, i, (i * 7) % globals));
+    }
+    for (int i = 0; i < depth; ++i) {
+      sb.append("  }\n");
+    }
+    sb.append("  return sum;\n}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a program with the given number of functions, each of which returns a chain of binary
+   * operations with the given number of terms.
+   */
+  public static String expressionChains(int count, int terms) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; ++i) {
+      sb.append(String.format("long g%d(long a, int b) {\n  return a", i));
+      for (int j = 0; j < terms; ++j) {
+        String op = switch (j % 5) {
+          case 0 -> " + b * ";
+          case 1 -> " - a / ";
+          case 2 -> " * ";
+          case 3 -> " + (b % 7) * ";
+          default -> " - ";
+        };
+        sb.append(op).append(j + 1);
+      }
+      sb.append(";\n}\n");
+    }
+    sb.append("int main(void) { return g0(1l, 2); }\n");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,83 @@
+package com.plasstech.lang.c.codegen;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.plasstech.lang.c.bench.Inputs;
+import com.plasstech.lang.c.codegen.tacky.TackyCodeGen;
+import com.plasstech.lang.c.codegen.tacky.TackyToAsmCodeGen;
+import com.plasstech.lang.c.common.UniqueId;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * Measures how fast CodeEmission turns an AsmProgram into text. The "instructions" counter is the
+ * emission throughput in instructions per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeEmissionBenchmark {
+  private record Unit(SymbolTable symbolTable, AsmProgram program) {}
+
+  @Param({Inputs.EXAMPLES, Inputs.FUNCTIONS, Inputs.NESTED, Inputs.EXPRESSIONS})
+  public String input;
+
+  private final List<Unit> units = new ArrayList<>();
+  private int instructionCount;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    for (String source : Inputs.sources(input)) {
+      SymbolTable symbolTable = new SymbolTable();
+      AsmProgram asmProgram = UniqueId.withFreshIds(() -> {
+        Program program = new Parser(new Scanner(source)).parse();
+        program = new SemanticAnalyzer(symbolTable).validate(program);
+        return new TackyToAsmCodeGen(symbolTable)
+            .generate(new TackyCodeGen(symbolTable).generate(program)).program();
+      });
+      units.add(new Unit(symbolTable, asmProgram));
+      for (AsmTopLevel topLevel : asmProgram.topLevelNodes()) {
+        if (topLevel instanceof AsmFunction fn) {
+          instructionCount += fn.instructions().size();
+        }
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long instructions;
+  }
+
+  @Benchmark
+  public void emit(Counters counters) {
+    for (Unit unit : units) {
+      new CodeEmission(unit.symbolTable()).generate(unit.program(), Writer.nullWriter());
+    }
+    counters.instructions += instructionCount;
+  }
+}
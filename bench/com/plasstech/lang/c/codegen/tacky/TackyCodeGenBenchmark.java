@@ -0,0 +1,62 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.plasstech.lang.c.bench.Inputs;
+import com.plasstech.lang.c.common.UniqueId;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/** Measures TackyCodeGen.generate over each (validated) input. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TackyCodeGenBenchmark {
+  private record Unit(SymbolTable symbolTable, Program program) {}
+
+  @Param({Inputs.EXAMPLES, Inputs.FUNCTIONS, Inputs.NESTED, Inputs.EXPRESSIONS})
+  public String input;
+
+  private final List<Unit> units = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    for (String source : Inputs.sources(input)) {
+      SymbolTable symbolTable = new SymbolTable();
+      Program program = new Parser(new Scanner(source)).parse();
+      units.add(new Unit(symbolTable, UniqueId.withFreshIds(
+          () -> new SemanticAnalyzer(symbolTable).validate(program))));
+    }
+  }
+
+  @Benchmark
+  public void generate(Blackhole bh) {
+    for (Unit unit : units) {
+      // Fresh ids, so that each run adds the same temporaries to the symbol table.
+      bh.consume(UniqueId.withFreshIds(
+          () -> new TackyCodeGen(unit.symbolTable()).generate(unit.program())));
+    }
+  }
+}
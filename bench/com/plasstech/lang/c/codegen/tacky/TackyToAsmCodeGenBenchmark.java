@@ -0,0 +1,75 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.plasstech.lang.c.bench.Inputs;
+import com.plasstech.lang.c.common.PhaseTimer;
+import com.plasstech.lang.c.common.UniqueId;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/** Measures TackyToAsmCodeGen.generate over the TACKY for each input, with each allocator. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TackyToAsmCodeGenBenchmark {
+  private record Unit(SymbolTable symbolTable, TackyProgram program) {}
+
+  @Param({Inputs.EXAMPLES, Inputs.FUNCTIONS, Inputs.NESTED, Inputs.EXPRESSIONS})
+  public String input;
+
+  @Param({"none", "linear", "coloring"})
+  public String allocator;
+
+  private final List<Unit> units = new ArrayList<>();
+  private RegisterAllocator registerAllocator;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    registerAllocator = switch (allocator) {
+      case "linear" -> new LinearScanAllocator();
+      case "coloring" -> new GraphColoringAllocator();
+      default -> RegisterAllocator.NONE;
+    };
+    for (String source : Inputs.sources(input)) {
+      SymbolTable symbolTable = new SymbolTable();
+      TackyProgram program = UniqueId.withFreshIds(() -> {
+        Program validated =
+            new SemanticAnalyzer(symbolTable).validate(new Parser(new Scanner(source)).parse());
+        return new TackyCodeGen(symbolTable).generate(validated);
+      });
+      units.add(new Unit(symbolTable, program));
+    }
+  }
+
+  @Benchmark
+  public void generate(Blackhole bh) {
+    for (Unit unit : units) {
+      bh.consume(UniqueId.withFreshIds(
+          () -> new TackyToAsmCodeGen(unit.symbolTable(), PhaseTimer.NONE, registerAllocator)
+              .generate(unit.program())));
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.plasstech.lang.c.lex;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.plasstech.lang.c.bench.Inputs;
+
+/**
+ * Measures Scanner.nextToken and Scanner.scanAll over each input. Besides the number of scans per
+ * second, reports the lexing rate in MB of source per second, e.g., as "scan:megabytes".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+  @Param({Inputs.EXAMPLES, Inputs.FUNCTIONS, Inputs.NESTED, Inputs.EXPRESSIONS})
+  public String input;
+
+  private List<String> sources;
+  private double megabytes;
+
+  /** Counts the source scanned, which JMH reports as a rate. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      megabytes = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    sources = Inputs.sources(input);
+    // The sources are ASCII, so each char is a byte.
+    megabytes = sources.stream().mapToLong(String::length).sum() / 1e6;
+  }
+
+  @Benchmark
+  public int scan(Counters counters) {
+    counters.megabytes += megabytes;
+    int tokens = 0;
+    for (String source : sources) {
+      Scanner scanner = new Scanner(source);
+      while (scanner.nextToken().type() != TokenType.EOF) {
+        tokens++;
+      }
+    }
+    return tokens;
+  }
+
+  @Benchmark
+  public int scanAll(Counters counters) {
+    counters.megabytes += megabytes;
+    int tokens = 0;
+    for (String source : sources) {
+      tokens += new Scanner(source).scanAll().size();
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,60 @@
+package com.plasstech.lang.c.parser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.plasstech.lang.c.bench.Inputs;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.lex.TokenArray;
+
+/**
+ * Measures Parser.parse over each input, both including scanning, and on tokens that were scanned
+ * ahead of time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+  @Param({Inputs.EXAMPLES, Inputs.FUNCTIONS, Inputs.NESTED, Inputs.EXPRESSIONS, Inputs.LARGE})
+  public String input;
+
+  private List<String> sources;
+  private List<TokenArray> tokens;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    sources = Inputs.sources(input);
+    tokens = sources.stream().map(source -> new Scanner(source).scanAll()).toList();
+  }
+
+  @Benchmark
+  public void parse(Blackhole bh) {
+    for (String source : sources) {
+      bh.consume(new Parser(new Scanner(source)).parse());
+    }
+  }
+
+  @Benchmark
+  public void parseTokens(Blackhole bh) {
+    for (TokenArray unit : tokens) {
+      bh.consume(new Parser(unit).parse());
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.plasstech.lang.c.typecheck;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.plasstech.lang.c.bench.Inputs;
+import com.plasstech.lang.c.common.UniqueId;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+
+/**
+ * Measures each Validator of the semantic analyzer separately, each given the output of the
+ * previous one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// The validators recurse once per nested block, and the scopes input nests them 1000 deep.
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+  @Param({Inputs.EXAMPLES, Inputs.FUNCTIONS, Inputs.NESTED, Inputs.EXPRESSIONS, Inputs.SCOPES})
+  public String input;
+
+  private final List<Program> parsed = new ArrayList<>();
+  private final List<Program> resolved = new ArrayList<>();
+  private final List<Program> labeled = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    for (String source : Inputs.sources(input)) {
+      Program program = new Parser(new Scanner(source)).parse();
+      parsed.add(program);
+      Program resolvedProgram = UniqueId.withFreshIds(() -> new Resolver().validate(program));
+      resolved.add(resolvedProgram);
+      labeled.add(UniqueId.withFreshIds(() -> new LoopLabeler().validate(resolvedProgram)));
+    }
+  }
+
+  @Benchmark
+  public void resolve(Blackhole bh) {
+    run(new Resolver(), parsed, bh);
+  }
+
+  @Benchmark
+  public void labelLoops(Blackhole bh) {
+    run(new LoopLabeler(), resolved, bh);
+  }
+
+  @Benchmark
+  public void typeCheck(Blackhole bh) {
+    for (Program program : labeled) {
+      bh.consume(new TypeChecker(new SymbolTable()).validate(program));
+    }
+  }
+
+  private static void run(Validator validator, List<Program> programs, Blackhole bh) {
+    for (Program program : programs) {
+      // Fresh ids, so that generated names don't get longer from run to run.
+      bh.consume(UniqueId.withFreshIds(() -> validator.validate(program)));
+    }
+  }
+}
@@ -0,0 +1,21 @@
+/* Sums the lengths of the Collatz sequences of the first million numbers. */
+long steps(long n) {
+  long count = 0;
+  while (n != 1) {
+    if (n % 2 == 0) {
+      n = n / 2;
+    } else {
+      n = 3 * n + 1;
+    }
+    count = count + 1;
+  }
+  return count;
+}
+
+int main(void) {
+  long total = 0;
+  for (long i = 1; i < 1000000; i = i + 1) {
+    total = total + steps(i);
+  }
+  return (int) (total % 256);
+}
@@ -0,0 +1,22 @@
+/* Sums gcd(a, b) over a grid of pairs, with a little extra arithmetic to keep values live. */
+int gcd(int a, int b) {
+  while (b != 0) {
+    int t = a % b;
+    a = b;
+    b = t;
+  }
+  return a;
+}
+
+int main(void) {
+  long sum = 0;
+  long weighted = 0;
+  for (int a = 1; a < 2000; a = a + 1) {
+    for (int b = 1; b < 2000; b = b + 1) {
+      int g = gcd(a, b);
+      sum = sum + g;
+      weighted = weighted + g * (a - b);
+    }
+  }
+  return (int) ((sum + weighted) % 256);
+}
@@ -17,7 +17,7 @@ public record AsmBinary(TokenType operator, AssemblyType type, Operand src, Oper
   }
 
   @Override
-  public final String toString() {
+  public void write(StringBuilder sb) {
     String instruction = switch (operator) {
       case MINUS -> "sub";
       case PLUS -> "add";
@@ -25,7 +25,14 @@ public record AsmBinary(TokenType operator, AssemblyType type, Operand src, Oper
       default -> throw new IllegalStateException("Bad binary operator " + operator.name());
     };
     // Suffix added page 270
-    return String.format("%s%s %s, %s", instruction, type.suffix(), src.toString(type()),
-        dst.toString(type()));
+    sb.append(instruction).append(type.suffix()).append(' ');
+    src.write(sb, type);
+    sb.append(", ");
+    dst.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
   }
 }
@@ -32,9 +32,21 @@ public interface AsmNode {
 
     R visit(Push op);
 
+    R visit(Pop op);
+
     R visit(Call op);
 
     R visit(Movsx op);
+
+    R visit(Shift op);
+
+    R visit(MulHigh op);
+
+    R visit(Test op);
+
+    R visit(Lea op);
+
+    R visit(Xor op);
   }
 
   <R> R accept(Visitor<R> visitor);
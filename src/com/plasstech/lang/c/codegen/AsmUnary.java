@@ -10,13 +10,19 @@ public record AsmUnary(TokenType operator, AssemblyType type, Operand operand)
   }
 
   @Override
-  public final String toString() {
+  public void write(StringBuilder sb) {
     String instruction = switch (operator()) {
       case MINUS -> "neg";
       case TWIDDLE -> "not";
       default -> throw new IllegalStateException("Bad unary operator " + operator());
     };
     // Suffix added page 270
-    return String.format("%s%s %s", instruction, type().suffix(), operand().toString(type()));
+    sb.append(instruction).append(type.suffix()).append(' ');
+    operand.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
   }
 }
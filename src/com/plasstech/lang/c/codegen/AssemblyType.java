@@ -6,13 +6,15 @@ import com.plasstech.lang.c.typecheck.Type;
  * Page 261.
  */
 public enum AssemblyType {
-  Longword("l"), // 4 bytes
-  Quadword("q"); // 8 bytes
+  Longword("l", 4),
+  Quadword("q", 8);
 
   private final String suffix;
+  private final int bytes;
 
-  AssemblyType(String suffix) {
+  AssemblyType(String suffix, int bytes) {
     this.suffix = suffix;
+    this.bytes = bytes;
   }
 
   public static AssemblyType from(Type type) {
@@ -28,4 +30,8 @@ public enum AssemblyType {
   public String suffix() {
     return suffix;
   }
+
+  public int bytes() {
+    return bytes;
+  }
 }
@@ -6,6 +6,11 @@ public record Cdq(AssemblyType type) implements Instruction {
     return visitor.visit(this);
   }
 
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append(toString());
+  }
+
   @Override
   public final String toString() {
     return switch (type()) {
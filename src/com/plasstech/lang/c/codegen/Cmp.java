@@ -7,9 +7,16 @@ public record Cmp(AssemblyType type, Operand left, Operand right) implements Ins
   }
 
   @Override
-  public final String toString() {
+  public void write(StringBuilder sb) {
     // Page 89
-    return String.format("cmp%s %s, %s", type().suffix(), left().toString(type()),
-        right().toString(type()));
+    sb.append("cmp").append(type.suffix()).append(' ');
+    left.write(sb, type);
+    sb.append(", ");
+    right.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
   }
 }
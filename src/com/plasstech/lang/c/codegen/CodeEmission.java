@@ -1,8 +1,12 @@
 package com.plasstech.lang.c.codegen;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.List;
 
+import com.google.common.base.Splitter;
 import com.plasstech.lang.c.typecheck.Symbol;
 import com.plasstech.lang.c.typecheck.SymbolTable;
 
@@ -11,39 +15,83 @@ import com.plasstech.lang.c.typecheck.SymbolTable;
  * <p>
  * Input: AsmProgramNode (ASM AST)
  * <p>
- * Output: List<String> Assembly language text
+ * Output: Assembly language text, written to a Writer, one function at a time.
  */
 public class CodeEmission implements AsmNode.Visitor<Void> {
   private final SymbolTable symbolTable;
-  private final List<String> emitted = new ArrayList<>();
+  // Each top-level node is built here, then written in one go. Reused, so that emitting an
+  // instruction doesn't allocate.
+  private final StringBuilder sb = new StringBuilder();
+  private char[] chars = new char[0];
+  private Writer out;
 
   public CodeEmission(SymbolTable symbolTable) {
     this.symbolTable = symbolTable;
   }
 
-  public List<String> generate(AsmProgram program) {
+  /**
+   * Writes the program to the given writer, flushing after each function, so that the text of the
+   * whole program is never in memory at once.
+   */
+  public void generate(AsmProgram program, Writer out) {
+    this.out = out;
     program.accept(this);
-    return emitted;
+    flush();
+  }
+
+  /** Returns the lines of the program. */
+  public List<String> generate(AsmProgram program) {
+    StringWriter sw = new StringWriter();
+    generate(program, sw);
+    return Splitter.on('\n').omitEmptyStrings().splitToList(sw.toString());
+  }
+
+  /** Writes (and clears) the builder. */
+  private void write() {
+    int length = sb.length();
+    if (chars.length < length) {
+      chars = new char[Math.max(length, 2 * chars.length)];
+    }
+    // Writer.append(CharSequence) would make a String copy of the builder.
+    sb.getChars(0, length, chars, 0);
+    sb.setLength(0);
+    try {
+      out.write(chars, 0, length);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write assembly language", e);
+    }
+  }
+
+  private void flush() {
+    write();
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write assembly language", e);
+    }
   }
 
   private Void emit(Instruction i) {
-    return emit(i.toString());
+    sb.append("  ");
+    i.write(sb);
+    sb.append('\n');
+    return null;
+  }
+
+  /** Starts an indented line and returns the builder, to append the rest of the line to. */
+  private StringBuilder indent() {
+    return sb.append("  ");
   }
 
-  private Void emit(String pattern, Object... params) {
-    emit0("  " + pattern, params);
+  private Void emit(String line) {
+    indent().append(line).append('\n');
     return null;
   }
 
-  private void emit0(String pattern, Object... params) {
-    if (params != null && params.length > 0) {
-      emitted.add(String.format(pattern, params));
-    } else {
-      emitted.add(pattern);
-    }
+  private void emitLabel(String name) {
+    sb.append(name).append(":\n");
   }
 
-  // Maybe these methods should return List<String>?
   @Override
   public Void visit(AsmProgram n) {
     n.topLevelNodes().forEach(fn -> fn.accept(this));
@@ -53,35 +101,38 @@ public class CodeEmission implements AsmNode.Visitor<Void> {
   @Override
   public Void visit(AsmFunction n) {
     if (n.global()) {
-      emit(".globl %s", n.name());
+      indent().append(".globl ").append(n.name()).append('\n');
     }
     emit(".text");
-    emit0("%s:", n.name());
+    emitLabel(n.name());
     emit("pushq %rbp");
     emit("movq %rsp, %rbp");
     for (Instruction i : n.instructions()) {
       i.accept(this);
     }
+    flush();
     return null;
   }
 
   @Override
   public Void visit(AsmStaticVariable n) {
     if (n.global()) {
-      emit(".globl %s", n.name());
+      indent().append(".globl ").append(n.name()).append('\n');
     }
     if (n.init().valueAsLong() == 0) {
       emit(".bss");
     } else {
       emit(".data");
     }
-    emit(".align %d", n.alignment());
-    emit0("%s:", n.name());
+    indent().append(".align ").append(n.alignment()).append('\n');
+    emitLabel(n.name());
     if (n.init().valueAsLong() == 0) {
-      emit(".zero %d", n.init().bytes());
+      indent().append(".zero ").append(n.init().bytes()).append('\n');
     } else {
-      emit(".%s %d", n.init().name(), n.init().valueAsLong());
+      indent().append('.').append(n.init().name()).append(' ').append(n.init().valueAsLong())
+          .append('\n');
     }
+    write();
     return null;
   }
 
@@ -148,11 +199,20 @@ public class CodeEmission implements AsmNode.Visitor<Void> {
     return emit(n);
   }
 
+  @Override
+  public Void visit(Pop n) {
+    return emit(n);
+  }
+
   @Override
   public Void visit(Call n) {
     Symbol s = symbolTable.get(n.identifier());
     boolean external = s != null && !s.attribute().defined();
-    emit("call %s%s", n.identifier(), external ? "@PLT" : "");
+    indent().append("call ").append(n.identifier());
+    if (external) {
+      sb.append("@PLT");
+    }
+    sb.append('\n');
     return null;
   }
 
@@ -160,4 +220,29 @@ public class CodeEmission implements AsmNode.Visitor<Void> {
   public Void visit(Movsx n) {
     return emit(n);
   }
+
+  @Override
+  public Void visit(Shift n) {
+    return emit(n);
+  }
+
+  @Override
+  public Void visit(MulHigh n) {
+    return emit(n);
+  }
+
+  @Override
+  public Void visit(Test n) {
+    return emit(n);
+  }
+
+  @Override
+  public Void visit(Lea n) {
+    return emit(n);
+  }
+
+  @Override
+  public Void visit(Xor n) {
+    return emit(n);
+  }
 }
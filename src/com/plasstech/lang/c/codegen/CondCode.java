@@ -12,7 +12,18 @@ public enum CondCode {
   G,
   GE,
   L,
-  LE;
+  LE,
+  // Unsigned: above and below.
+  A,
+  AE,
+  B,
+  BE;
+
+  private final String suffix;
+
+  CondCode() {
+    this.suffix = name().toLowerCase();
+  }
 
   private static final Map<TokenType, CondCode> FROM_TOKEN_TYPE = ImmutableMap.of(
       TokenType.EQEQ, E,
@@ -22,7 +33,41 @@ public enum CondCode {
       TokenType.LT, L,
       TokenType.LEQ, LE);
 
+  private static final Map<TokenType, CondCode> FROM_UNSIGNED_TOKEN_TYPE = ImmutableMap.of(
+      TokenType.EQEQ, E,
+      TokenType.NEQ, NE,
+      TokenType.GT, A,
+      TokenType.GEQ, AE,
+      TokenType.LT, B,
+      TokenType.LEQ, BE);
+
   public static CondCode from(TokenType operator) {
     return FROM_TOKEN_TYPE.get(operator);
   }
+
+  /** The code for comparing operands of a signed or unsigned type with the operator. */
+  public static CondCode from(TokenType operator, boolean signed) {
+    return signed ? FROM_TOKEN_TYPE.get(operator) : FROM_UNSIGNED_TOKEN_TYPE.get(operator);
+  }
+
+  /** The code that's true when this one is false. */
+  public CondCode negate() {
+    return switch (this) {
+      case E -> NE;
+      case NE -> E;
+      case G -> LE;
+      case GE -> L;
+      case L -> GE;
+      case LE -> G;
+      case A -> BE;
+      case AE -> B;
+      case B -> AE;
+      case BE -> A;
+    };
+  }
+
+  /** The suffix for jcc and setcc instructions, e.g., "ne". */
+  public String suffix() {
+    return suffix;
+  }
 }
@@ -9,6 +9,11 @@ public record Data(String identifier) implements Operand {
     return String.format("%s(%%rip)", identifier);
   }
 
+  @Override
+  public void write(StringBuilder sb, int bytes) {
+    sb.append(identifier).append("(%rip)");
+  }
+
   @Override
   public boolean inMemory() {
     return true;
@@ -7,8 +7,14 @@ public record Idiv(AssemblyType type, Operand operand) implements Instruction {
     return visitor.visit(this);
   }
 
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("idiv").append(type.suffix()).append(' ');
+    operand.write(sb, type);
+  }
+
   @Override
   public final String toString() {
-    return String.format("idiv%s %s", type().suffix(), operand().toString(type()));
+    return Instruction.format(this);
   }
 }
@@ -6,6 +6,11 @@ public record Imm(long value) implements Operand {
     return String.format("$%s", value);
   }
 
+  @Override
+  public void write(StringBuilder sb, int bytes) {
+    sb.append('$').append(value);
+  }
+
   @Override
   public boolean inMemory() {
     return false;
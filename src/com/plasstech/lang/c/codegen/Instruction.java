@@ -1,3 +1,19 @@
 package com.plasstech.lang.c.codegen;
 
-public interface Instruction extends AsmNode {}
+public interface Instruction extends AsmNode {
+  /**
+   * Appends the assembly language for this instruction to the given builder. Implementations
+   * append piece by piece, instead of formatting a string, because code emission calls this for
+   * every instruction of the program.
+   */
+  default void write(StringBuilder sb) {
+    sb.append(toString());
+  }
+
+  /** Returns the assembly language for the given instruction, for toString. */
+  static String format(Instruction instruction) {
+    StringBuilder sb = new StringBuilder();
+    instruction.write(sb);
+    return sb.toString();
+  }
+}
@@ -7,8 +7,13 @@ public record Jmp(String label) implements Instruction {
   }
 
   @Override
-  public final String toString() {
+  public void write(StringBuilder sb) {
     // Page 89
-    return String.format("jmp .L%s", label());
+    sb.append("jmp .L").append(label);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
   }
 }
@@ -7,8 +7,13 @@ public record JmpCC(CondCode cc, String label) implements Instruction {
   }
 
   @Override
-  public final String toString() {
+  public void write(StringBuilder sb) {
     // Page 89
-    return String.format("j%s .L%s", cc().name().toLowerCase(), label());
+    sb.append('j').append(cc.suffix()).append(" .L").append(label);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
   }
 }
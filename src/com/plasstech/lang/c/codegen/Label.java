@@ -7,8 +7,13 @@ public record Label(String label) implements Instruction {
   }
 
   @Override
-  public String toString() {
+  public void write(StringBuilder sb) {
     // Page 89
-    return String.format(".L%s:", label());
+    sb.append(".L").append(label).append(':');
+  }
+
+  @Override
+  public String toString() {
+    return Instruction.format(this);
   }
 }
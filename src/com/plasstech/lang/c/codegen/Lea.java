@@ -0,0 +1,43 @@
+package com.plasstech.lang.c.codegen;
+
+/**
+ * Load effective address: dst = base + index * scale + displacement, without changing the flags or
+ * the operands, e.g.,
+ * <p>
+ * leal 4(%rax,%rcx,2), %edx
+ * <p>
+ * The index is null if there isn't one. The base and index must end up in registers; FixupVisitor
+ * turns it back into a mov and an add (or imul) if they don't.
+ */
+public record Lea(AssemblyType type, Operand base, Operand index, int scale, long displacement,
+    Operand dst) implements Instruction {
+  @Override
+  public <R> R accept(Visitor<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("lea").append(type.suffix()).append(' ');
+    if (displacement != 0) {
+      sb.append(displacement);
+    }
+    // Addresses are always 64 bits.
+    sb.append('(');
+    base.write(sb, AssemblyType.Quadword);
+    if (index != null) {
+      sb.append(", ");
+      index.write(sb, AssemblyType.Quadword);
+      if (scale != 1) {
+        sb.append(", ").append(scale);
+      }
+    }
+    sb.append("), ");
+    dst.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
+  }
+}
@@ -6,9 +6,16 @@ public record Mov(AssemblyType type, Operand src, Operand dst) implements Instru
     return visitor.visit(this);
   }
 
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("mov").append(type.suffix()).append(' ');
+    src.write(sb, type);
+    sb.append(", ");
+    dst.write(sb, type);
+  }
+
   @Override
   public String toString() {
-    return String.format("mov%s %s, %s", type().suffix(), src().toString(type()),
-        dst().toString(type()));
+    return Instruction.format(this);
   }
 }
@@ -8,10 +8,16 @@ public record Movsx(Operand src, Operand dst) implements Instruction {
   }
 
   @Override
-  public final String toString() {
+  public void write(StringBuilder sb) {
     // Page 270
-    return String.format("movslq %s, %s",
-        src().toString(AssemblyType.Longword),
-        dst().toString(AssemblyType.Quadword));
+    sb.append("movslq ");
+    src.write(sb, AssemblyType.Longword);
+    sb.append(", ");
+    dst.write(sb, AssemblyType.Quadword);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
   }
 }
@@ -0,0 +1,23 @@
+package com.plasstech.lang.c.codegen;
+
+/**
+ * One-operand multiply: rdx:rax = rax * operand, i.e., the high half of the product is in rdx.
+ * Signed is imul, unsigned is mul.
+ */
+public record MulHigh(AssemblyType type, boolean signed, Operand operand) implements Instruction {
+  @Override
+  public <R> R accept(Visitor<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append(signed ? "imul" : "mul").append(type.suffix()).append(' ');
+    operand.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
+  }
+}
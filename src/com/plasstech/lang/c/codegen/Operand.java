@@ -13,4 +13,13 @@ public interface Operand {
       case Quadword -> toString(8);
     };
   }
+
+  /** Appends this operand, as an operand of the given size in bytes, to the given builder. */
+  default void write(StringBuilder sb, int bytes) {
+    sb.append(toString(bytes));
+  }
+
+  default void write(StringBuilder sb, AssemblyType type) {
+    write(sb, type.bytes());
+  }
 }
@@ -0,0 +1,20 @@
+package com.plasstech.lang.c.codegen;
+
+/** Pops a (callee-saved) register, before returning. */
+public record Pop(RegisterOperand register) implements Instruction {
+  @Override
+  public <R> R accept(Visitor<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("popq ");
+    register.write(sb, 8);
+  }
+
+  @Override
+  public String toString() {
+    return Instruction.format(this);
+  }
+}
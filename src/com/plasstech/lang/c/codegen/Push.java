@@ -6,8 +6,14 @@ public record Push(Operand operand) implements Instruction {
     return visitor.visit(this);
   }
 
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("pushq ");
+    operand.write(sb, 8);
+  }
+
   @Override
   public String toString() {
-    return String.format("pushq %s", operand().toString(8));
+    return Instruction.format(this);
   }
 }
@@ -8,6 +8,7 @@ public record RegisterOperand(Register register) implements Operand {
   private enum Register {
     RSP("rsp", "rsp"),
     RAX("al", "eax"),
+    RBX("bl", "ebx"),
     RCX("cl", "ecx"),
     RDX("dl", "edx"),
     RDI("dil", "edi"),
@@ -15,14 +16,20 @@ public record RegisterOperand(Register register) implements Operand {
     R8("r8b", "r8d"),
     R9("r9b", "r9d"),
     R10("r10b", "r10d"),
-    R11("r11b", "r11d");
+    R11("r11b", "r11d"),
+    R12("r12b", "r12d"),
+    R13("r13b", "r13d"),
+    R14("r14b", "r14d"),
+    R15("r15b", "r15d");
 
     private final String string1;
     private final String string4;
+    private final String string8;
 
     Register(String string1, String string4) {
       this.string1 = string1;
       this.string4 = string4;
+      this.string8 = name();
     }
 
     String toString(int bytes) {
@@ -33,11 +40,12 @@ public record RegisterOperand(Register register) implements Operand {
         return string4;
       }
       // 8 bytes
-      return name();
+      return string8;
     }
   }
 
   public static RegisterOperand RAX = new RegisterOperand(Register.RAX);
+  public static RegisterOperand RBX = new RegisterOperand(Register.RBX);
   public static RegisterOperand RCX = new RegisterOperand(Register.RCX);
   public static RegisterOperand RDX = new RegisterOperand(Register.RDX);
   public static RegisterOperand RDI = new RegisterOperand(Register.RDI);
@@ -46,11 +54,27 @@ public record RegisterOperand(Register register) implements Operand {
   public static RegisterOperand R9 = new RegisterOperand(Register.R9);
   public static RegisterOperand R10 = new RegisterOperand(Register.R10);
   public static RegisterOperand R11 = new RegisterOperand(Register.R11);
+  public static RegisterOperand R12 = new RegisterOperand(Register.R12);
+  public static RegisterOperand R13 = new RegisterOperand(Register.R13);
+  public static RegisterOperand R14 = new RegisterOperand(Register.R14);
+  public static RegisterOperand R15 = new RegisterOperand(Register.R15);
   public static RegisterOperand RSP = new RegisterOperand(Register.RSP);
 
   public static final List<RegisterOperand> ARG_REGISTERS = ImmutableList.of(
       RDI, RSI, RDX, RCX, R8, R9);
 
+  /** Registers that a function must restore before it returns. */
+  public static final List<RegisterOperand> CALLEE_SAVED = ImmutableList.of(
+      RBX, R12, R13, R14, R15);
+
+  /**
+   * Registers that the register allocator may assign: caller-saved first, so that callee-saved
+   * registers (which must be saved and restored) are only used when needed. R10 and R11 are
+   * reserved for fixing up instructions.
+   */
+  public static final List<RegisterOperand> ALLOCATABLE = ImmutableList.of(
+      RAX, RCX, RDX, RSI, RDI, R8, R9, RBX, R12, R13, R14, R15);
+
   @Override
   public String toString() {
     return "%" + register.toString(4);
@@ -61,6 +85,11 @@ public record RegisterOperand(Register register) implements Operand {
     return "%" + register.toString(bytes);
   }
 
+  @Override
+  public void write(StringBuilder sb, int bytes) {
+    sb.append('%').append(register.toString(bytes));
+  }
+
   @Override
   public boolean inMemory() {
     return false;
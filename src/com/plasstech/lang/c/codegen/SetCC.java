@@ -6,8 +6,14 @@ public record SetCC(CondCode cc, Operand dest) implements Instruction {
     return visitor.visit(this);
   }
 
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("set").append(cc.suffix()).append(' ');
+    dest.write(sb, 1);
+  }
+
   @Override
   public final String toString() {
-    return String.format("set%s %s", cc().name().toLowerCase(), dest().toString(1));
+    return Instruction.format(this);
   }
 }
@@ -0,0 +1,38 @@
+package com.plasstech.lang.c.codegen;
+
+/**
+ * Shift by a constant number of bits, e.g.,
+ * <p>
+ * sarl $3, %eax
+ */
+public record Shift(Operator operator, AssemblyType type, Imm count, Operand dst)
+    implements Instruction {
+  public enum Operator {
+    /** Shift left. */
+    SHL,
+    /** Arithmetic shift right: copies the sign bit in. */
+    SAR,
+    /** Logical shift right: shifts zeros in. */
+    SHR;
+
+    private final String mnemonic = name().toLowerCase();
+  }
+
+  @Override
+  public <R> R accept(Visitor<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append(operator.mnemonic).append(type.suffix()).append(' ');
+    count.write(sb, type);
+    sb.append(", ");
+    dst.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
+  }
+}
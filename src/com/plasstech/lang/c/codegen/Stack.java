@@ -6,6 +6,11 @@ public record Stack(int offset) implements Operand {
     return String.format("%d(%%rbp)", offset);
   }
 
+  @Override
+  public void write(StringBuilder sb, int bytes) {
+    sb.append(offset).append("(%rbp)");
+  }
+
   @Override
   public boolean inMemory() {
     return true;
@@ -0,0 +1,28 @@
+package com.plasstech.lang.c.codegen;
+
+/**
+ * Sets the flags from the bitwise and of the operands, e.g.,
+ * <p>
+ * testl %eax, %eax
+ * <p>
+ * which compares eax with zero, in fewer bytes than cmpl $0, %eax.
+ */
+public record Test(AssemblyType type, Operand left, Operand right) implements Instruction {
+  @Override
+  public <R> R accept(Visitor<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("test").append(type.suffix()).append(' ');
+    left.write(sb, type);
+    sb.append(", ");
+    right.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
+  }
+}
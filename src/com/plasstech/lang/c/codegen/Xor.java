@@ -0,0 +1,29 @@
+package com.plasstech.lang.c.codegen;
+
+/**
+ * Bitwise exclusive or, e.g.,
+ * <p>
+ * xorl %eax, %eax
+ * <p>
+ * which is how a register is set to zero: it's shorter than movl $0, %eax. Unlike mov, it changes
+ * the flags.
+ */
+public record Xor(AssemblyType type, Operand src, Operand dst) implements Instruction {
+  @Override
+  public <R> R accept(Visitor<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public void write(StringBuilder sb) {
+    sb.append("xor").append(type.suffix()).append(' ');
+    src.write(sb, type);
+    sb.append(", ");
+    dst.write(sb, type);
+  }
+
+  @Override
+  public final String toString() {
+    return Instruction.format(this);
+  }
+}
@@ -0,0 +1,387 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import com.plasstech.lang.c.codegen.AsmBinary;
+import com.plasstech.lang.c.codegen.AsmUnary;
+import com.plasstech.lang.c.codegen.Call;
+import com.plasstech.lang.c.codegen.Cdq;
+import com.plasstech.lang.c.codegen.Cmp;
+import com.plasstech.lang.c.codegen.Idiv;
+import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.Jmp;
+import com.plasstech.lang.c.codegen.JmpCC;
+import com.plasstech.lang.c.codegen.Label;
+import com.plasstech.lang.c.codegen.Lea;
+import com.plasstech.lang.c.codegen.Mov;
+import com.plasstech.lang.c.codegen.Movsx;
+import com.plasstech.lang.c.codegen.MulHigh;
+import com.plasstech.lang.c.codegen.Operand;
+import com.plasstech.lang.c.codegen.Pseudo;
+import com.plasstech.lang.c.codegen.Push;
+import com.plasstech.lang.c.codegen.RegisterOperand;
+import com.plasstech.lang.c.codegen.Ret;
+import com.plasstech.lang.c.codegen.SetCC;
+import com.plasstech.lang.c.codegen.Test;
+import com.plasstech.lang.c.codegen.Xor;
+import com.plasstech.lang.c.codegen.Shift;
+import com.plasstech.lang.c.typecheck.FunType;
+import com.plasstech.lang.c.typecheck.StaticAttr;
+import com.plasstech.lang.c.typecheck.Symbol;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * Liveness analysis of the asm instructions of one function, before pseudo-registers are replaced.
+ * <p>
+ * The "nodes" are the allocatable hardware registers (numbered as in
+ * RegisterOperand.ALLOCATABLE), followed by the non-static pseudo-registers. Static variables live
+ * in memory, and R10, R11 and RSP are never allocated, so they aren't nodes.
+ */
+class AsmLiveness {
+  private static final int REGISTERS = RegisterOperand.ALLOCATABLE.size();
+  private static final int[] CALLER_SAVED = callerSaved();
+
+  private final List<Instruction> instructions;
+  private final SymbolTable symbolTable;
+  private final Map<String, Integer> pseudoIndexes = new HashMap<>();
+  private final List<Pseudo> pseudos = new ArrayList<>();
+  private final int[][] uses;
+  private final int[][] defs;
+  // The start of each basic block, and the nodes that are live at its end.
+  private int[] starts;
+  private BitSet[] blockLiveOut;
+
+  AsmLiveness(List<Instruction> instructions, SymbolTable symbolTable) {
+    this.instructions = instructions;
+    this.symbolTable = symbolTable;
+    int size = instructions.size();
+    uses = new int[size][];
+    defs = new int[size][];
+    Nodes use = new Nodes();
+    Nodes def = new Nodes();
+    for (int i = 0; i < size; ++i) {
+      use.clear();
+      def.clear();
+      findUsesAndDefs(instructions.get(i), use, def);
+      uses[i] = use.toArray();
+      defs[i] = def.toArray();
+    }
+    computeLiveness();
+  }
+
+  private static int[] callerSaved() {
+    List<RegisterOperand> callerSaved = new ArrayList<>(RegisterOperand.ALLOCATABLE);
+    callerSaved.removeAll(RegisterOperand.CALLEE_SAVED);
+    return callerSaved.stream().mapToInt(RegisterOperand.ALLOCATABLE::indexOf).toArray();
+  }
+
+  /** The number of nodes (registers and pseudo-registers). */
+  int size() {
+    return REGISTERS + pseudos.size();
+  }
+
+  /** The number of hardware registers, which are the first nodes. */
+  static int registers() {
+    return REGISTERS;
+  }
+
+  /** Returns the pseudo-register of the given node, which must not be a register. */
+  Pseudo pseudo(int node) {
+    return pseudos.get(node - REGISTERS);
+  }
+
+  /** Returns the node of the given operand, or -1 if it isn't a node. */
+  int node(Operand operand) {
+    return switch (operand) {
+      case RegisterOperand ro -> RegisterOperand.ALLOCATABLE.indexOf(ro);
+      case Pseudo p -> pseudoIndexes.getOrDefault(p.identifier(), -1);
+      default -> -1;
+    };
+  }
+
+  int[] uses(int instruction) {
+    return uses[instruction];
+  }
+
+  int[] defs(int instruction) {
+    return defs[instruction];
+  }
+
+  /**
+   * Calls the consumer with the nodes that are live after each instruction, and the index of the
+   * instruction. Each block is walked backwards, and the set is reused, so it must not be kept.
+   */
+  void forEachLiveOut(ObjIntConsumer<BitSet> consumer) {
+    for (int b = 0; b < starts.length; ++b) {
+      BitSet live = (BitSet) blockLiveOut[b].clone();
+      for (int i = end(b) - 1; i >= starts[b]; --i) {
+        consumer.accept(live, i);
+        step(live, i);
+      }
+    }
+  }
+
+  /** Turns the live-out set of the given instruction into its live-in set. */
+  private void step(BitSet live, int instruction) {
+    for (int node : defs[instruction]) {
+      live.clear(node);
+    }
+    for (int node : uses[instruction]) {
+      live.set(node);
+    }
+  }
+
+  private int end(int block) {
+    return block + 1 < starts.length ? starts[block + 1] : instructions.size();
+  }
+
+  private void add(Operand operand, Nodes nodes) {
+    int node = switch (operand) {
+      case RegisterOperand ro -> RegisterOperand.ALLOCATABLE.indexOf(ro);
+      case Pseudo p -> pseudoNode(p);
+      default -> -1;
+    };
+    if (node >= 0) {
+      nodes.add(node);
+    }
+  }
+
+  private int pseudoNode(Pseudo p) {
+    Integer index = pseudoIndexes.get(p.identifier());
+    if (index == null) {
+      Symbol symbol = symbolTable.get(p.identifier());
+      if (symbol != null && symbol.attribute() instanceof StaticAttr) {
+        return -1;
+      }
+      index = REGISTERS + pseudos.size();
+      pseudoIndexes.put(p.identifier(), index);
+      pseudos.add(p);
+    }
+    return index;
+  }
+
+  private void findUsesAndDefs(Instruction instruction, Nodes use, Nodes def) {
+    switch (instruction) {
+      case Mov mov -> {
+        add(mov.src(), use);
+        add(mov.dst(), def);
+      }
+      case Movsx movsx -> {
+        add(movsx.src(), use);
+        add(movsx.dst(), def);
+      }
+      case AsmBinary binary -> {
+        add(binary.src(), use);
+        add(binary.dst(), use);
+        add(binary.dst(), def);
+      }
+      case AsmUnary unary -> {
+        add(unary.operand(), use);
+        add(unary.operand(), def);
+      }
+      case Cmp cmp -> {
+        add(cmp.left(), use);
+        add(cmp.right(), use);
+      }
+      case Test test -> {
+        add(test.left(), use);
+        add(test.right(), use);
+      }
+      case Lea lea -> {
+        add(lea.base(), use);
+        if (lea.index() != null) {
+          add(lea.index(), use);
+        }
+        add(lea.dst(), def);
+      }
+      case Xor xor -> {
+        add(xor.src(), use);
+        add(xor.dst(), use);
+        add(xor.dst(), def);
+      }
+      case SetCC setCC -> {
+        // Only sets the low byte, so the rest of the register is used.
+        add(setCC.dest(), use);
+        add(setCC.dest(), def);
+      }
+      case Idiv idiv -> {
+        add(idiv.operand(), use);
+        add(RegisterOperand.RAX, use);
+        add(RegisterOperand.RDX, use);
+        add(RegisterOperand.RAX, def);
+        add(RegisterOperand.RDX, def);
+      }
+      case Shift shift -> {
+        add(shift.dst(), use);
+        add(shift.dst(), def);
+      }
+      case MulHigh mulHigh -> {
+        add(mulHigh.operand(), use);
+        add(RegisterOperand.RAX, use);
+        add(RegisterOperand.RAX, def);
+        add(RegisterOperand.RDX, def);
+      }
+      case Cdq cdq -> {
+        add(RegisterOperand.RAX, use);
+        add(RegisterOperand.RDX, def);
+      }
+      case Push push -> add(push.operand(), use);
+      case Call call -> {
+        Symbol symbol = symbolTable.get(call.identifier());
+        if (symbol != null && symbol.type() instanceof FunType funType) {
+          int registerArgs = Math.min(RegisterOperand.ARG_REGISTERS.size(),
+              funType.paramTypes().size());
+          for (int i = 0; i < registerArgs; ++i) {
+            add(RegisterOperand.ARG_REGISTERS.get(i), use);
+          }
+        } else {
+          // Don't know how many arguments; assume all of them.
+          RegisterOperand.ARG_REGISTERS.forEach(register -> add(register, use));
+        }
+        for (int register : CALLER_SAVED) {
+          def.add(register);
+        }
+      }
+      case Ret ret -> add(RegisterOperand.RAX, use);
+      default -> {
+        // Jumps and labels don't use or define anything.
+      }
+    }
+  }
+
+  /** Computes the live-out set of each of the function's basic blocks. */
+  private void computeLiveness() {
+    int size = instructions.size();
+    Map<String, Integer> labels = new HashMap<>();
+    // Basic blocks start at labels and after jumps and returns.
+    int[] blockStarts = new int[size];
+    int blockCount = 0;
+    for (int i = 0; i < size; ++i) {
+      Instruction instruction = instructions.get(i);
+      if (instruction instanceof Label label) {
+        labels.put(label.label(), i);
+      }
+      if (i == 0 || instruction instanceof Label || endsBlock(instructions.get(i - 1))) {
+        blockStarts[blockCount++] = i;
+      }
+    }
+    starts = Arrays.copyOf(blockStarts, blockCount);
+    int[] blockOf = new int[size];
+    for (int b = 0; b < blockCount; ++b) {
+      for (int i = starts[b]; i < end(b); ++i) {
+        blockOf[i] = b;
+      }
+    }
+    int[][] successors = new int[blockCount][];
+    for (int b = 0; b < blockCount; ++b) {
+      int last = end(b) - 1;
+      int next = b + 1 < blockCount ? b + 1 : -1;
+      successors[b] = switch (instructions.get(last)) {
+        case Jmp jmp -> new int[] {blockOf[labels.get(jmp.label())]};
+        case JmpCC jmpCC when next >= 0 ->
+          new int[] {blockOf[labels.get(jmpCC.label())], next};
+        case JmpCC jmpCC -> new int[] {blockOf[labels.get(jmpCC.label())]};
+        case Ret ret -> new int[0];
+        default -> next >= 0 ? new int[] {next} : new int[0];
+      };
+    }
+
+    // What each block uses before defining it (gen), and what it defines (kill).
+    BitSet[] gen = new BitSet[blockCount];
+    BitSet[] kill = new BitSet[blockCount];
+    for (int b = 0; b < blockCount; ++b) {
+      gen[b] = new BitSet();
+      kill[b] = new BitSet();
+      for (int i = end(b) - 1; i >= starts[b]; --i) {
+        step(gen[b], i);
+        for (int node : defs[i]) {
+          kill[b].set(node);
+        }
+      }
+    }
+
+    List<List<Integer>> predecessors = new ArrayList<>(blockCount);
+    for (int b = 0; b < blockCount; ++b) {
+      predecessors.add(new ArrayList<>(2));
+    }
+    for (int b = 0; b < blockCount; ++b) {
+      for (int successor : successors[b]) {
+        predecessors.get(successor).add(b);
+      }
+    }
+
+    // Iterate to a fixed point. Liveness flows backwards, so start at the end, and when a block's
+    // live-in set changes, revisit its predecessors.
+    BitSet[] blockLiveIn = new BitSet[blockCount];
+    blockLiveOut = new BitSet[blockCount];
+    for (int b = 0; b < blockCount; ++b) {
+      blockLiveIn[b] = new BitSet();
+      blockLiveOut[b] = new BitSet();
+    }
+    Deque<Integer> worklist = new ArrayDeque<>(blockCount);
+    BitSet queued = new BitSet(blockCount);
+    for (int b = blockCount - 1; b >= 0; --b) {
+      worklist.add(b);
+    }
+    queued.set(0, blockCount);
+    while (!worklist.isEmpty()) {
+      int b = worklist.poll();
+      queued.clear(b);
+      BitSet out = blockLiveOut[b];
+      for (int successor : successors[b]) {
+        out.or(blockLiveIn[successor]);
+      }
+      BitSet live = (BitSet) out.clone();
+      live.andNot(kill[b]);
+      live.or(gen[b]);
+      if (!live.equals(blockLiveIn[b])) {
+        blockLiveIn[b] = live;
+        for (int predecessor : predecessors.get(b)) {
+          if (!queued.get(predecessor)) {
+            queued.set(predecessor);
+            worklist.add(predecessor);
+          }
+        }
+      }
+    }
+  }
+
+  private static boolean endsBlock(Instruction instruction) {
+    return instruction instanceof Jmp || instruction instanceof JmpCC
+        || instruction instanceof Ret;
+  }
+
+  /** A small set of nodes, in the order they were added. */
+  private static class Nodes {
+    private int[] nodes = new int[16];
+    private int count;
+
+    void add(int node) {
+      for (int i = 0; i < count; ++i) {
+        if (nodes[i] == node) {
+          return;
+        }
+      }
+      if (count == nodes.length) {
+        nodes = Arrays.copyOf(nodes, count * 2);
+      }
+      nodes[count++] = node;
+    }
+
+    void clear() {
+      count = 0;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(nodes, count);
+    }
+  }
+}
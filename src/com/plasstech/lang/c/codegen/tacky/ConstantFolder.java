@@ -0,0 +1,262 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.typecheck.StaticAttr;
+import com.plasstech.lang.c.typecheck.Symbol;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+import com.plasstech.lang.c.typecheck.Type;
+
+/**
+ * Evaluates TACKY instructions whose operands are all constants, with C's semantics for int, long,
+ * unsigned int and unsigned long: arithmetic wraps around, and unsigned division and comparison
+ * are unsigned. Each foldable instruction becomes a copy of the result, conditional jumps on
+ * constants become unconditional jumps or are removed, and everything else is left alone.
+ * <p>
+ * Division by zero, and dividing the most negative value by -1, are undefined, so they're left to
+ * happen at runtime.
+ * <p>
+ * A variable that is only ever set in one place, to a constant, is that constant wherever it's
+ * read afterward, so a chain of temporaries computed from constants folds in one pass. (A read that
+ * isn't after the write would be of an uninitialized variable.) Parameters and static variables
+ * are set elsewhere, so they don't count. Keeping track of them makes a folder unsafe to share
+ * between threads.
+ */
+public class ConstantFolder implements TackyInstruction.Visitor<List<TackyInstruction>> {
+  private final SymbolTable symbolTable;
+  // The number of places each variable of the current function is set.
+  private final Map<String, Integer> writes = new HashMap<>();
+  // The variables of the current function that are known to be constant.
+  private final Map<String, TackyConstant> known = new HashMap<>();
+
+  public ConstantFolder(SymbolTable symbolTable) {
+    this.symbolTable = symbolTable;
+  }
+
+  /** Returns the program with the body of each function folded. */
+  public TackyProgram fold(TackyProgram program) {
+    List<TackyTopLevel> topLevels = program.topLevelDefinitions().stream()
+        .map(topLevel -> switch (topLevel) {
+          case TackyFunction fn -> fold(fn);
+          default -> topLevel;
+        })
+        .toList();
+    return new TackyProgram(topLevels);
+  }
+
+  TackyFunction fold(TackyFunction function) {
+    countWrites(function);
+    List<TackyInstruction> folded = new ArrayList<>(function.body().size());
+    for (TackyInstruction instruction : function.body()) {
+      for (TackyInstruction result : instruction.accept(this)) {
+        folded.add(result);
+        if (result instanceof TackyCopy copy && value(copy.src()) instanceof TackyConstant src
+            && src.type().equals(copy.dst().type())
+            && writes.get(copy.dst().identifier()) == 1) {
+          known.put(copy.dst().identifier(), src);
+        }
+      }
+    }
+    writes.clear();
+    known.clear();
+    return new TackyFunction(function.identifier(), function.global(), function.params(),
+        ImmutableList.copyOf(folded));
+  }
+
+  private void countWrites(TackyFunction function) {
+    for (String param : function.params()) {
+      writes.merge(param, 1, Integer::sum);
+    }
+    for (TackyInstruction instruction : function.body()) {
+      TackyVar written = switch (instruction) {
+        case TackyCopy copy -> copy.dst();
+        case TackyUnary unary -> unary.dst();
+        case TackyBinary binary -> binary.dst();
+        case TackySignExtend signExtend -> (TackyVar) signExtend.dst();
+        case TackyTruncate truncate -> (TackyVar) truncate.dst();
+        case TackyFunCall call -> call.dst();
+        default -> null;
+      };
+      if (written != null) {
+        Symbol symbol = symbolTable.get(written.identifier());
+        // Static variables can be set by other functions, so count them twice.
+        int count = symbol != null && symbol.attribute() instanceof StaticAttr ? 2 : 1;
+        writes.merge(written.identifier(), count, Integer::sum);
+      }
+    }
+  }
+
+  /** Returns the constant value of the operand, if it's known. */
+  private TackyVal value(TackyVal val) {
+    if (val instanceof TackyVar var) {
+      TackyConstant constant = known.get(var.identifier());
+      if (constant != null) {
+        return constant;
+      }
+    }
+    return val;
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyUnary op) {
+    if (value(op.src()) instanceof TackyConstant src) {
+      Type type = src.type();
+      Long result = switch (op.operator()) {
+        case MINUS -> -src.val();
+        case TWIDDLE -> ~src.val();
+        case BANG -> {
+          type = Type.INT;
+          yield normalize(src.type(), src.val()) == 0 ? 1L : 0L;
+        }
+        default -> null;
+      };
+      if (result != null) {
+        return copy(constant(type, result), op.dst());
+      }
+    }
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyBinary op) {
+    if (value(op.left()) instanceof TackyConstant left
+        && value(op.right()) instanceof TackyConstant right) {
+      Long result = evaluate(op.operator(), left.type(), left.val(), right.val());
+      if (result != null) {
+        // Comparisons are ints, but everything else is the type of the operands.
+        Type type = op.operator().isConditional ? Type.INT : left.type();
+        return copy(constant(type, result), op.dst());
+      }
+    }
+    return ImmutableList.of(op);
+  }
+
+  /** Returns the result of the operation, or null if it can't (or shouldn't) be evaluated. */
+  private static Long evaluate(TokenType operator, Type type, long left, long right) {
+    boolean signed = type.signed();
+    boolean isInt = type.size() == 32;
+    if (isInt) {
+      // Make sure ints are sign- or zero-extended, for division and comparisons.
+      left = normalize(type, left);
+      right = normalize(type, right);
+    }
+    return switch (operator) {
+      case PLUS -> left + right;
+      case MINUS -> left - right;
+      case STAR -> left * right;
+      case SLASH, PERCENT -> {
+        if (right == 0 || (signed && right == -1 && left == minValue(type))) {
+          yield null;
+        }
+        if (operator == TokenType.SLASH) {
+          yield signed ? left / right : Long.divideUnsigned(left, right);
+        }
+        yield signed ? left % right : Long.remainderUnsigned(left, right);
+      }
+      case EQEQ -> left == right ? 1L : 0L;
+      case NEQ -> left != right ? 1L : 0L;
+      case LT -> compare(signed, left, right) < 0 ? 1L : 0L;
+      case LEQ -> compare(signed, left, right) <= 0 ? 1L : 0L;
+      case GT -> compare(signed, left, right) > 0 ? 1L : 0L;
+      case GEQ -> compare(signed, left, right) >= 0 ? 1L : 0L;
+      default -> null;
+    };
+  }
+
+  private static int compare(boolean signed, long left, long right) {
+    return signed ? Long.compare(left, right) : Long.compareUnsigned(left, right);
+  }
+
+  private static long minValue(Type type) {
+    return type.size() == 32 ? Integer.MIN_VALUE : Long.MIN_VALUE;
+  }
+
+  /** Wraps the value around to the given type: ints are sign-extended, unsigned ints aren't. */
+  private static long normalize(Type type, long value) {
+    if (type.size() == 32) {
+      return type.signed() ? (int) value : value & 0xffffffffL;
+    }
+    return value;
+  }
+
+  private static TackyConstant constant(Type type, long value) {
+    return new TackyConstant(type, normalize(type, value));
+  }
+
+  private static List<TackyInstruction> copy(TackyConstant src, TackyVal dst) {
+    return ImmutableList.of(new TackyCopy(src, (TackyVar) dst));
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackySignExtend op) {
+    if (value(op.src()) instanceof TackyConstant src) {
+      // The constant is already sign-extended.
+      TackyVar dst = (TackyVar) op.dst();
+      return copy(constant(dst.type(), normalize(src.type(), src.val())), dst);
+    }
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyTruncate op) {
+    if (value(op.src()) instanceof TackyConstant src) {
+      TackyVar dst = (TackyVar) op.dst();
+      return copy(constant(dst.type(), src.val()), dst);
+    }
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyJumpZero op) {
+    if (value(op.condition()) instanceof TackyConstant condition) {
+      if (normalize(condition.type(), condition.val()) == 0) {
+        return ImmutableList.of(new TackyJump(op.target()));
+      }
+      // Never jumps.
+      return ImmutableList.of();
+    }
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyJumpNotZero op) {
+    if (value(op.condition()) instanceof TackyConstant condition) {
+      if (normalize(condition.type(), condition.val()) != 0) {
+        return ImmutableList.of(new TackyJump(op.target()));
+      }
+      // Never jumps.
+      return ImmutableList.of();
+    }
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyCopy op) {
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyJump op) {
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyLabel op) {
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyReturn op) {
+    return ImmutableList.of(op);
+  }
+
+  @Override
+  public List<TackyInstruction> visit(TackyFunCall op) {
+    return ImmutableList.of(op);
+  }
+}
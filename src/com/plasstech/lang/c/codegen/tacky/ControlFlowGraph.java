@@ -0,0 +1,180 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The control-flow graph of the body of a TACKY function. Nodes are numbered: the basic blocks are
+ * 0 to blockCount() - 1, in their original order, followed by the entry and exit nodes. Edges are
+ * int arrays, so walking the graph doesn't look up any labels.
+ * <p>
+ * Blocks can be edited in place, or removed, and flatten() turns what's left back into a list of
+ * instructions.
+ */
+class ControlFlowGraph {
+  private static final int[] NONE = new int[0];
+
+  private final List<List<TackyInstruction>> blocks;
+  private final int[][] successors;
+  private final int[][] predecessors;
+  private final boolean[] removed;
+
+  private ControlFlowGraph(List<List<TackyInstruction>> blocks) {
+    this.blocks = blocks;
+    int nodes = blocks.size() + 2;
+    successors = new int[nodes][];
+    predecessors = new int[nodes][];
+    Arrays.fill(successors, NONE);
+    Arrays.fill(predecessors, NONE);
+    removed = new boolean[blocks.size()];
+  }
+
+  /** Splits the instructions into basic blocks, and links them. */
+  static ControlFlowGraph build(List<TackyInstruction> instructions) {
+    // A block starts at a label or after a jump or return, and ends at a jump or return.
+    List<List<TackyInstruction>> blocks = new ArrayList<>();
+    Map<String, Integer> labels = new HashMap<>();
+    List<TackyInstruction> current = new ArrayList<>();
+    for (TackyInstruction instruction : instructions) {
+      if (instruction instanceof TackyLabel label) {
+        if (!current.isEmpty()) {
+          blocks.add(current);
+          current = new ArrayList<>();
+        }
+        labels.put(label.target(), blocks.size());
+      }
+      current.add(instruction);
+      if (endsBlock(instruction)) {
+        blocks.add(current);
+        current = new ArrayList<>();
+      }
+    }
+    if (!current.isEmpty()) {
+      blocks.add(current);
+    }
+
+    ControlFlowGraph graph = new ControlFlowGraph(blocks);
+    int count = blocks.size();
+    graph.addEdge(graph.entry(), count > 0 ? 0 : graph.exit());
+    for (int b = 0; b < count; ++b) {
+      List<TackyInstruction> block = blocks.get(b);
+      int next = b + 1 < count ? b + 1 : graph.exit();
+      switch (block.getLast()) {
+        case TackyReturn r -> graph.addEdge(b, graph.exit());
+        case TackyJump j -> graph.addEdge(b, labels.get(j.target()));
+        case TackyJumpZero jz -> {
+          graph.addEdge(b, labels.get(jz.target()));
+          graph.addEdge(b, next);
+        }
+        case TackyJumpNotZero jnz -> {
+          graph.addEdge(b, labels.get(jnz.target()));
+          graph.addEdge(b, next);
+        }
+        default -> graph.addEdge(b, next);
+      }
+    }
+    return graph;
+  }
+
+  private static boolean endsBlock(TackyInstruction instruction) {
+    return instruction instanceof TackyJump || instruction instanceof TackyJumpZero
+        || instruction instanceof TackyJumpNotZero || instruction instanceof TackyReturn;
+  }
+
+  /** The number of basic blocks, including removed ones. */
+  int blockCount() {
+    return blocks.size();
+  }
+
+  int entry() {
+    return blocks.size();
+  }
+
+  int exit() {
+    return blocks.size() + 1;
+  }
+
+  /** The instructions of the given block, which may be changed. */
+  List<TackyInstruction> block(int block) {
+    return blocks.get(block);
+  }
+
+  int[] successors(int node) {
+    return successors[node];
+  }
+
+  int[] predecessors(int node) {
+    return predecessors[node];
+  }
+
+  boolean isRemoved(int block) {
+    return removed[block];
+  }
+
+  /** Removes the block, and its edges. */
+  void remove(int block) {
+    for (int successor : successors[block]) {
+      predecessors[successor] = without(predecessors[successor], block);
+    }
+    for (int predecessor : predecessors[block]) {
+      successors[predecessor] = without(successors[predecessor], block);
+    }
+    successors[block] = NONE;
+    predecessors[block] = NONE;
+    blocks.get(block).clear();
+    removed[block] = true;
+  }
+
+  void addEdge(int from, int to) {
+    if (contains(successors[from], to)) {
+      return;
+    }
+    successors[from] = with(successors[from], to);
+    predecessors[to] = with(predecessors[to], from);
+  }
+
+  void removeEdge(int from, int to) {
+    successors[from] = without(successors[from], to);
+    predecessors[to] = without(predecessors[to], from);
+  }
+
+  /** Returns the instructions of the blocks that haven't been removed, in order. */
+  List<TackyInstruction> flatten() {
+    List<TackyInstruction> instructions = new ArrayList<>();
+    for (int b = 0; b < blocks.size(); ++b) {
+      if (!removed[b]) {
+        instructions.addAll(blocks.get(b));
+      }
+    }
+    return instructions;
+  }
+
+  private static boolean contains(int[] nodes, int node) {
+    for (int n : nodes) {
+      if (n == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int[] with(int[] nodes, int node) {
+    int[] result = Arrays.copyOf(nodes, nodes.length + 1);
+    result[nodes.length] = node;
+    return result;
+  }
+
+  private static int[] without(int[] nodes, int node) {
+    int[] result = new int[nodes.length];
+    int count = 0;
+    for (int n : nodes) {
+      if (n != node) {
+        result[count++] = n;
+      }
+    }
+    return count == nodes.length ? nodes : Arrays.copyOf(result, count);
+  }
+}
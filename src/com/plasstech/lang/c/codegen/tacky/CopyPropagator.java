@@ -0,0 +1,274 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.typecheck.StaticAttr;
+import com.plasstech.lang.c.typecheck.Symbol;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * Global copy propagation: finds which copies reach each instruction, then replaces each use of a
+ * copied variable with the source of the copy. Copies that are already in effect are removed.
+ * <p>
+ * The sets of reaching copies are BitSets, indexed by copy. Function calls can change static
+ * variables, so they kill every copy to or from a static variable.
+ */
+public class CopyPropagator {
+  private final SymbolTable symbolTable;
+
+  public CopyPropagator(SymbolTable symbolTable) {
+    this.symbolTable = symbolTable;
+  }
+
+  /** Returns the program with copies propagated in each function. */
+  public TackyProgram propagate(TackyProgram program) {
+    List<TackyTopLevel> topLevels = program.topLevelDefinitions().stream()
+        .map(topLevel -> switch (topLevel) {
+          case TackyFunction fn -> propagate(fn);
+          default -> topLevel;
+        })
+        .toList();
+    return new TackyProgram(topLevels);
+  }
+
+  TackyFunction propagate(TackyFunction function) {
+    ControlFlowGraph graph = ControlFlowGraph.build(function.body());
+    new Analysis(graph).run();
+    return new TackyFunction(function.identifier(), function.global(), function.params(),
+        ImmutableList.copyOf(graph.flatten()));
+  }
+
+  /** The state of propagating copies through one function. */
+  private class Analysis {
+    private final ControlFlowGraph graph;
+    // Every copy in the function, numbered.
+    private final List<TackyCopy> copies = new ArrayList<>();
+    private final Map<TackyCopy, Integer> copyIndexes = new HashMap<>();
+    // The copies to or from each variable, which are killed when it's written.
+    private final Map<String, BitSet> copiesOf = new HashMap<>();
+    private final BitSet staticCopies = new BitSet();
+
+    Analysis(ControlFlowGraph graph) {
+      this.graph = graph;
+      for (int b = 0; b < graph.blockCount(); ++b) {
+        for (TackyInstruction instruction : graph.block(b)) {
+          if (instruction instanceof TackyCopy copy && propagatable(copy)
+              && !copyIndexes.containsKey(copy)) {
+            int index = copies.size();
+            copies.add(copy);
+            copyIndexes.put(copy, index);
+            copiesOf(copy.dst().identifier()).set(index);
+            boolean isStatic = isStatic(copy.dst());
+            if (copy.src() instanceof TackyVar src) {
+              copiesOf(src.identifier()).set(index);
+              isStatic |= isStatic(src);
+            }
+            if (isStatic) {
+              staticCopies.set(index);
+            }
+          }
+        }
+      }
+    }
+
+    private BitSet copiesOf(String variable) {
+      return copiesOf.computeIfAbsent(variable, v -> new BitSet());
+    }
+
+    private boolean isStatic(TackyVar var) {
+      Symbol symbol = symbolTable.get(var.identifier());
+      return symbol != null && symbol.attribute() instanceof StaticAttr;
+    }
+
+    void run() {
+      BitSet[] reachingIn = solve();
+      for (int b = 0; b < graph.blockCount(); ++b) {
+        rewrite(graph.block(b), reachingIn[b]);
+      }
+    }
+
+    /** Finds the copies that reach the start of each block. */
+    private BitSet[] solve() {
+      int blockCount = graph.blockCount();
+      BitSet[] in = new BitSet[blockCount];
+      BitSet[] out = new BitSet[blockCount];
+      // Start optimistic: every copy reaches everywhere, except the start of the function.
+      BitSet all = new BitSet(copies.size());
+      all.set(0, copies.size());
+      for (int b = 0; b < blockCount; ++b) {
+        out[b] = (BitSet) all.clone();
+      }
+      Deque<Integer> worklist = new ArrayDeque<>(blockCount);
+      BitSet queued = new BitSet(blockCount);
+      for (int b = 0; b < blockCount; ++b) {
+        worklist.add(b);
+      }
+      queued.set(0, blockCount);
+      while (!worklist.isEmpty()) {
+        int b = worklist.poll();
+        queued.clear(b);
+        in[b] = meet(b, out, all);
+        BitSet reaching = (BitSet) in[b].clone();
+        for (TackyInstruction instruction : graph.block(b)) {
+          transfer(instruction, reaching);
+        }
+        if (!reaching.equals(out[b])) {
+          out[b] = reaching;
+          for (int successor : graph.successors(b)) {
+            if (successor < blockCount && !queued.get(successor)) {
+              queued.set(successor);
+              worklist.add(successor);
+            }
+          }
+        }
+      }
+      return in;
+    }
+
+    /** The copies that reach the block along every path to it. */
+    private BitSet meet(int block, BitSet[] out, BitSet all) {
+      int[] predecessors = graph.predecessors(block);
+      if (predecessors.length == 0) {
+        return new BitSet();
+      }
+      BitSet in = (BitSet) all.clone();
+      for (int predecessor : predecessors) {
+        if (predecessor == graph.entry()) {
+          return new BitSet();
+        }
+        in.and(out[predecessor]);
+      }
+      return in;
+    }
+
+    /** Updates the set of reaching copies after the instruction. */
+    private void transfer(TackyInstruction instruction, BitSet reaching) {
+      switch (instruction) {
+        case TackyCopy copy -> {
+          if (isRedundant(copy, reaching)) {
+            return;
+          }
+          kill(copy.dst(), reaching);
+          Integer index = copyIndexes.get(copy);
+          if (index != null) {
+            reaching.set(index);
+          }
+        }
+        case TackyFunCall call -> {
+          reaching.andNot(staticCopies);
+          kill(call.dst(), reaching);
+        }
+        case TackyUnary unary -> kill(unary.dst(), reaching);
+        case TackyBinary binary -> kill(binary.dst(), reaching);
+        case TackySignExtend signExtend -> kill((TackyVar) signExtend.dst(), reaching);
+        case TackyTruncate truncate -> kill((TackyVar) truncate.dst(), reaching);
+        default -> {
+          // Jumps, labels and returns don't write anything.
+        }
+      }
+    }
+
+    private void kill(TackyVar written, BitSet reaching) {
+      BitSet killed = copiesOf.get(written.identifier());
+      if (killed != null) {
+        reaching.andNot(killed);
+      }
+    }
+
+    /** The copy, or its reverse, is already in effect. */
+    private boolean isRedundant(TackyCopy copy, BitSet reaching) {
+      Integer index = copyIndexes.get(copy);
+      if (index != null && reaching.get(index)) {
+        return true;
+      }
+      if (copy.src() instanceof TackyVar src) {
+        Integer reverse = copyIndexes.get(new TackyCopy(copy.dst(), src));
+        return reverse != null && reaching.get(reverse);
+      }
+      return false;
+    }
+
+    /** Replaces copied variables in the block, and removes redundant copies. */
+    private void rewrite(List<TackyInstruction> block, BitSet reaching) {
+      List<TackyInstruction> rewritten = new ArrayList<>(block.size());
+      for (TackyInstruction instruction : block) {
+        if (instruction instanceof TackyCopy copy && isRedundant(copy, reaching)) {
+          continue;
+        }
+        rewritten.add(replace(instruction, reaching));
+        transfer(instruction, reaching);
+      }
+      block.clear();
+      block.addAll(rewritten);
+    }
+
+    private TackyInstruction replace(TackyInstruction instruction, BitSet reaching) {
+      return switch (instruction) {
+        case TackyCopy copy -> new TackyCopy(replaceOperand(copy.src(), reaching), copy.dst());
+        case TackyUnary unary ->
+          new TackyUnary(unary.dst(), unary.operator(), replaceOperand(unary.src(), reaching));
+        case TackyBinary binary -> new TackyBinary(binary.dst(),
+            replaceOperand(binary.left(), reaching), binary.operator(),
+            replaceOperand(binary.right(), reaching));
+        case TackyJumpZero jz ->
+          new TackyJumpZero(replaceOperand(jz.condition(), reaching), jz.target());
+        case TackyJumpNotZero jnz ->
+          new TackyJumpNotZero(replaceOperand(jnz.condition(), reaching), jnz.target());
+        case TackyReturn r -> new TackyReturn(replaceOperand(r.val(), reaching));
+        case TackyFunCall call -> new TackyFunCall(call.funName(),
+            call.args().stream().map(arg -> replaceOperand(arg, reaching)).toList(),
+            call.dst());
+        case TackySignExtend se ->
+          new TackySignExtend(replaceOperand(se.src(), reaching), se.dst());
+        case TackyTruncate t -> new TackyTruncate(replaceOperand(t.src(), reaching), t.dst());
+        default -> instruction;
+      };
+    }
+
+    /**
+     * Returns the source of the reaching copy to the value, or the value itself. Chains of copies
+     * that all reach are followed to the first source.
+     */
+    private TackyVal replaceOperand(TackyVal val, BitSet reaching) {
+      // Each step uses a different copy, so this can't go around in circles forever.
+      for (int steps = 0; steps < copies.size(); ++steps) {
+        TackyVal source = source(val, reaching);
+        if (source == val) {
+          return val;
+        }
+        val = source;
+      }
+      return val;
+    }
+
+    private TackyVal source(TackyVal val, BitSet reaching) {
+      if (val instanceof TackyVar var) {
+        BitSet candidates = copiesOf.get(var.identifier());
+        if (candidates != null) {
+          for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (reaching.get(i) && copies.get(i).dst().identifier().equals(var.identifier())) {
+              return copies.get(i).src();
+            }
+          }
+        }
+      }
+      return val;
+    }
+  }
+
+  /** Only copies between the same types can be propagated. */
+  private static boolean propagatable(TackyCopy copy) {
+    return switch (copy.src()) {
+      case TackyVar src -> src.type().equals(copy.dst().type());
+      case TackyConstant src -> src.type().equals(copy.dst().type());
+      default -> false;
+    };
+  }
+}
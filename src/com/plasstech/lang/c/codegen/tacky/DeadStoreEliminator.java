@@ -0,0 +1,203 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.typecheck.StaticAttr;
+import com.plasstech.lang.c.typecheck.Symbol;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * Removes instructions that write a variable that is never read afterward, using a backward
+ * liveness analysis over the control-flow graph.
+ * <p>
+ * The variables of each function are numbered, and the sets of live variables are BitSets. Static
+ * variables aren't numbered: they can be read by other functions, so writes to them are always
+ * kept. Function calls are always kept, too.
+ */
+public class DeadStoreEliminator {
+  private final SymbolTable symbolTable;
+
+  public DeadStoreEliminator(SymbolTable symbolTable) {
+    this.symbolTable = symbolTable;
+  }
+
+  /** Returns the program with dead stores removed from each function. */
+  public TackyProgram eliminate(TackyProgram program) {
+    List<TackyTopLevel> topLevels = program.topLevelDefinitions().stream()
+        .map(topLevel -> switch (topLevel) {
+          case TackyFunction fn -> eliminate(fn);
+          default -> topLevel;
+        })
+        .toList();
+    return new TackyProgram(topLevels);
+  }
+
+  TackyFunction eliminate(TackyFunction function) {
+    ControlFlowGraph graph = ControlFlowGraph.build(function.body());
+    new Analysis(graph).run();
+    return new TackyFunction(function.identifier(), function.global(), function.params(),
+        ImmutableList.copyOf(graph.flatten()));
+  }
+
+  /** The state of finding live variables in one function. */
+  private class Analysis {
+    private final ControlFlowGraph graph;
+    // The number of each non-static variable in the function.
+    private final Map<String, Integer> variables = new HashMap<>();
+    private int variableCount;
+
+    Analysis(ControlFlowGraph graph) {
+      this.graph = graph;
+    }
+
+    void run() {
+      BitSet[] liveOut = solve();
+      for (int b = 0; b < graph.blockCount(); ++b) {
+        sweep(graph.block(b), liveOut[b]);
+      }
+    }
+
+    /** Returns the number of the variable, or -1 if it's static and so never dead. */
+    private int index(TackyVar var) {
+      Integer index = variables.get(var.identifier());
+      if (index != null) {
+        return index;
+      }
+      Symbol symbol = symbolTable.get(var.identifier());
+      int result =
+          symbol != null && symbol.attribute() instanceof StaticAttr ? -1 : variableCount++;
+      variables.put(var.identifier(), result);
+      return result;
+    }
+
+    /** Finds the variables that are live at the end of each block. */
+    private BitSet[] solve() {
+      int blockCount = graph.blockCount();
+      BitSet[] gen = new BitSet[blockCount];
+      BitSet[] kill = new BitSet[blockCount];
+      for (int b = 0; b < blockCount; ++b) {
+        gen[b] = new BitSet();
+        kill[b] = new BitSet();
+        List<TackyInstruction> block = graph.block(b);
+        for (int i = block.size() - 1; i >= 0; --i) {
+          TackyInstruction instruction = block.get(i);
+          int written = written(instruction);
+          if (written >= 0) {
+            gen[b].clear(written);
+            kill[b].set(written);
+          }
+          addReads(instruction, gen[b]);
+        }
+      }
+
+      BitSet[] in = new BitSet[blockCount];
+      BitSet[] out = new BitSet[blockCount];
+      for (int b = 0; b < blockCount; ++b) {
+        in[b] = new BitSet();
+        out[b] = new BitSet();
+      }
+      // Nothing numbered is live at the exit. Going backwards converges faster.
+      Deque<Integer> worklist = new ArrayDeque<>(blockCount);
+      BitSet queued = new BitSet(blockCount);
+      for (int b = blockCount - 1; b >= 0; --b) {
+        worklist.add(b);
+      }
+      queued.set(0, blockCount);
+      while (!worklist.isEmpty()) {
+        int b = worklist.poll();
+        queued.clear(b);
+        BitSet live = out[b];
+        for (int successor : graph.successors(b)) {
+          if (successor < blockCount) {
+            live.or(in[successor]);
+          }
+        }
+        BitSet newIn = (BitSet) live.clone();
+        newIn.andNot(kill[b]);
+        newIn.or(gen[b]);
+        if (!newIn.equals(in[b])) {
+          in[b] = newIn;
+          for (int predecessor : graph.predecessors(b)) {
+            if (predecessor < blockCount && !queued.get(predecessor)) {
+              queued.set(predecessor);
+              worklist.add(predecessor);
+            }
+          }
+        }
+      }
+      return out;
+    }
+
+    /** Removes the instructions in the block whose results aren't used. */
+    private void sweep(List<TackyInstruction> block, BitSet liveOut) {
+      BitSet live = (BitSet) liveOut.clone();
+      List<TackyInstruction> kept = new ArrayList<>(block.size());
+      for (int i = block.size() - 1; i >= 0; --i) {
+        TackyInstruction instruction = block.get(i);
+        int written = written(instruction);
+        if (written >= 0) {
+          if (!live.get(written) && !(instruction instanceof TackyFunCall)) {
+            continue;
+          }
+          live.clear(written);
+        }
+        addReads(instruction, live);
+        kept.add(instruction);
+      }
+      if (kept.size() != block.size()) {
+        block.clear();
+        block.addAll(kept.reversed());
+      }
+    }
+
+    /** Returns the number of the (non-static) variable written by the instruction, or -1. */
+    private int written(TackyInstruction instruction) {
+      return switch (instruction) {
+        case TackyCopy copy -> index(copy.dst());
+        case TackyUnary unary -> index(unary.dst());
+        case TackyBinary binary -> index(binary.dst());
+        case TackySignExtend signExtend -> index((TackyVar) signExtend.dst());
+        case TackyTruncate truncate -> index((TackyVar) truncate.dst());
+        case TackyFunCall call -> index(call.dst());
+        default -> -1;
+      };
+    }
+
+    /** Adds the variables read by the instruction to the live set. */
+    private void addReads(TackyInstruction instruction, BitSet live) {
+      switch (instruction) {
+        case TackyCopy copy -> read(copy.src(), live);
+        case TackyUnary unary -> read(unary.src(), live);
+        case TackyBinary binary -> {
+          read(binary.left(), live);
+          read(binary.right(), live);
+        }
+        case TackySignExtend signExtend -> read(signExtend.src(), live);
+        case TackyTruncate truncate -> read(truncate.src(), live);
+        case TackyFunCall call -> call.args().forEach(arg -> read(arg, live));
+        case TackyJumpZero jz -> read(jz.condition(), live);
+        case TackyJumpNotZero jnz -> read(jnz.condition(), live);
+        case TackyReturn r -> read(r.val(), live);
+        default -> {
+          // Jumps and labels don't read anything.
+        }
+      }
+    }
+
+    private void read(TackyVal val, BitSet live) {
+      if (val instanceof TackyVar var) {
+        int index = index(var);
+        if (index >= 0) {
+          live.set(index);
+        }
+      }
+    }
+  }
+}
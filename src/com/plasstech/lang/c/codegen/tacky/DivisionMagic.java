@@ -0,0 +1,70 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.math.BigInteger;
+
+/**
+ * Finds the "magic numbers" that turn division by a constant into a multiplication and shifts, from
+ * Granlund and Montgomery, "Division by Invariant Integers using Multiplication", and Hacker's
+ * Delight, chapter 10.
+ * <p>
+ * The multiplier is 2^p/d rounded up, for the smallest p that makes the rounding error small
+ * enough: then the high half of the product, shifted right by p-N, is the quotient. The multiplier
+ * can need N+1 bits, in which case the sequences have an extra step.
+ */
+final class DivisionMagic {
+  /**
+   * Multiply-high by the multiplier, which is the low N bits as a signed number; if addDividend,
+   * add the dividend to the high half (the multiplier was really 2^N larger); then shift right
+   * arithmetically by shift, and add 1 if the result is negative.
+   */
+  record Signed(long multiplier, boolean addDividend, int shift) {}
+
+  /**
+   * Multiply-high by the multiplier, unsigned, then shift right by shift. If add, the multiplier
+   * was really 2^N larger: t is the high half, and the quotient is (((n-t)>>1)+t)>>(shift-1).
+   */
+  record Unsigned(long multiplier, boolean add, int shift) {}
+
+  private DivisionMagic() {}
+
+  /**
+   * Returns the magic number for signed N-bit division by the divisor, which must be at least 3 and
+   * not a power of two. (Negative divisors use the magic number of their absolute value, and negate
+   * the quotient.)
+   */
+  static Signed signed(int bits, long divisor) {
+    BigInteger d = BigInteger.valueOf(divisor);
+    for (int p = bits;; ++p) {
+      BigInteger twoP = BigInteger.ONE.shiftLeft(p);
+      BigInteger m = twoP.add(d).subtract(BigInteger.ONE).divide(d);
+      BigInteger error = m.multiply(d).subtract(twoP);
+      if (error.compareTo(BigInteger.ONE.shiftLeft(p - bits + 1)) <= 0) {
+        boolean addDividend = m.bitLength() >= bits;
+        return new Signed(lowBits(m, bits), addDividend, p - bits);
+      }
+    }
+  }
+
+  /**
+   * Returns the magic number for unsigned N-bit division by the divisor, which is taken as
+   * unsigned, and must be at least 3 and not a power of two.
+   */
+  static Unsigned unsigned(int bits, long divisor) {
+    BigInteger d = new BigInteger(Long.toUnsignedString(divisor));
+    for (int p = bits;; ++p) {
+      BigInteger twoP = BigInteger.ONE.shiftLeft(p);
+      BigInteger m = twoP.add(d).subtract(BigInteger.ONE).divide(d);
+      BigInteger error = m.multiply(d).subtract(twoP);
+      if (error.compareTo(BigInteger.ONE.shiftLeft(p - bits)) <= 0) {
+        boolean add = m.bitLength() > bits;
+        return new Unsigned(lowBits(m, bits), add, p - bits);
+      }
+    }
+  }
+
+  /** Returns the low bits of the number, sign-extended from the top one. */
+  private static long lowBits(BigInteger m, int bits) {
+    long value = m.longValue();
+    return bits == 32 ? (int) value : value;
+  }
+}
@@ -3,6 +3,7 @@ package com.plasstech.lang.c.codegen.tacky;
 import static com.plasstech.lang.c.codegen.RegisterOperand.R10;
 import static com.plasstech.lang.c.codegen.RegisterOperand.R11;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.common.collect.ImmutableList;
@@ -22,17 +23,39 @@ import com.plasstech.lang.c.codegen.Instruction;
 import com.plasstech.lang.c.codegen.Jmp;
 import com.plasstech.lang.c.codegen.JmpCC;
 import com.plasstech.lang.c.codegen.Label;
+import com.plasstech.lang.c.codegen.Lea;
 import com.plasstech.lang.c.codegen.Mov;
 import com.plasstech.lang.c.codegen.Movsx;
+import com.plasstech.lang.c.codegen.MulHigh;
 import com.plasstech.lang.c.codegen.Operand;
+import com.plasstech.lang.c.codegen.Pop;
 import com.plasstech.lang.c.codegen.Push;
+import com.plasstech.lang.c.codegen.RegisterOperand;
 import com.plasstech.lang.c.codegen.Ret;
 import com.plasstech.lang.c.codegen.SetCC;
+import com.plasstech.lang.c.codegen.Shift;
+import com.plasstech.lang.c.codegen.Test;
+import com.plasstech.lang.c.codegen.Xor;
+import com.plasstech.lang.c.lex.TokenType;
 
-/** Fix up AsmNode instructions that we've created naively. */
+/**
+ * Fix up AsmNode instructions that we've created naively, and pick cheaper encodings now that we
+ * know which operands are in registers.
+ * <p>
+ * Setting a register to zero becomes an xor, which changes the flags. That's safe because nothing
+ * is generated between an instruction that sets the flags and the one that reads them.
+ */
 class FixupVisitor implements AsmNode.Visitor<List<Instruction>> {
   @Override
   public List<Instruction> visit(Mov n) {
+    if (n.src() instanceof RegisterOperand && n.src().equals(n.dst())) {
+      // The register allocator put the source and destination in the same register.
+      return ImmutableList.of();
+    }
+    if (n.src() instanceof Imm imm && imm.value() == 0 && n.dst() instanceof RegisterOperand) {
+      // Writing the low 32 bits clears the high 32 bits, too.
+      return ImmutableList.of(new Xor(AssemblyType.Longword, n.dst(), n.dst()));
+    }
     boolean needsIntermediary =
         n.dst().inMemory() &&
             (n.src().inMemory() || (n.type() == AssemblyType.Quadword && immOutOfRange(n.src())));
@@ -68,9 +91,8 @@ class FixupVisitor implements AsmNode.Visitor<List<Instruction>> {
       case PLUS:
       case MINUS: {
         boolean needsIntermediary =
-            n.dst().inMemory() &&
-                (n.src().inMemory()
-                    || (n.type() == AssemblyType.Quadword && immOutOfRange(n.src())));
+            (n.dst().inMemory() && n.src().inMemory())
+                || (n.type() == AssemblyType.Quadword && immOutOfRange(n.src()));
         if (needsIntermediary) {
           // Can't add or subtract stack and stack; use r10. See page 64
           // Or, if left or right is an immediate that is bigger than 32 bits, need to fixup. Page 268
@@ -144,6 +166,10 @@ class FixupVisitor implements AsmNode.Visitor<List<Instruction>> {
 
   @Override
   public List<Instruction> visit(Cmp n) {
+    if (n.left() instanceof Imm imm && imm.value() == 0 && n.right() instanceof RegisterOperand) {
+      // Comparing with zero sets the same flags as and-ing with itself.
+      return ImmutableList.of(new Test(n.type(), n.right(), n.right()));
+    }
     // Fix if the second operand is a constant. See page 88, 268
     if (n.right() instanceof Imm) {
       if (n.type() == AssemblyType.Quadword && immOutOfRange(n.left())) {
@@ -210,6 +236,11 @@ class FixupVisitor implements AsmNode.Visitor<List<Instruction>> {
     return ImmutableList.of(n);
   }
 
+  @Override
+  public List<Instruction> visit(Pop n) {
+    return ImmutableList.of(n);
+  }
+
   @Override
   public List<Instruction> visit(Call n) {
     return ImmutableList.of(n);
@@ -232,4 +263,120 @@ class FixupVisitor implements AsmNode.Visitor<List<Instruction>> {
     }
     return ImmutableList.of(op);
   }
+
+  @Override
+  public List<Instruction> visit(Shift n) {
+    return ImmutableList.of(n);
+  }
+
+  @Override
+  public List<Instruction> visit(MulHigh n) {
+    // Like idiv, can't multiply by a constant; use r10 as an intermediary.
+    if (n.operand() instanceof Imm) {
+      return ImmutableList.of(
+          new Mov(n.type(), n.operand(), R10),
+          new MulHigh(n.type(), n.signed(), R10));
+    }
+    return ImmutableList.of(n);
+  }
+
+  @Override
+  public List<Instruction> visit(Test n) {
+    if (n.left() instanceof Imm) {
+      // Can't test a constant; use r10 as an intermediary.
+      return ImmutableList.of(
+          new Mov(n.type(), n.left(), R10),
+          new Test(n.type(), R10, R10));
+    }
+    if (n.left().inMemory() && n.right().inMemory()) {
+      // Can't test memory with memory, but can compare it with zero.
+      return visit(new Cmp(n.type(), new Imm(0), n.right()));
+    }
+    return ImmutableList.of(n);
+  }
+
+  @Override
+  public List<Instruction> visit(Lea n) {
+    boolean registers = n.base() instanceof RegisterOperand
+        && (n.index() == null || n.index() instanceof RegisterOperand);
+    if (registers && n.dst() instanceof RegisterOperand) {
+      return leaInRegisters(n);
+    }
+    if (registers && !(n.index() == null && n.displacement() == 0)) {
+      // Can't lea into memory; use r11.
+      return ImmutableList.of(
+          new Lea(n.type(), n.base(), n.index(), n.scale(), n.displacement(), R11),
+          new Mov(n.type(), R11, n.dst()));
+    }
+
+    // Go back to add (or imul), in place if the destination is one of the operands, otherwise
+    // in a register if the destination isn't one.
+    List<Instruction> instructions = new ArrayList<>();
+    AssemblyType type = n.type();
+    Operand dst = n.dst();
+    Operand target = dst;
+    if (n.scale() == 1 && dst.equals(n.base())) {
+      if (n.index() != null) {
+        instructions.addAll(visit(new AsmBinary(TokenType.PLUS, type, n.index(), dst)));
+      }
+    } else if (n.scale() == 1 && dst.equals(n.index())) {
+      instructions.addAll(visit(new AsmBinary(TokenType.PLUS, type, n.base(), dst)));
+    } else {
+      boolean arithmetic = n.index() != null || n.displacement() != 0;
+      if (arithmetic && dst.inMemory()) {
+        target = R11;
+      }
+      instructions.addAll(visit(new Mov(type, n.base(), target)));
+      if (n.index() != null) {
+        if (n.scale() == 1) {
+          instructions.addAll(visit(new AsmBinary(TokenType.PLUS, type, n.index(), target)));
+        } else {
+          // base + base * scale is multiplication by scale + 1.
+          instructions.addAll(
+              visit(new AsmBinary(TokenType.STAR, type, new Imm(n.scale() + 1), target)));
+        }
+      }
+    }
+    if (n.displacement() != 0) {
+      instructions.addAll(
+          visit(new AsmBinary(TokenType.PLUS, type, new Imm(n.displacement()), target)));
+    }
+    if (target != dst) {
+      instructions.add(new Mov(type, target, dst));
+    }
+    return instructions;
+  }
+
+  /**
+   * An lea whose destination is also one of the operands it adds (e.g., once the register allocator
+   * has coalesced them) is a shorter add. Otherwise, the lea stays.
+   */
+  private List<Instruction> leaInRegisters(Lea n) {
+    Operand dst = n.dst();
+    if (n.scale() != 1) {
+      return ImmutableList.of(n);
+    }
+    if (n.index() == null && dst.equals(n.base())) {
+      if (n.displacement() == 0) {
+        // Adds nothing.
+        return ImmutableList.of();
+      }
+      return ImmutableList.of(
+          new AsmBinary(TokenType.PLUS, n.type(), new Imm(n.displacement()), dst));
+    }
+    if (n.index() != null && n.displacement() == 0) {
+      if (dst.equals(n.base())) {
+        return ImmutableList.of(new AsmBinary(TokenType.PLUS, n.type(), n.index(), dst));
+      }
+      if (dst.equals(n.index())) {
+        return ImmutableList.of(new AsmBinary(TokenType.PLUS, n.type(), n.base(), dst));
+      }
+    }
+    return ImmutableList.of(n);
+  }
+
+  @Override
+  public List<Instruction> visit(Xor n) {
+    return ImmutableList.of(n);
+  }
 }
@@ -0,0 +1,268 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.Lea;
+import com.plasstech.lang.c.codegen.Mov;
+import com.plasstech.lang.c.codegen.RegisterOperand;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * Chaitin-Briggs register allocator: builds the interference graph from liveness, conservatively
+ * coalesces moves (Briggs' test between pseudo-registers, George's test with a hardware register),
+ * then colors optimistically: nodes that might have to be spilled are pushed anyway, and are only
+ * spilled (left on the stack) if no color is free when they're popped.
+ */
+public class GraphColoringAllocator implements RegisterAllocator {
+  private static final int K = AsmLiveness.registers();
+
+  @Override
+  public Map<String, RegisterOperand> allocate(List<Instruction> instructions,
+      SymbolTable symbolTable) {
+    AsmLiveness liveness = new AsmLiveness(instructions, symbolTable);
+    Graph graph = new Graph(liveness, instructions);
+    graph.coalesce();
+    int[] colors = graph.color();
+
+    Map<String, RegisterOperand> registers = new HashMap<>();
+    for (int node = K; node < liveness.size(); ++node) {
+      int color = colors[graph.find(node)];
+      if (color >= 0) {
+        registers.put(liveness.pseudo(node).identifier(), RegisterOperand.ALLOCATABLE.get(color));
+      }
+    }
+    return registers;
+  }
+
+  private static class Graph {
+    private final int size;
+    // Nodes 0..K-1 are the hardware registers, which are precolored.
+    private final BitSet[] neighbors;
+    // How often each node is used or defined: the cost of spilling it.
+    private final int[] cost;
+    // Coalesced nodes point to the node they were merged into.
+    private final int[] alias;
+    private final List<int[]> moves = new ArrayList<>();
+
+    Graph(AsmLiveness liveness, List<Instruction> instructions) {
+      size = liveness.size();
+      neighbors = new BitSet[size];
+      for (int node = 0; node < size; ++node) {
+        neighbors[node] = new BitSet(size);
+      }
+      cost = new int[size];
+      alias = new int[size];
+      for (int node = 0; node < size; ++node) {
+        alias[node] = node;
+      }
+
+      liveness.forEachLiveOut((live, i) -> {
+        int[] defs = liveness.defs(i);
+        int moveSource = -1;
+        if (instructions.get(i) instanceof Mov mov) {
+          moveSource = liveness.node(mov.src());
+          int moveDest = liveness.node(mov.dst());
+          if (moveSource >= 0 && moveDest >= 0) {
+            moves.add(new int[] {moveSource, moveDest});
+          }
+        } else if (instructions.get(i) instanceof Lea lea) {
+          // Not a move, but if the destination can share the base's register, FixupVisitor can
+          // turn it into a shorter add.
+          int base = liveness.node(lea.base());
+          int leaDest = liveness.node(lea.dst());
+          if (base >= 0 && leaDest >= 0) {
+            moves.add(new int[] {base, leaDest});
+          }
+        }
+        for (int def : defs) {
+          for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+            // The destination of a move doesn't interfere with its source: they hold the same
+            // value, so they can share a register.
+            if (other != def && other != moveSource) {
+              addEdge(def, other);
+            }
+          }
+        }
+        for (int node : liveness.uses(i)) {
+          cost[node]++;
+        }
+        for (int node : defs) {
+          cost[node]++;
+        }
+      });
+    }
+
+    private void addEdge(int a, int b) {
+      if (a < K && b < K) {
+        // Registers always have different colors.
+        return;
+      }
+      neighbors[a].set(b);
+      neighbors[b].set(a);
+    }
+
+    int find(int node) {
+      while (alias[node] != node) {
+        node = alias[node];
+      }
+      return node;
+    }
+
+    private int degree(int node) {
+      return node < K ? Integer.MAX_VALUE : neighbors[node].cardinality();
+    }
+
+    private boolean interferes(int a, int b) {
+      return (a < K && b < K) || neighbors[a].get(b);
+    }
+
+    /** Merges the nodes of moves, when that can't make the graph uncolorable. */
+    void coalesce() {
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (int[] move : moves) {
+          int a = find(move[0]);
+          int b = find(move[1]);
+          if (b < K) {
+            // Keep registers as the representatives.
+            int temp = a;
+            a = b;
+            b = temp;
+          }
+          if (a == b || interferes(a, b)) {
+            continue;
+          }
+          if (a < K ? george(a, b) : briggs(a, b)) {
+            merge(a, b);
+            changed = true;
+          }
+        }
+      }
+    }
+
+    /** Every neighbor of b already interferes with register a, or is insignificant. */
+    private boolean george(int a, int b) {
+      BitSet others = neighbors[b];
+      for (int t = others.nextSetBit(0); t >= 0; t = others.nextSetBit(t + 1)) {
+        if (!interferes(t, a) && degree(t) >= K) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** The merged node would have fewer than K significant neighbors. */
+    private boolean briggs(int a, int b) {
+      BitSet others = (BitSet) neighbors[a].clone();
+      others.or(neighbors[b]);
+      int significant = 0;
+      for (int t = others.nextSetBit(0); t >= 0; t = others.nextSetBit(t + 1)) {
+        if (degree(t) >= K) {
+          significant++;
+        }
+      }
+      return significant < K;
+    }
+
+    /** Merges b into a. */
+    private void merge(int a, int b) {
+      BitSet others = neighbors[b];
+      for (int t = others.nextSetBit(0); t >= 0; t = others.nextSetBit(t + 1)) {
+        neighbors[t].clear(b);
+        addEdge(a, t);
+      }
+      others.clear();
+      cost[a] += cost[b];
+      alias[b] = a;
+    }
+
+    /** Returns the color (register index) of each representative node, or -1 if spilled. */
+    int[] color() {
+      int[] degrees = new int[size];
+      BitSet removed = new BitSet(size);
+      Deque<Integer> lowDegree = new ArrayDeque<>();
+      int remaining = 0;
+      for (int node = K; node < size; ++node) {
+        if (find(node) == node) {
+          degrees[node] = neighbors[node].cardinality();
+          if (degrees[node] < K) {
+            lowDegree.add(node);
+          }
+          remaining++;
+        } else {
+          removed.set(node);
+        }
+      }
+
+      // Simplify: remove nodes, easiest to color first.
+      Deque<Integer> stack = new ArrayDeque<>();
+      while (remaining > 0) {
+        int node = -1;
+        while (!lowDegree.isEmpty() && node < 0) {
+          int candidate = lowDegree.pop();
+          if (!removed.get(candidate)) {
+            node = candidate;
+          }
+        }
+        if (node < 0) {
+          node = spillCandidate(degrees, removed);
+        }
+        removed.set(node);
+        stack.push(node);
+        remaining--;
+        BitSet others = neighbors[node];
+        for (int t = others.nextSetBit(K); t >= 0; t = others.nextSetBit(t + 1)) {
+          if (!removed.get(t) && --degrees[t] == K - 1) {
+            lowDegree.add(t);
+          }
+        }
+      }
+
+      // Select: give each node a color that its neighbors don't have.
+      int[] colors = new int[size];
+      Arrays.fill(colors, -1);
+      for (int register = 0; register < K; ++register) {
+        colors[register] = register;
+      }
+      BitSet used = new BitSet(K);
+      while (!stack.isEmpty()) {
+        int node = stack.pop();
+        used.clear();
+        BitSet others = neighbors[node];
+        for (int t = others.nextSetBit(0); t >= 0; t = others.nextSetBit(t + 1)) {
+          if (colors[t] >= 0) {
+            used.set(colors[t]);
+          }
+        }
+        int color = used.nextClearBit(0);
+        if (color < K) {
+          colors[node] = color;
+        }
+      }
+      return colors;
+    }
+
+    /** The node that's cheapest to spill, per neighbor. */
+    private int spillCandidate(int[] degrees, BitSet removed) {
+      int best = -1;
+      double bestRatio = Double.MAX_VALUE;
+      for (int node = removed.nextClearBit(K); node < size; node = removed.nextClearBit(node + 1)) {
+        double ratio = (double) cost[node] / Math.max(1, degrees[node]);
+        if (ratio < bestRatio) {
+          bestRatio = ratio;
+          best = node;
+        }
+      }
+      return best;
+    }
+  }
+}
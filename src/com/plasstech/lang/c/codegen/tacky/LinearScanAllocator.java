@@ -0,0 +1,146 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.Mov;
+import com.plasstech.lang.c.codegen.RegisterOperand;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * Poletto and Sarkar's linear-scan register allocator. Each pseudo-register gets one live
+ * interval, from the first to the last instruction where it's live or defined, and the intervals
+ * are given registers in order of their start. When every register is taken, whichever interval
+ * ends last is spilled. Much cheaper than graph coloring, at the cost of some precision.
+ */
+public class LinearScanAllocator implements RegisterAllocator {
+  private static final int K = AsmLiveness.registers();
+
+  private record Interval(int node, int start, int end) {}
+
+  @Override
+  public Map<String, RegisterOperand> allocate(List<Instruction> instructions,
+      SymbolTable symbolTable) {
+    AsmLiveness liveness = new AsmLiveness(instructions, symbolTable);
+    int size = liveness.size();
+    int[] start = new int[size];
+    int[] end = new int[size];
+    Arrays.fill(start, Integer.MAX_VALUE);
+    Arrays.fill(end, -1);
+    // Where each register is live or written by an instruction, and so can't hold a pseudo.
+    BitSet[] busy = new BitSet[K];
+    for (int register = 0; register < K; ++register) {
+      busy[register] = new BitSet(instructions.size());
+    }
+    liveness.forEachLiveOut((live, i) -> {
+      for (int node = live.nextSetBit(0); node >= 0; node = live.nextSetBit(node + 1)) {
+        occupy(node, i, start, end, busy);
+      }
+      for (int node : liveness.defs(i)) {
+        occupy(node, i, start, end, busy);
+      }
+    });
+
+    // A pseudo that's moved to or from a register would rather be in that register, so the move
+    // can be removed.
+    int[] hint = new int[size];
+    Arrays.fill(hint, -1);
+    for (Instruction instruction : instructions) {
+      if (instruction instanceof Mov mov) {
+        int src = liveness.node(mov.src());
+        int dst = liveness.node(mov.dst());
+        if (src >= K && dst >= 0 && dst < K) {
+          hint[src] = dst;
+        } else if (dst >= K && src >= 0 && src < K) {
+          hint[dst] = src;
+        }
+      }
+    }
+
+    List<Interval> intervals = new ArrayList<>();
+    for (int node = K; node < size; ++node) {
+      if (end[node] >= 0) {
+        intervals.add(new Interval(node, start[node], end[node]));
+      }
+    }
+    intervals.sort(Comparator.comparingInt(Interval::start));
+
+    // The intervals that currently have a register, by increasing end.
+    PriorityQueue<Interval> active = new PriorityQueue<>(Comparator.comparingInt(Interval::end));
+    Interval[] holder = new Interval[K];
+    int[] colors = new int[size];
+    Arrays.fill(colors, -1);
+    for (Interval interval : intervals) {
+      // Expire the intervals that ended before this one starts.
+      while (!active.isEmpty() && active.peek().end() < interval.start()) {
+        Interval expired = active.poll();
+        holder[colors[expired.node()]] = null;
+      }
+      int register = freeRegister(interval, hint[interval.node()], holder, busy);
+      if (register < 0) {
+        // Spill the interval that ends last, if it's another one whose register would do.
+        Interval victim = null;
+        for (Interval other : active) {
+          if ((victim == null || other.end() > victim.end()) && other.end() > interval.end()
+              && !overlaps(busy[colors[other.node()]], interval)) {
+            victim = other;
+          }
+        }
+        if (victim == null) {
+          continue;
+        }
+        active.remove(victim);
+        register = colors[victim.node()];
+        colors[victim.node()] = -1;
+      }
+      colors[interval.node()] = register;
+      holder[register] = interval;
+      active.add(interval);
+    }
+
+    Map<String, RegisterOperand> registers = new HashMap<>();
+    for (int node = K; node < size; ++node) {
+      if (colors[node] >= 0) {
+        registers.put(liveness.pseudo(node).identifier(),
+            RegisterOperand.ALLOCATABLE.get(colors[node]));
+      }
+    }
+    return registers;
+  }
+
+  private static void occupy(int node, int instruction, int[] start, int[] end, BitSet[] busy) {
+    if (node < K) {
+      busy[node].set(instruction);
+    } else {
+      start[node] = Math.min(start[node], instruction);
+      end[node] = Math.max(end[node], instruction);
+    }
+  }
+
+  /** Returns a register that's free for the whole interval, preferring the hint, or -1. */
+  private static int freeRegister(Interval interval, int hint, Interval[] holder, BitSet[] busy) {
+    if (hint >= 0 && holder[hint] == null && !overlaps(busy[hint], interval)) {
+      return hint;
+    }
+    // Caller-saved registers come first, so callee-saved ones are only used (and saved) when
+    // the interval crosses a call.
+    for (int register = 0; register < K; ++register) {
+      if (holder[register] == null && !overlaps(busy[register], interval)) {
+        return register;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean overlaps(BitSet busy, Interval interval) {
+    int next = busy.nextSetBit(interval.start());
+    return next >= 0 && next <= interval.end();
+  }
+}
@@ -0,0 +1,15 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+/** The optimizations that can be run on each function. */
+public enum Optimization {
+  /** Evaluates operations on constants at compile time. */
+  FOLD_CONSTANTS,
+  /** Removes code that can't be reached, jumps to the next instruction and unused labels. */
+  ELIMINATE_UNREACHABLE_CODE,
+  /** Replaces variables with the values that were copied to them. */
+  PROPAGATE_COPIES,
+  /** Removes instructions whose results are never used. */
+  ELIMINATE_DEAD_STORES,
+  /** Removes useless moves, arithmetic and jumps from the final assembly. */
+  PEEPHOLE;
+}
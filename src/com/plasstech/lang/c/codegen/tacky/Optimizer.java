@@ -0,0 +1,91 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.plasstech.lang.c.common.Parallel;
+import com.plasstech.lang.c.common.PhaseTimer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/**
+ * Runs the enabled TACKY optimizations on each function, over and over, until they stop changing
+ * it: folding constants can make code unreachable, propagating copies can make more constants to
+ * fold, and so on.
+ * <p>
+ * Functions are optimized independently, so they're optimized in parallel, when there's more than
+ * one processor.
+ */
+public class Optimizer {
+  private final SymbolTable symbolTable;
+  private final PhaseTimer timer;
+  private final Set<Optimization> optimizations;
+  private final UnreachableCodeEliminator unreachableCodeEliminator =
+      new UnreachableCodeEliminator();
+  private final CopyPropagator copyPropagator;
+  private final DeadStoreEliminator deadStoreEliminator;
+
+  public Optimizer(SymbolTable symbolTable, Set<Optimization> optimizations) {
+    this(symbolTable, PhaseTimer.NONE, optimizations);
+  }
+
+  /** The timer's current phase also gets the time spent optimizing on other threads. */
+  public Optimizer(SymbolTable symbolTable, PhaseTimer timer, Set<Optimization> optimizations) {
+    this.symbolTable = symbolTable;
+    this.timer = timer;
+    this.optimizations = optimizations;
+    this.copyPropagator = new CopyPropagator(symbolTable);
+    this.deadStoreEliminator = new DeadStoreEliminator(symbolTable);
+  }
+
+  /** Returns the program with each function optimized. */
+  public TackyProgram optimize(TackyProgram program) {
+    if (!enabled(optimizations)) {
+      return program;
+    }
+    List<TackyTopLevel> definitions = program.topLevelDefinitions();
+    Stream<TackyTopLevel> stream = definitions.stream();
+    if (Parallel.worthForking(definitions.size())) {
+      stream = stream.parallel();
+    }
+    List<TackyTopLevel> topLevels = stream
+        .map(topLevel -> switch (topLevel) {
+          case TackyFunction fn -> timer.timeWorker(() -> optimize(fn));
+          default -> topLevel;
+        })
+        .toList();
+    return new TackyProgram(topLevels);
+  }
+
+  /** Whether any of the optimizations are run on TACKY. */
+  public static boolean enabled(Set<Optimization> optimizations) {
+    return optimizations.contains(Optimization.FOLD_CONSTANTS)
+        || optimizations.contains(Optimization.ELIMINATE_UNREACHABLE_CODE)
+        || optimizations.contains(Optimization.PROPAGATE_COPIES)
+        || optimizations.contains(Optimization.ELIMINATE_DEAD_STORES);
+  }
+
+  TackyFunction optimize(TackyFunction function) {
+    // The folder keeps state while it works, so each function gets its own.
+    ConstantFolder constantFolder = new ConstantFolder(symbolTable);
+    while (true) {
+      TackyFunction optimized = function;
+      if (optimizations.contains(Optimization.FOLD_CONSTANTS)) {
+        optimized = constantFolder.fold(optimized);
+      }
+      if (optimizations.contains(Optimization.ELIMINATE_UNREACHABLE_CODE)) {
+        optimized = unreachableCodeEliminator.eliminate(optimized);
+      }
+      if (optimizations.contains(Optimization.PROPAGATE_COPIES)) {
+        optimized = copyPropagator.propagate(optimized);
+      }
+      if (optimizations.contains(Optimization.ELIMINATE_DEAD_STORES)) {
+        optimized = deadStoreEliminator.eliminate(optimized);
+      }
+      if (optimized.body().equals(function.body())) {
+        return optimized;
+      }
+      function = optimized;
+    }
+  }
+}
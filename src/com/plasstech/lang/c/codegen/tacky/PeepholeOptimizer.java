@@ -0,0 +1,155 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.codegen.AsmBinary;
+import com.plasstech.lang.c.codegen.AsmFunction;
+import com.plasstech.lang.c.codegen.AsmProgram;
+import com.plasstech.lang.c.codegen.AsmTopLevel;
+import com.plasstech.lang.c.codegen.Imm;
+import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.Jmp;
+import com.plasstech.lang.c.codegen.JmpCC;
+import com.plasstech.lang.c.codegen.Label;
+import com.plasstech.lang.c.codegen.Mov;
+
+/**
+ * Cleans up the final instructions of each function, after fixup, by sliding a small window over
+ * them and rewriting the patterns in a table of rules: moves that don't change anything, arithmetic
+ * that doesn't change anything, and jumps to the next instruction.
+ * <p>
+ * Each instruction is matched as it's appended to the output, against the end of the output, so a
+ * rewrite can expose another one (e.g., removing a move between a jump and its label) without
+ * another pass. Flags set by removed arithmetic are never read: comparisons always come right
+ * before the instructions that read them.
+ */
+public class PeepholeOptimizer {
+  /**
+   * A rewrite of a window of consecutive instructions. Returns the replacement instructions, or
+   * null if the rule doesn't match.
+   */
+  private record Rule(String name, int width,
+      Function<List<Instruction>, List<Instruction>> rewrite) {}
+
+  private static final List<Rule> RULES = ImmutableList.of(
+      new Rule("self-move", 1, PeepholeOptimizer::selfMove),
+      new Rule("redundant-move", 2, PeepholeOptimizer::redundantMove),
+      new Rule("identity-arithmetic", 1, PeepholeOptimizer::identityArithmetic),
+      new Rule("jump-to-next", 2, PeepholeOptimizer::jumpToNext));
+
+  // The number of instructions removed by each rule.
+  private final int[] removed = new int[RULES.size()];
+
+  /** Returns the program with each function's instructions cleaned up. */
+  public AsmProgram optimize(AsmProgram program) {
+    List<AsmTopLevel> topLevels = program.topLevelNodes().stream()
+        .map(topLevel -> switch (topLevel) {
+          case AsmFunction fn -> optimize(fn);
+          default -> topLevel;
+        })
+        .toList();
+    return new AsmProgram(topLevels);
+  }
+
+  AsmFunction optimize(AsmFunction function) {
+    return new AsmFunction(function.name(), function.global(),
+        optimize(function.instructions()));
+  }
+
+  List<Instruction> optimize(List<Instruction> instructions) {
+    List<Instruction> output = new ArrayList<>(instructions.size());
+    for (Instruction instruction : instructions) {
+      output.add(instruction);
+      rewriteEnd(output);
+    }
+    return output;
+  }
+
+  /** Applies the rules to the end of the output, until none of them match. */
+  private void rewriteEnd(List<Instruction> output) {
+    boolean rewritten = true;
+    while (rewritten) {
+      rewritten = false;
+      for (int r = 0; r < RULES.size(); ++r) {
+        Rule rule = RULES.get(r);
+        if (output.size() < rule.width()) {
+          continue;
+        }
+        List<Instruction> window = output.subList(output.size() - rule.width(), output.size());
+        List<Instruction> replacement = rule.rewrite().apply(window);
+        if (replacement != null) {
+          removed[r] += window.size() - replacement.size();
+          window.clear();
+          output.addAll(replacement);
+          rewritten = true;
+          break;
+        }
+      }
+    }
+  }
+
+  /** Returns the number of instructions removed by each rule, by rule name. */
+  public Map<String, Integer> removed() {
+    Map<String, Integer> result = new LinkedHashMap<>();
+    for (int r = 0; r < RULES.size(); ++r) {
+      result.put(RULES.get(r).name(), removed[r]);
+    }
+    return result;
+  }
+
+  /** mov X, X */
+  private static List<Instruction> selfMove(List<Instruction> window) {
+    if (window.get(0) instanceof Mov mov && mov.src().equals(mov.dst())) {
+      return ImmutableList.of();
+    }
+    return null;
+  }
+
+  /** mov X, Y followed by mov X, Y or mov Y, X: the second one doesn't change anything. */
+  private static List<Instruction> redundantMove(List<Instruction> window) {
+    if (window.get(0) instanceof Mov first && window.get(1) instanceof Mov second
+        && first.type() == second.type()) {
+      boolean same = second.src().equals(first.src()) && second.dst().equals(first.dst());
+      boolean reverse = second.src().equals(first.dst()) && second.dst().equals(first.src());
+      if (same || reverse) {
+        return ImmutableList.of(first);
+      }
+    }
+    return null;
+  }
+
+  /** add $0, X; sub $0, X; imul $1, X */
+  private static List<Instruction> identityArithmetic(List<Instruction> window) {
+    if (window.get(0) instanceof AsmBinary binary && binary.src() instanceof Imm imm) {
+      boolean identity = switch (binary.operator()) {
+        case PLUS, MINUS -> imm.value() == 0;
+        case STAR -> imm.value() == 1;
+        default -> false;
+      };
+      if (identity) {
+        return ImmutableList.of();
+      }
+    }
+    return null;
+  }
+
+  /** jmp L or jcc L, followed by L: */
+  private static List<Instruction> jumpToNext(List<Instruction> window) {
+    if (window.get(1) instanceof Label label) {
+      String target = switch (window.get(0)) {
+        case Jmp jmp -> jmp.label();
+        case JmpCC jmpCC -> jmpCC.label();
+        default -> null;
+      };
+      if (label.label().equals(target)) {
+        return ImmutableList.of(label);
+      }
+    }
+    return null;
+  }
+}
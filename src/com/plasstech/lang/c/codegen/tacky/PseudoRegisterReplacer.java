@@ -3,6 +3,7 @@ package com.plasstech.lang.c.codegen.tacky;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.google.common.collect.ImmutableMap;
 import com.plasstech.lang.c.codegen.AsmBinary;
 import com.plasstech.lang.c.codegen.AsmFunction;
 import com.plasstech.lang.c.codegen.AsmNode;
@@ -22,25 +23,39 @@ import com.plasstech.lang.c.codegen.Instruction;
 import com.plasstech.lang.c.codegen.Jmp;
 import com.plasstech.lang.c.codegen.JmpCC;
 import com.plasstech.lang.c.codegen.Label;
+import com.plasstech.lang.c.codegen.Lea;
 import com.plasstech.lang.c.codegen.Mov;
 import com.plasstech.lang.c.codegen.Movsx;
+import com.plasstech.lang.c.codegen.MulHigh;
 import com.plasstech.lang.c.codegen.ObjEntry;
 import com.plasstech.lang.c.codegen.Operand;
 import com.plasstech.lang.c.codegen.Pseudo;
+import com.plasstech.lang.c.codegen.Pop;
 import com.plasstech.lang.c.codegen.Push;
 import com.plasstech.lang.c.codegen.RegisterOperand;
 import com.plasstech.lang.c.codegen.Ret;
 import com.plasstech.lang.c.codegen.SetCC;
+import com.plasstech.lang.c.codegen.Shift;
 import com.plasstech.lang.c.codegen.Stack;
+import com.plasstech.lang.c.codegen.Test;
+import com.plasstech.lang.c.codegen.Xor;
 
 class PseudoRegisterReplacer implements AsmNode.Visitor<Instruction> {
   /** Replace pseudo operands to stack references. See page 42. */
   private final BackendSymbolTable symbolTable;
+  // Pseudos that the register allocator put in registers.
+  private final Map<String, RegisterOperand> registers;
   private int currentProcOffset;
 
   PseudoRegisterReplacer(BackendSymbolTable bst, int currentProcOffset) {
+    this(bst, currentProcOffset, ImmutableMap.of());
+  }
+
+  PseudoRegisterReplacer(BackendSymbolTable bst, int currentProcOffset,
+      Map<String, RegisterOperand> registers) {
     this.symbolTable = bst;
     this.currentProcOffset = currentProcOffset;
+    this.registers = registers;
   }
 
   int currentProcOffset() {
@@ -81,6 +96,10 @@ class PseudoRegisterReplacer implements AsmNode.Visitor<Instruction> {
       case RegisterOperand ro -> ro;
       case Stack s -> s;
       case Pseudo p -> {
+        RegisterOperand register = registers.get(p.identifier());
+        if (register != null) {
+          yield register;
+        }
         AsmSymtabEntry s = symbolTable.get(p.identifier());
         // unclear if this is right p. 237
         if (s instanceof ObjEntry oe) {
@@ -175,6 +194,11 @@ class PseudoRegisterReplacer implements AsmNode.Visitor<Instruction> {
     return new Push(newOperand);
   }
 
+  @Override
+  public Instruction visit(Pop op) {
+    return op;
+  }
+
   @Override
   public Instruction visit(Call op) {
     return op;
@@ -191,4 +215,38 @@ class PseudoRegisterReplacer implements AsmNode.Visitor<Instruction> {
     Operand newDest = remap(op.dst());
     return new Movsx(newSrc, newDest);
   }
-}
\ No newline at end of file
+
+  @Override
+  public Instruction visit(Shift op) {
+    Operand newDest = remap(op.dst());
+    return new Shift(op.operator(), op.type(), op.count(), newDest);
+  }
+
+  @Override
+  public Instruction visit(MulHigh op) {
+    Operand newOperand = remap(op.operand());
+    return new MulHigh(op.type(), op.signed(), newOperand);
+  }
+
+  @Override
+  public Instruction visit(Test op) {
+    Operand newLeft = remap(op.left());
+    Operand newRight = remap(op.right());
+    return new Test(op.type(), newLeft, newRight);
+  }
+
+  @Override
+  public Instruction visit(Lea op) {
+    Operand newBase = remap(op.base());
+    Operand newIndex = op.index() == null ? null : remap(op.index());
+    Operand newDest = remap(op.dst());
+    return new Lea(op.type(), newBase, newIndex, op.scale(), op.displacement(), newDest);
+  }
+
+  @Override
+  public Instruction visit(Xor op) {
+    Operand newSrc = remap(op.src());
+    Operand newDest = remap(op.dst());
+    return new Xor(op.type(), newSrc, newDest);
+  }
+}
@@ -0,0 +1,21 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.RegisterOperand;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+/** Assigns hardware registers to the pseudo-registers of a function. */
+public interface RegisterAllocator {
+  /** Doesn't allocate any registers: every pseudo-register lives on the stack. */
+  RegisterAllocator NONE = (instructions, symbolTable) -> ImmutableMap.of();
+
+  /**
+   * Returns the register of each pseudo-register (by name) that gets one. The rest are spilled to
+   * the stack.
+   */
+  Map<String, RegisterOperand> allocate(List<Instruction> instructions, SymbolTable symbolTable);
+}
@@ -20,6 +20,7 @@ import com.plasstech.lang.c.parser.Conditional;
 import com.plasstech.lang.c.parser.Constant;
 import com.plasstech.lang.c.parser.Continue;
 import com.plasstech.lang.c.parser.DoWhile;
+import com.plasstech.lang.c.parser.Exp;
 import com.plasstech.lang.c.parser.Expression;
 import com.plasstech.lang.c.parser.For;
 import com.plasstech.lang.c.parser.FunDecl;
@@ -212,6 +213,50 @@ public class TackyCodeGen implements AstNode.Visitor<TackyVal> {
     return dst;
   }
 
+  /**
+   * "Jumping code" for a condition: jumps to the target if the condition is the given truth value,
+   * and falls through otherwise. &&, || and ! become chains of jumps, instead of computing 0 or 1
+   * into a temporary and then testing it.
+   */
+  private void jumpIf(Exp condition, boolean when, String target) {
+    switch (condition) {
+      case BinExp binExp when binExp.operator() == TokenType.DOUBLE_AMP -> {
+        if (when) {
+          // Both have to be true; if the left is false, skip the right.
+          String skipLabel = UniqueId.makeUnique("and_false");
+          jumpIf(binExp.left(), false, skipLabel);
+          jumpIf(binExp.right(), true, target);
+          emit(new TackyLabel(skipLabel));
+        } else {
+          jumpIf(binExp.left(), false, target);
+          jumpIf(binExp.right(), false, target);
+        }
+      }
+      case BinExp binExp when binExp.operator() == TokenType.DOUBLE_BAR -> {
+        if (when) {
+          jumpIf(binExp.left(), true, target);
+          jumpIf(binExp.right(), true, target);
+        } else {
+          // Both have to be false; if the left is true, skip the right.
+          String skipLabel = UniqueId.makeUnique("or_true");
+          jumpIf(binExp.left(), true, skipLabel);
+          jumpIf(binExp.right(), false, target);
+          emit(new TackyLabel(skipLabel));
+        }
+      }
+      case UnaryExp unaryExp when unaryExp.operator() == TokenType.BANG ->
+        jumpIf(unaryExp.exp(), !when, target);
+      default -> {
+        TackyVal value = condition.accept(this);
+        if (when) {
+          emit(new TackyJumpNotZero(value, target));
+        } else {
+          emit(new TackyJumpZero(value, target));
+        }
+      }
+    }
+  }
+
   @Override
   public TackyVal visit(Return n) {
     TackyVal dst = n.exp().accept(this);
@@ -227,8 +272,7 @@ public class TackyCodeGen implements AstNode.Visitor<TackyVal> {
     String falseLabel = UniqueId.makeUnique("cond_false");
     String endLabel = UniqueId.makeUnique("cond_end");
 
-    TackyVal condDest = n.condition().accept(this);
-    emit(new TackyJumpZero(condDest, falseLabel));
+    jumpIf(n.condition(), false, falseLabel);
     TackyVal leftVal = n.left().accept(this);
     emit(new TackyCopy(leftVal, result));
     emit(new TackyJump(endLabel));
@@ -243,13 +287,12 @@ public class TackyCodeGen implements AstNode.Visitor<TackyVal> {
 
   @Override
   public TackyVal visit(If n) {
-    TackyVal condDest = n.condition().accept(this);
     String endLabel = UniqueId.makeUnique("if_end");
     String elseLabel = UniqueId.makeUnique("else");
     if (n.elseStmt().isPresent()) {
-      emit(new TackyJumpZero(condDest, elseLabel));
+      jumpIf(n.condition(), false, elseLabel);
     } else {
-      emit(new TackyJumpZero(condDest, endLabel));
+      jumpIf(n.condition(), false, endLabel);
     }
     n.then().accept(this);
     if (n.elseStmt().isPresent()) {
@@ -259,7 +302,7 @@ public class TackyCodeGen implements AstNode.Visitor<TackyVal> {
       n.elseStmt().get().accept(this);
     }
     emit(new TackyLabel(endLabel));
-    return condDest;
+    return null;
   }
 
   @Override
@@ -308,8 +351,7 @@ public class TackyCodeGen implements AstNode.Visitor<TackyVal> {
     emit(new TackyLabel(startLabel));
     n.body().accept(this);
     emit(new TackyLabel(continueLabel(n)));
-    TackyVal cond = n.condition().accept(this);
-    emit(new TackyJumpNotZero(cond, startLabel));
+    jumpIf(n.condition(), true, startLabel);
     emit(new TackyLabel(breakLabel(n)));
     return null;
   }
@@ -322,8 +364,7 @@ public class TackyCodeGen implements AstNode.Visitor<TackyVal> {
 
     String breakLabel = breakLabel(n);
     if (n.condition().isPresent()) {
-      TackyVal cond = n.condition().get().accept(this);
-      emit(new TackyJumpZero(cond, breakLabel));
+      jumpIf(n.condition().get(), false, breakLabel);
     }
     n.body().accept(this);
     emit(new TackyLabel(continueLabel(n)));
@@ -340,9 +381,8 @@ public class TackyCodeGen implements AstNode.Visitor<TackyVal> {
   public TackyVal visit(While n) {
     String continueLabel = continueLabel(n);
     emit(new TackyLabel(continueLabel));
-    TackyVal cond = n.condition().accept(this);
     String breakLabel = breakLabel(n);
-    emit(new TackyJumpZero(cond, breakLabel));
+    jumpIf(n.condition(), false, breakLabel);
     n.body().accept(this);
     emit(new TackyJump(continueLabel));
     emit(new TackyLabel(breakLabel));
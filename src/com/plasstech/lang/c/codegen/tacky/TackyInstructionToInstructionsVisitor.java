@@ -17,14 +17,18 @@ import com.plasstech.lang.c.codegen.Instruction;
 import com.plasstech.lang.c.codegen.Jmp;
 import com.plasstech.lang.c.codegen.JmpCC;
 import com.plasstech.lang.c.codegen.Label;
+import com.plasstech.lang.c.codegen.Lea;
 import com.plasstech.lang.c.codegen.Mov;
 import com.plasstech.lang.c.codegen.Movsx;
+import com.plasstech.lang.c.codegen.MulHigh;
 import com.plasstech.lang.c.codegen.Operand;
 import com.plasstech.lang.c.codegen.Pseudo;
 import com.plasstech.lang.c.codegen.Push;
 import com.plasstech.lang.c.codegen.RegisterOperand;
 import com.plasstech.lang.c.codegen.Ret;
 import com.plasstech.lang.c.codegen.SetCC;
+import com.plasstech.lang.c.codegen.Shift;
+import com.plasstech.lang.c.codegen.Test;
 import com.plasstech.lang.c.lex.TokenType;
 import com.plasstech.lang.c.typecheck.Symbol;
 import com.plasstech.lang.c.typecheck.SymbolTable;
@@ -80,9 +84,10 @@ class TackyInstructionToInstructionsVisitor implements TackyInstruction.Visitor<
     AssemblyType dstType = assemblyType(op.dst());
     AssemblyType srcType = assemblyType(op.src());
     if (op.operator() == TokenType.BANG) {
-      // Page 86, 265
-      instructions.add(new Cmp(srcType, ZERO, src));
+      // Page 86, 265. Zero the destination first, so that it can be done with an xor, which
+      // changes the flags.
       instructions.add(new Mov(dstType, ZERO, dst));
+      instructions.add(new Test(srcType, src, src));
       instructions.add(new SetCC(CondCode.E, dst));
     } else {
       instructions.add(new Mov(srcType, src, dst));
@@ -103,6 +108,10 @@ class TackyInstructionToInstructionsVisitor implements TackyInstruction.Visitor<
     switch (operator) {
       case SLASH:
       case PERCENT:
+        if (op.left() instanceof TackyVar && op.right() instanceof TackyConstant divisor
+            && divideByConstant(op, divisor.val(), instructions)) {
+          break;
+        }
         // mov (left, register(ax))
         instructions.add(new Mov(leftType, left, RegisterOperand.RAX));
         // cdq
@@ -124,21 +133,26 @@ class TackyInstructionToInstructionsVisitor implements TackyInstruction.Visitor<
       case LT:
       case LEQ:
       case NEQ:
-        // Page 86
-        instructions.add(new Cmp(leftType, right, left));
+        // Page 86, but zero the destination first, as for !
         instructions.add(new Mov(dstType, ZERO, dst));
-        instructions.add(new SetCC(CondCode.from(operator), dst));
+        instructions.add(new Cmp(leftType, right, left));
+        instructions.add(new SetCC(CondCode.from(operator, getType(op.left()).signed()), dst));
+        break;
+
+      case STAR:
+        if (!multiplyByPowerOfTwo(op, instructions) && !multiplyByLea(op, instructions)) {
+          emitMovAndBinary(op, instructions);
+        }
         break;
 
       case PLUS:
+        if (!addByLea(op, instructions)) {
+          emitMovAndBinary(op, instructions);
+        }
+        break;
+
       case MINUS:
-      case STAR:
-        // For +, -, *: 
-        // First move left to dest
-        instructions.add(new Mov(leftType, left, dst));
-        // Then use right and dest with the operator
-        // Are these types right?!
-        instructions.add(new AsmBinary(op.operator(), leftType, right, dst));
+        emitMovAndBinary(op, instructions);
         break;
 
       default:
@@ -147,6 +161,257 @@ class TackyInstructionToInstructionsVisitor implements TackyInstruction.Visitor<
     return instructions;
   }
 
+  /** For +, - and *: moves the left operand to the destination, then applies the operator. */
+  private void emitMovAndBinary(TackyBinary op, List<Instruction> instructions) {
+    AssemblyType leftType = assemblyType(op.left());
+    Operand dst = toOperand(op.dst());
+    // First move left to dest
+    instructions.add(new Mov(leftType, toOperand(op.left()), dst));
+    // Then use right and dest with the operator
+    // Are these types right?!
+    instructions.add(new AsmBinary(op.operator(), leftType, toOperand(op.right()), dst));
+  }
+
+  /**
+   * Multiplication by 2^k becomes a left shift. Returns false if neither operand is a power of two.
+   */
+  private boolean multiplyByPowerOfTwo(TackyBinary op, List<Instruction> instructions) {
+    AssemblyType type = assemblyType(op.left());
+    TackyVal other;
+    long factor;
+    if (op.right() instanceof TackyConstant c) {
+      other = op.left();
+      factor = c.val();
+    } else if (op.left() instanceof TackyConstant c) {
+      other = op.right();
+      factor = c.val();
+    } else {
+      return false;
+    }
+    factor &= mask(type);
+    if (Long.bitCount(factor) != 1 || factor == 1) {
+      return false;
+    }
+    Operand dst = toOperand(op.dst());
+    instructions.add(new Mov(type, toOperand(other), dst));
+    instructions.add(shift(Shift.Operator.SHL, type, Long.numberOfTrailingZeros(factor), dst));
+    return true;
+  }
+
+  /**
+   * Multiplication by 3, 5 or 9 becomes x + x * 2, 4 or 8, which is one lea if x ends up in a
+   * register. Returns false if neither operand is one of those.
+   */
+  private boolean multiplyByLea(TackyBinary op, List<Instruction> instructions) {
+    AssemblyType type = assemblyType(op.left());
+    TackyVal other;
+    long factor;
+    if (op.right() instanceof TackyConstant c && op.left() instanceof TackyVar) {
+      other = op.left();
+      factor = c.val();
+    } else if (op.left() instanceof TackyConstant c && op.right() instanceof TackyVar) {
+      other = op.right();
+      factor = c.val();
+    } else {
+      return false;
+    }
+    factor &= mask(type);
+    if (factor != 3 && factor != 5 && factor != 9) {
+      return false;
+    }
+    Operand x = toOperand(other);
+    instructions.add(new Lea(type, x, x, (int) factor - 1, 0, toOperand(op.dst())));
+    return true;
+  }
+
+  /**
+   * Adding two variables, or a variable and a constant, becomes an lea, which FixupVisitor turns
+   * back into a mov and an add unless the operands end up in registers. Adding 0 is just a mov,
+   * which goes away if the variable and the destination share a register. Returns false if both
+   * operands are constants, or the constant doesn't fit in 32 bits.
+   */
+  private boolean addByLea(TackyBinary op, List<Instruction> instructions) {
+    AssemblyType type = assemblyType(op.left());
+    Operand dst = toOperand(op.dst());
+    if (op.left() instanceof TackyVar && op.right() instanceof TackyVar) {
+      instructions.add(new Lea(type, toOperand(op.left()), toOperand(op.right()), 1, 0, dst));
+      return true;
+    }
+    TackyVal var;
+    long constant;
+    if (op.left() instanceof TackyVar && op.right() instanceof TackyConstant c) {
+      var = op.left();
+      constant = c.val();
+    } else if (op.left() instanceof TackyConstant c && op.right() instanceof TackyVar) {
+      var = op.right();
+      constant = c.val();
+    } else {
+      return false;
+    }
+    constant = imm(type, constant).value();
+    if (constant != (int) constant) {
+      return false;
+    }
+    if (constant == 0) {
+      instructions.add(new Mov(type, toOperand(var), dst));
+      return true;
+    }
+    instructions.add(new Lea(type, toOperand(var), null, 1, constant, dst));
+    return true;
+  }
+
+  /**
+   * Division and modulo by a constant become a multiplication by its "magic number" and shifts; see
+   * DivisionMagic. Division by a power of two is just shifts. Returns false for division by 0, and
+   * for signed division by the minimum value, which are left to idiv.
+   */
+  private boolean divideByConstant(TackyBinary op, long divisor, List<Instruction> instructions) {
+    AssemblyType type = assemblyType(op.left());
+    if (getType(op.left()).signed()) {
+      divisor = type == AssemblyType.Longword ? (int) divisor : divisor;
+      if (divisor == 0 || divisor == minValue(type)) {
+        return false;
+      }
+      divideSigned(op, type, divisor, instructions);
+    } else {
+      divisor &= mask(type);
+      if (divisor == 0) {
+        return false;
+      }
+      divideUnsigned(op, type, divisor, instructions);
+    }
+    return true;
+  }
+
+  private void divideSigned(TackyBinary op, AssemblyType type, long divisor,
+      List<Instruction> instructions) {
+    Operand left = toOperand(op.left());
+    Operand dst = toOperand(op.dst());
+    boolean quotient = op.operator() == TokenType.SLASH;
+    int bits = bits(type);
+    long absDivisor = Math.abs(divisor);
+    if (absDivisor == 1) {
+      if (quotient) {
+        instructions.add(new Mov(type, left, dst));
+        if (divisor < 0) {
+          instructions.add(new AsmUnary(TokenType.MINUS, type, dst));
+        }
+      } else {
+        instructions.add(new Mov(type, ZERO, dst));
+      }
+      return;
+    }
+
+    RegisterOperand result;
+    if (Long.bitCount(absDivisor) == 1) {
+      // Shifting right rounds down, so negative dividends get 2^k-1 added first, to round toward
+      // zero.
+      int k = Long.numberOfTrailingZeros(absDivisor);
+      result = RegisterOperand.RAX;
+      instructions.add(new Mov(type, left, result));
+      instructions.add(shift(Shift.Operator.SAR, type, bits - 1, result));
+      instructions.add(shift(Shift.Operator.SHR, type, bits - k, result));
+      instructions.add(new AsmBinary(TokenType.PLUS, type, left, result));
+      instructions.add(shift(Shift.Operator.SAR, type, k, result));
+    } else {
+      DivisionMagic.Signed magic = DivisionMagic.signed(bits, absDivisor);
+      result = RegisterOperand.RDX;
+      instructions.add(new Mov(type, imm(type, magic.multiplier()), RegisterOperand.RAX));
+      instructions.add(new MulHigh(type, true, left));
+      if (magic.addDividend()) {
+        instructions.add(new AsmBinary(TokenType.PLUS, type, left, result));
+      }
+      if (magic.shift() > 0) {
+        instructions.add(shift(Shift.Operator.SAR, type, magic.shift(), result));
+      }
+      // That rounds down; add 1 if it's negative, to round toward zero.
+      instructions.add(new Mov(type, result, RegisterOperand.RAX));
+      instructions.add(shift(Shift.Operator.SHR, type, bits - 1, RegisterOperand.RAX));
+      instructions.add(new AsmBinary(TokenType.PLUS, type, RegisterOperand.RAX, result));
+    }
+    // result = left / |divisor|
+    if (quotient) {
+      if (divisor < 0) {
+        instructions.add(new AsmUnary(TokenType.MINUS, type, result));
+      }
+      instructions.add(new Mov(type, result, dst));
+    } else {
+      // left % divisor = left - (left / |divisor|) * |divisor|
+      instructions.add(new AsmBinary(TokenType.STAR, type, imm(type, absDivisor), result));
+      instructions.add(new Mov(type, left, dst));
+      instructions.add(new AsmBinary(TokenType.MINUS, type, result, dst));
+    }
+  }
+
+  private void divideUnsigned(TackyBinary op, AssemblyType type, long divisor,
+      List<Instruction> instructions) {
+    Operand left = toOperand(op.left());
+    Operand dst = toOperand(op.dst());
+    boolean quotient = op.operator() == TokenType.SLASH;
+    int bits = bits(type);
+    if (divisor == 1) {
+      instructions.add(new Mov(type, quotient ? left : ZERO, dst));
+      return;
+    }
+    if (Long.bitCount(divisor) == 1) {
+      int k = Long.numberOfTrailingZeros(divisor);
+      instructions.add(new Mov(type, left, dst));
+      if (quotient) {
+        instructions.add(shift(Shift.Operator.SHR, type, k, dst));
+      } else {
+        // Keep the low k bits.
+        instructions.add(shift(Shift.Operator.SHL, type, bits - k, dst));
+        instructions.add(shift(Shift.Operator.SHR, type, bits - k, dst));
+      }
+      return;
+    }
+
+    DivisionMagic.Unsigned magic = DivisionMagic.unsigned(bits, divisor);
+    RegisterOperand result = RegisterOperand.RDX;
+    instructions.add(new Mov(type, imm(type, magic.multiplier()), RegisterOperand.RAX));
+    instructions.add(new MulHigh(type, false, left));
+    if (magic.add()) {
+      // The multiplier needs N+1 bits: result = (((left - t) >> 1) + t) >> (shift - 1)
+      instructions.add(new Mov(type, left, RegisterOperand.RAX));
+      instructions.add(new AsmBinary(TokenType.MINUS, type, result, RegisterOperand.RAX));
+      instructions.add(shift(Shift.Operator.SHR, type, 1, RegisterOperand.RAX));
+      instructions.add(new AsmBinary(TokenType.PLUS, type, RegisterOperand.RAX, result));
+      if (magic.shift() > 1) {
+        instructions.add(shift(Shift.Operator.SHR, type, magic.shift() - 1, result));
+      }
+    } else if (magic.shift() > 0) {
+      instructions.add(shift(Shift.Operator.SHR, type, magic.shift(), result));
+    }
+    if (quotient) {
+      instructions.add(new Mov(type, result, dst));
+    } else {
+      instructions.add(new AsmBinary(TokenType.STAR, type, imm(type, divisor), result));
+      instructions.add(new Mov(type, left, dst));
+      instructions.add(new AsmBinary(TokenType.MINUS, type, result, dst));
+    }
+  }
+
+  private static Shift shift(Shift.Operator operator, AssemblyType type, int count, Operand dst) {
+    return new Shift(operator, type, new Imm(count), dst);
+  }
+
+  /** Returns an immediate of the low bits of the value, as a signed number of the type's size. */
+  private static Imm imm(AssemblyType type, long value) {
+    return new Imm(type == AssemblyType.Longword ? (int) value : value);
+  }
+
+  private static int bits(AssemblyType type) {
+    return type == AssemblyType.Longword ? 32 : 64;
+  }
+
+  private static long mask(AssemblyType type) {
+    return type == AssemblyType.Longword ? 0xffffffffL : -1L;
+  }
+
+  private static long minValue(AssemblyType type) {
+    return type == AssemblyType.Longword ? Integer.MIN_VALUE : Long.MIN_VALUE;
+  }
+
   @Override
   public List<Instruction> visit(TackyReturn op) {
     AssemblyType srcType = assemblyType(op.val());
@@ -172,23 +437,45 @@ class TackyInstructionToInstructionsVisitor implements TackyInstruction.Visitor<
   @Override
   public List<Instruction> visit(TackyJumpZero op) {
     AssemblyType srcType = assemblyType(op.condition());
-    // Page 86
+    // Page 86, but with test instead of cmp $0
     Operand operand = toOperand(op.condition());
     return ImmutableList.of(
-        new Cmp(srcType, ZERO, operand),
+        new Test(srcType, operand, operand),
         new JmpCC(CondCode.E, op.target()));
   }
 
   @Override
   public List<Instruction> visit(TackyJumpNotZero op) {
     AssemblyType srcType = assemblyType(op.condition());
-    // Page 86
+    // Page 86, but with test instead of cmp $0
     Operand operand = toOperand(op.condition());
     return ImmutableList.of(
-        new Cmp(srcType, ZERO, operand),
+        new Test(srcType, operand, operand),
         new JmpCC(CondCode.NE, op.target()));
   }
 
+  /**
+   * Compares the operands of the relational operator and jumps on the result, instead of setting a
+   * variable to the result and then testing it. The jump is a TackyJumpZero or TackyJumpNotZero on
+   * the result of the comparison.
+   */
+  List<Instruction> compareAndJump(TackyBinary comparison, TackyInstruction jump) {
+    AssemblyType leftType = assemblyType(comparison.left());
+    CondCode condCode =
+        CondCode.from(comparison.operator(), getType(comparison.left()).signed());
+    String target = switch (jump) {
+      case TackyJumpZero jz -> {
+        condCode = condCode.negate();
+        yield jz.target();
+      }
+      case TackyJumpNotZero jnz -> jnz.target();
+      default -> throw new IllegalArgumentException("Not a conditional jump: " + jump);
+    };
+    return ImmutableList.of(
+        new Cmp(leftType, toOperand(comparison.right()), toOperand(comparison.left())),
+        new JmpCC(condCode, target));
+  }
+
   @Override
   public List<Instruction> visit(TackyLabel op) {
     return ImmutableList.of(new Label(op.target()));
@@ -1,7 +1,9 @@
 package com.plasstech.lang.c.codegen.tacky;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import com.plasstech.lang.c.codegen.AsmBinary;
@@ -11,13 +13,19 @@ import com.plasstech.lang.c.codegen.AsmStaticVariable;
 import com.plasstech.lang.c.codegen.AsmTopLevel;
 import com.plasstech.lang.c.codegen.AssemblyType;
 import com.plasstech.lang.c.codegen.BackendSymbolTable;
+import com.plasstech.lang.c.codegen.CondCode;
 import com.plasstech.lang.c.codegen.Imm;
 import com.plasstech.lang.c.codegen.Instruction;
 import com.plasstech.lang.c.codegen.Mov;
+import com.plasstech.lang.c.codegen.Pop;
 import com.plasstech.lang.c.codegen.Pseudo;
+import com.plasstech.lang.c.codegen.Push;
 import com.plasstech.lang.c.codegen.RegisterOperand;
+import com.plasstech.lang.c.codegen.Ret;
 import com.plasstech.lang.c.codegen.Stack;
+import com.plasstech.lang.c.common.PhaseTimer;
 import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.typecheck.StaticAttr;
 import com.plasstech.lang.c.typecheck.Symbol;
 import com.plasstech.lang.c.typecheck.SymbolTable;
 import com.plasstech.lang.c.typecheck.Type;
@@ -32,9 +40,18 @@ import com.plasstech.lang.c.typecheck.Type;
  */
 public class TackyToAsmCodeGen {
   private final SymbolTable symbolTable;
+  private final PhaseTimer timer;
+  private final RegisterAllocator allocator;
 
   public TackyToAsmCodeGen(SymbolTable symbolTable) {
+    this(symbolTable, PhaseTimer.NONE, RegisterAllocator.NONE);
+  }
+
+  public TackyToAsmCodeGen(SymbolTable symbolTable, PhaseTimer timer,
+      RegisterAllocator allocator) {
     this.symbolTable = symbolTable;
+    this.timer = timer;
+    this.allocator = allocator;
   }
 
   public AsmState generate(TackyProgram program) {
@@ -62,6 +79,70 @@ public class TackyToAsmCodeGen {
   }
 
   private AsmTopLevel generateFn(TackyFunction function) {
+    timer.count("tacky instructions", function.body().size());
+    List<Instruction> instructions = timer.time("asm-gen", () -> generateInstructions(function));
+
+    // 4 because they're ints now??? that's not right
+    // (Parameters get their own slots when they're replaced anyway, so an allocator doesn't need
+    // this.)
+    int initialProcOffset =
+        allocator == RegisterAllocator.NONE ? 4 * function.params().size() : 0;
+    Map<String, RegisterOperand> registers = timer.time("allocate-registers",
+        () -> allocator.allocate(instructions, symbolTable));
+    //    System.err.println(symbolTable);
+    PseudoRegisterReplacer siv = timer.time("replace-pseudos",
+        () -> new PseudoRegisterReplacer(new BackendSymbolTable(symbolTable), initialProcOffset,
+            registers));
+    // remap from Pseudo -> Stack, and get the total # of bytes.
+    List<Instruction> replaced = timer.time("replace-pseudos",
+        () -> instructions.stream().map(asmNode -> asmNode.accept(siv)).toList());
+
+    FixupVisitor fv = new FixupVisitor();
+    List<Instruction> fixedUp = timer.time("fixup", () -> replaced.stream()
+        // map mov stack1, stack2 -> mov stack1, r10; mov r10, stack2 etc
+        .map(asmNode -> asmNode.accept(fv)) // returns a list for each instruction
+        .flatMap(List::stream)
+        .collect(Collectors.toList()));
+
+    // Callee-saved registers that were allocated are pushed after the stack is allocated, and
+    // popped before each return.
+    List<RegisterOperand> calleeSaved = RegisterOperand.CALLEE_SAVED.stream()
+        .filter(registers::containsValue)
+        .toList();
+    if (!calleeSaved.isEmpty()) {
+      List<Instruction> withSaves = new ArrayList<>();
+      calleeSaved.forEach(register -> withSaves.add(new Push(register)));
+      for (Instruction instruction : fixedUp) {
+        if (instruction instanceof Ret) {
+          calleeSaved.reversed().forEach(register -> withSaves.add(new Pop(register)));
+        }
+        withSaves.add(instruction);
+      }
+      fixedUp = withSaves;
+    }
+
+    // Prepend an AllocateStack with the appropriate number of bytes (if it's > 0)
+    int currentProcOffset = siv.currentProcOffset();
+    int savedBytes = 8 * calleeSaved.size();
+    if (currentProcOffset != 0 || savedBytes % 16 != 0) {
+      // Round this up so that the stack, including the saved registers, is a multiple of 16.
+      currentProcOffset =
+          (int) (Math.ceil((currentProcOffset + savedBytes) / 16.0) * 16) - savedBytes;
+      Instruction allocateStack =
+          new AsmBinary(TokenType.MINUS, AssemblyType.Quadword, new Imm(currentProcOffset),
+              RegisterOperand.RSP);
+      fixedUp.add(0, allocateStack);
+    }
+    timer.count("asm instructions", fixedUp.size());
+    if (timer.enabled()) {
+      timer.count("stack bytes " + function.identifier(), currentProcOffset);
+    }
+
+    return new AsmFunction(function.identifier(), function.global(), fixedUp);
+  }
+
+  /** Converts the function's TACKY to asm, with pseudo-registers. */
+  private List<Instruction> generateInstructions(TackyFunction function) {
     List<Instruction> instructions = new ArrayList<>();
     // Page 200, 264 (bottom)
     // Copy input registers to param names.
@@ -83,40 +164,71 @@ public class TackyToAsmCodeGen {
           .add(new Mov(AssemblyType.from(type), new Stack(offset), new Pseudo(paramName, type)));
       offset += 8;
     }
-    // 4 because they're ints now??? that's not right
-    int currentProcOffset = 4 * function.params().size();
-
-    TackyInstruction.Visitor<List<Instruction>> visitor =
+    TackyInstructionToInstructionsVisitor visitor =
         new TackyInstructionToInstructionsVisitor(symbolTable);
-    List<Instruction> opInstructions = function.body().stream()
-        .map(ti -> ti.accept(visitor)) // each tackyinstruction becomes a list of asmnodes
-        .flatMap(List::stream).toList();
-
-    //    System.err.println(symbolTable);
-    PseudoRegisterReplacer siv =
-        new PseudoRegisterReplacer(new BackendSymbolTable(symbolTable), currentProcOffset);
-    FixupVisitor fv = new FixupVisitor();
-    instructions.addAll(opInstructions);
-    instructions = instructions.stream()
-        // remap from Pseudo -> Stack, and get the total # of bytes.
-        .map(asmNode -> asmNode.accept(siv))
-        // map mov stack1, stack2 -> mov stack1, r10; mov r10, stack2 etc
-        .map(asmNode -> asmNode.accept(fv)) // returns a list for each instruction
-        .flatMap(List::stream)
-        .collect(Collectors.toList());
+    List<TackyInstruction> body = function.body();
+    Map<String, Integer> reads = countReads(body);
+    for (int i = 0; i < body.size(); ++i) {
+      TackyInstruction ti = body.get(i);
+      if (i + 1 < body.size() && ti instanceof TackyBinary comparison
+          && isFusable(comparison, body.get(i + 1), reads)) {
+        instructions.addAll(visitor.compareAndJump(comparison, body.get(i + 1)));
+        ++i;
+        continue;
+      }
+      // each tackyinstruction becomes a list of asmnodes
+      instructions.addAll(ti.accept(visitor));
+    }
+    return instructions;
+  }
 
-    // Prepend an AllocateStack with the appropriate number of bytes (if it's > 0)
-    currentProcOffset = siv.currentProcOffset();
-    if (currentProcOffset != 0) {
-      // Round this up to the nearest 16.
-      currentProcOffset = (int) (Math.ceil(currentProcOffset / 16.0) * 16);
-      Instruction allocateStack =
-          new AsmBinary(TokenType.MINUS, AssemblyType.Quadword, new Imm(currentProcOffset),
-              RegisterOperand.RSP);
-      instructions.add(0, allocateStack);
+  /**
+   * Whether the comparison can be fused with the jump after it: the jump is on the result of the
+   * comparison, and nothing else reads the result, so it doesn't need to be stored.
+   */
+  private boolean isFusable(TackyBinary comparison, TackyInstruction next,
+      Map<String, Integer> reads) {
+    if (CondCode.from(comparison.operator()) == null) {
+      return false;
+    }
+    TackyVal condition = switch (next) {
+      case TackyJumpZero jz -> jz.condition();
+      case TackyJumpNotZero jnz -> jnz.condition();
+      default -> null;
+    };
+    String result = comparison.dst().identifier();
+    if (!(condition instanceof TackyVar var) || !var.identifier().equals(result)
+        || reads.getOrDefault(result, 0) != 1) {
+      return false;
     }
+    // Other functions can read static variables.
+    Symbol symbol = symbolTable.get(result);
+    return symbol == null || !(symbol.attribute() instanceof StaticAttr);
+  }
 
-    return new AsmFunction(function.identifier(), function.global(), instructions);
+  /** Counts how many times each variable is read in the body. */
+  private static Map<String, Integer> countReads(List<TackyInstruction> body) {
+    Map<String, Integer> reads = new HashMap<>();
+    for (TackyInstruction instruction : body) {
+      List<TackyVal> read = switch (instruction) {
+        case TackyCopy copy -> List.of(copy.src());
+        case TackyUnary unary -> List.of(unary.src());
+        case TackyBinary binary -> List.of(binary.left(), binary.right());
+        case TackySignExtend signExtend -> List.of(signExtend.src());
+        case TackyTruncate truncate -> List.of(truncate.src());
+        case TackyFunCall call -> call.args();
+        case TackyJumpZero jz -> List.of(jz.condition());
+        case TackyJumpNotZero jnz -> List.of(jnz.condition());
+        case TackyReturn r -> List.of(r.val());
+        default -> List.of();
+      };
+      for (TackyVal val : read) {
+        if (val instanceof TackyVar var) {
+          reads.merge(var.identifier(), 1, Integer::sum);
+        }
+      }
+    }
+    return reads;
   }
 
 }
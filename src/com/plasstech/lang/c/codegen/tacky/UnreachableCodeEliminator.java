@@ -0,0 +1,97 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Removes code that can't be reached from the start of a function, jumps to the next block, and
+ * labels that nothing jumps to.
+ */
+public class UnreachableCodeEliminator {
+
+  /** Returns the program with unreachable code removed from each function. */
+  public TackyProgram eliminate(TackyProgram program) {
+    List<TackyTopLevel> topLevels = program.topLevelDefinitions().stream()
+        .map(topLevel -> switch (topLevel) {
+          case TackyFunction fn -> eliminate(fn);
+          default -> topLevel;
+        })
+        .toList();
+    return new TackyProgram(topLevels);
+  }
+
+  TackyFunction eliminate(TackyFunction function) {
+    ControlFlowGraph graph = ControlFlowGraph.build(function.body());
+    eliminate(graph);
+    return new TackyFunction(function.identifier(), function.global(), function.params(),
+        ImmutableList.copyOf(graph.flatten()));
+  }
+
+  void eliminate(ControlFlowGraph graph) {
+    removeUnreachableBlocks(graph);
+    removeUselessJumps(graph);
+    removeUselessLabels(graph);
+  }
+
+  private static void removeUnreachableBlocks(ControlFlowGraph graph) {
+    BitSet reached = new BitSet(graph.blockCount());
+    Deque<Integer> worklist = new ArrayDeque<>();
+    worklist.push(graph.entry());
+    while (!worklist.isEmpty()) {
+      int node = worklist.pop();
+      for (int successor : graph.successors(node)) {
+        if (successor < graph.blockCount() && !reached.get(successor)) {
+          reached.set(successor);
+          worklist.push(successor);
+        }
+      }
+    }
+    for (int b = 0; b < graph.blockCount(); ++b) {
+      if (!reached.get(b)) {
+        graph.remove(b);
+      }
+    }
+  }
+
+  /** Removes jumps (and conditional jumps) to the block that would be next anyway. */
+  private static void removeUselessJumps(ControlFlowGraph graph) {
+    // Go backwards, to keep track of the next block.
+    int next = graph.exit();
+    for (int b = graph.blockCount() - 1; b >= 0; --b) {
+      if (graph.isRemoved(b)) {
+        continue;
+      }
+      List<TackyInstruction> block = graph.block(b);
+      TackyInstruction last = block.getLast();
+      boolean jumps = last instanceof TackyJump || last instanceof TackyJumpZero
+          || last instanceof TackyJumpNotZero;
+      int[] successors = graph.successors(b);
+      // Every way out of the block goes to the next one.
+      if (jumps && successors.length == 1 && successors[0] == next) {
+        block.removeLast();
+      }
+      next = b;
+    }
+  }
+
+  /** Removes labels that are only reached by falling through from the previous block. */
+  private static void removeUselessLabels(ControlFlowGraph graph) {
+    int previous = graph.entry();
+    for (int b = 0; b < graph.blockCount(); ++b) {
+      if (graph.isRemoved(b)) {
+        continue;
+      }
+      List<TackyInstruction> block = graph.block(b);
+      int[] predecessors = graph.predecessors(b);
+      if (!block.isEmpty() && block.getFirst() instanceof TackyLabel
+          && predecessors.length == 1 && predecessors[0] == previous) {
+        block.removeFirst();
+      }
+      previous = b;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.plasstech.lang.c.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharSequence view of bytes, one char per byte (i.e., ISO-8859-1), so that source text can be
+ * scanned straight out of a (memory-mapped) buffer without decoding or copying it. Identifiers and
+ * keywords are ASCII, so this is only lossy inside comments.
+ */
+public class ByteCharSequence implements CharSequence {
+  private final ByteBuffer bytes;
+
+  public ByteCharSequence(ByteBuffer bytes) {
+    this.bytes = bytes;
+  }
+
+  @Override
+  public int length() {
+    return bytes.limit();
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) (bytes.get(index) & 0xff);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return new ByteCharSequence(bytes.slice(start, end - start));
+  }
+
+  @Override
+  public String toString() {
+    byte[] copy = new byte[bytes.limit()];
+    bytes.get(0, copy);
+    return new String(copy, StandardCharsets.ISO_8859_1);
+  }
+}
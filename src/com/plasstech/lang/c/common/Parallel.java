@@ -0,0 +1,21 @@
+package com.plasstech.lang.c.common;
+
+/** Decides when to split independent work, e.g., functions, across threads. */
+public class Parallel {
+  private static final boolean MANY_PROCESSORS = Runtime.getRuntime().availableProcessors() > 1;
+
+  private Parallel() {}
+
+  /**
+   * Returns if it's worth forking the given number of independent tasks: only if there's more than
+   * one task, and more than one processor to run them. Otherwise forking only adds overhead.
+   */
+  public static boolean worthForking(int tasks) {
+    return manyProcessors() && tasks > 1;
+  }
+
+  /** Returns if there's more than one processor to run forked tasks on. */
+  public static boolean manyProcessors() {
+    return MANY_PROCESSORS;
+  }
+}
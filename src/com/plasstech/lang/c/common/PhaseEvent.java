@@ -0,0 +1,26 @@
+package com.plasstech.lang.c.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** JFR event for one compiler phase. The event's duration is the phase's wall time. */
+@Name("com.plasstech.lang.c.Phase")
+@Label("Compiler Phase")
+@Category("Compiler")
+@Description("One phase of compiling a translation unit")
+class PhaseEvent extends jdk.jfr.Event {
+  @Label("Phase")
+  String phase;
+
+  @Label("CPU Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long cpuTime;
+
+  @Label("Allocated")
+  @DataAmount(DataAmount.BYTES)
+  long allocated;
+}
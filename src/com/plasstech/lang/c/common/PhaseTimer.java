@@ -0,0 +1,139 @@
+package com.plasstech.lang.c.common;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Measures the wall time, CPU time and allocated bytes of each phase of a compilation, and keeps
+ * counts (e.g., of tokens). Phases are also recorded as JFR events, when JFR is recording them.
+ * <p>
+ * A timer must only be used by one thread, and its measurements are of that thread. A phase that
+ * hands work to other threads, e.g., with a parallel stream, runs that work through timeWorker, so
+ * that its CPU time and allocation are added to the phase too.
+ */
+public class PhaseTimer {
+  /** A timer that doesn't report (but still records JFR events). */
+  public static final PhaseTimer NONE = new PhaseTimer(false);
+
+  private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private static class Phase {
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+  }
+
+  private final boolean enabled;
+  private final Map<String, Phase> phases = new LinkedHashMap<>();
+  private final Map<String, Long> counts = new LinkedHashMap<>();
+  // The thread that's running a phase, while one is running.
+  private volatile Thread owner;
+  // What timeWorker measured on other threads, since the last phase ended.
+  private final LongAdder workerCpuNanos = new LongAdder();
+  private final LongAdder workerAllocatedBytes = new LongAdder();
+
+  public PhaseTimer() {
+    this(true);
+  }
+
+  private PhaseTimer(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /** Returns if this timer reports; callers can skip work that's only needed for the report. */
+  public boolean enabled() {
+    return enabled;
+  }
+
+  /**
+   * Runs the given phase and adds its measurements to the phase with the given name, so a phase
+   * that runs once per function is reported as a total.
+   */
+  public <T> T time(String name, Supplier<T> phase) {
+    PhaseEvent event = new PhaseEvent();
+    if (!enabled && !event.isEnabled()) {
+      return phase.get();
+    }
+    Thread previousOwner = owner;
+    owner = Thread.currentThread();
+    long cpuStart = THREADS.getCurrentThreadCpuTime();
+    long allocatedStart = THREADS.getCurrentThreadAllocatedBytes();
+    long wallStart = System.nanoTime();
+    event.begin();
+    try {
+      return phase.get();
+    } finally {
+      event.end();
+      long wall = System.nanoTime() - wallStart;
+      long cpu = THREADS.getCurrentThreadCpuTime() - cpuStart + workerCpuNanos.sumThenReset();
+      long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedStart
+          + workerAllocatedBytes.sumThenReset();
+      owner = previousOwner;
+      if (event.shouldCommit()) {
+        event.phase = name;
+        event.cpuTime = cpu;
+        event.allocated = allocated;
+        event.commit();
+      }
+      if (enabled) {
+        Phase totals = phases.computeIfAbsent(name, n -> new Phase());
+        totals.wallNanos += wall;
+        totals.cpuNanos += cpu;
+        totals.allocatedBytes += allocated;
+      }
+    }
+  }
+
+  public void time(String name, Runnable phase) {
+    time(name, () -> {
+      phase.run();
+      return null;
+    });
+  }
+
+  /**
+   * Runs part of the current phase, which may be on another thread, and adds its CPU time and
+   * allocation to the phase. Work that runs on the phase's own thread is already measured, and
+   * isn't measured again. Only a timer that reports measures workers, since NONE is shared by
+   * every thread.
+   */
+  public <T> T timeWorker(Supplier<T> work) {
+    Thread phaseThread = owner;
+    if (!enabled || phaseThread == null || phaseThread == Thread.currentThread()) {
+      return work.get();
+    }
+    long cpuStart = THREADS.getCurrentThreadCpuTime();
+    long allocatedStart = THREADS.getCurrentThreadAllocatedBytes();
+    try {
+      return work.get();
+    } finally {
+      workerCpuNanos.add(THREADS.getCurrentThreadCpuTime() - cpuStart);
+      workerAllocatedBytes.add(THREADS.getCurrentThreadAllocatedBytes() - allocatedStart);
+    }
+  }
+
+  /** Adds to the count with the given name. */
+  public void count(String name, long value) {
+    if (enabled) {
+      counts.merge(name, value, Long::sum);
+    }
+  }
+
+  public void report(PrintStream out) {
+    out.printf("%-20s %10s %10s %14s%n", "phase", "wall ms", "cpu ms", "allocated");
+    for (Map.Entry<String, Phase> entry : phases.entrySet()) {
+      Phase phase = entry.getValue();
+      out.printf("%-20s %10.3f %10.3f %14d%n", entry.getKey(), phase.wallNanos / 1e6,
+          phase.cpuNanos / 1e6, phase.allocatedBytes);
+    }
+    for (Map.Entry<String, Long> entry : counts.entrySet()) {
+      out.printf("%-20s %10d%n", entry.getKey(), entry.getValue());
+    }
+  }
+}
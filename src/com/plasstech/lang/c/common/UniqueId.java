@@ -1,9 +1,34 @@
 package com.plasstech.lang.c.common;
 
+import java.util.function.Supplier;
+
+/**
+ * Generates unique names. Numbering is per thread, so that translation units that are compiled
+ * concurrently each get the same names they would get in a cold run.
+ */
 public class UniqueId {
-  private static int id;
+  private static class Counter {
+    private int id;
+  }
+
+  private static final ThreadLocal<Counter> COUNTER = ThreadLocal.withInitial(Counter::new);
 
   public static String makeUnique(String prefix) {
-    return String.format("%s.%d", prefix, id++);
+    return String.format("%s.%d", prefix, COUNTER.get().id++);
+  }
+
+  /**
+   * Runs the given compilation with numbering that starts from scratch, then restores the previous
+   * numbering. Restoring matters for fork-join workers, which may run another unit's compilation
+   * while they wait in the middle of their own.
+   */
+  public static <T> T withFreshIds(Supplier<T> compilation) {
+    Counter previous = COUNTER.get();
+    COUNTER.set(new Counter());
+    try {
+      return compilation.get();
+    } finally {
+      COUNTER.set(previous);
+    }
   }
 }
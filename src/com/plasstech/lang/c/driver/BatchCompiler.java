@@ -0,0 +1,151 @@
+package com.plasstech.lang.c.driver;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.plasstech.lang.c.common.PhaseTimer;
+import com.plasstech.lang.c.common.UniqueId;
+
+/**
+ * Compiles many translation units in one process. Each unit gets its own compilation context (a
+ * fresh Driver, with its own symbol table, and fresh unique ids), so units can be compiled in
+ * parallel on a fork-join pool, and each one produces the same output as a cold run.
+ * <p>
+ * Arguments are paths of preprocessed (.i) files, or @path of a manifest file that lists one path
+ * per line. Each foo.i is compiled to foo.s. Every unit is compiled with the same options, e.g.,
+ * the -O level.
+ * <p>
+ * The assembly language is written to a temporary file, which replaces foo.s only if the unit
+ * compiled. A unit that fails leaves no foo.s, so that make doesn't think it's up to date.
+ */
+public class BatchCompiler {
+  private final CompileOptions options;
+
+  BatchCompiler(CompileOptions options) {
+    this.options = options;
+  }
+
+  /**
+   * Compiles all the given units (or manifests).
+   *
+   * @return the process exit code: 0 if all units compiled, otherwise the exit code of the first
+   *         unit (in argument order) that failed.
+   */
+  public int compileAll(List<String> args) {
+    List<Path> units = expandManifests(args);
+    // One worker per core; the common pool leaves one core for the (idle) main thread.
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+      for (Path unit : units) {
+        tasks.add(pool.submit(() -> compile(unit)));
+      }
+      int rv = 0;
+      for (ForkJoinTask<Integer> task : tasks) {
+        int unitRv = task.join();
+        if (rv == 0) {
+          rv = unitRv;
+        }
+      }
+      return rv;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static List<Path> expandManifests(List<String> args) {
+    List<Path> units = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("@")) {
+        Path manifest = Path.of(arg.substring(1));
+        try {
+          for (String line : Files.readAllLines(manifest)) {
+            line = line.strip();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+              // Relative paths are relative to the manifest.
+              units.add(manifest.resolveSibling(line));
+            }
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException("Could not read manifest " + manifest, e);
+        }
+      } else {
+        units.add(Path.of(arg));
+      }
+    }
+    return units;
+  }
+
+  static Path outputPath(Path unit) {
+    String name = unit.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    if (dot > 0) {
+      name = name.substring(0, dot);
+    }
+    return unit.resolveSibling(name + ".s");
+  }
+
+  private int compile(Path unit) {
+    ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+    PrintStream err = new PrintStream(errBytes, true, StandardCharsets.UTF_8);
+    Path output = outputPath(unit);
+    // In the same directory, so it can be moved into place.
+    Path temp = output.resolveSibling(
+        output.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+    int rv;
+    try {
+      CharSequence input = SourceReader.read(unit);
+      try (PrintStream out = new PrintStream(
+          new BufferedOutputStream(Files.newOutputStream(temp)), false, StandardCharsets.UTF_8)) {
+        rv = UniqueId.withFreshIds(
+            () -> options.newDriver(PhaseTimer.NONE).run(null, input, out, err));
+        // PrintStream doesn't throw, it only remembers.
+        if (out.checkError()) {
+          throw new IOException("Could not write " + temp);
+        }
+      }
+      if (rv == 0) {
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      }
+    } catch (IOException e) {
+      err.println("Could not compile: " + e.getMessage());
+      rv = 1;
+    } catch (Throwable e) {
+      // Including Errors, e.g., a StackOverflowError, which mustn't stop the other units.
+      e.printStackTrace(err);
+      rv = 1;
+    }
+    deleteIfExists(temp, err);
+    if (rv != 0) {
+      // Don't leave the output of an earlier compile, which would look up to date.
+      deleteIfExists(output, err);
+    }
+    if (errBytes.size() > 0) {
+      // Print all of a unit's errors together.
+      synchronized (System.err) {
+        System.err.print(unit + ": " + errBytes.toString(StandardCharsets.UTF_8));
+      }
+    }
+    return rv;
+  }
+
+  private static void deleteIfExists(Path path, PrintStream err) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      err.println("Could not delete " + path + ": " + e.getMessage());
+    }
+  }
+}
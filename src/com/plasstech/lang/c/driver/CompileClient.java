@@ -0,0 +1,108 @@
+package com.plasstech.lang.c.driver;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Thin client for the CompileServer. Only uses JDK classes, so that it starts up quickly.
+ * <p>
+ * Usage: CompileClient socket [option ...] stage source output
+ * <p>
+ * The options (e.g., -O2) are sent with the stage, and replace the ones the server was started
+ * with.
+ * <p>
+ * Exits with the exit code of the compilation.
+ */
+public class CompileClient {
+  public static void main(String args[]) {
+    if (args.length == 2 && args[1].equals(CompileServer.SHUTDOWN)) {
+      System.exit(request(Path.of(args[0]), CompileServer.SHUTDOWN + "\n"));
+    }
+    if (args.length < 4) {
+      System.err.println("Usage: CompileClient socket [option ...] stage source output");
+      System.exit(1);
+    }
+    int stage = args.length - 3;
+    StringBuilder stageLine = new StringBuilder(args[stage]);
+    for (int i = 1; i < stage; ++i) {
+      stageLine.append(' ').append(args[i]);
+    }
+    String request = String.format("%s\n%s\n%s\n",
+        stageLine, Path.of(args[stage + 1]).toAbsolutePath(), absolute(args[stage + 2]));
+    System.exit(request(Path.of(args[0]), request));
+  }
+
+  private static String absolute(String outputPath) {
+    if (outputPath.equals(CompileServer.TO_CLIENT)) {
+      return outputPath;
+    }
+    // The server may be running in a different directory.
+    return Path.of(outputPath).toAbsolutePath().toString();
+  }
+
+  private static int request(Path socketPath, String request) {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socketPath));
+      OutputStream os = Channels.newOutputStream(channel);
+      os.write(request.getBytes(StandardCharsets.UTF_8));
+      os.flush();
+
+      DataInputStream is = new DataInputStream(Channels.newInputStream(channel));
+      int[] header = parseHeader(readLine(is));
+      if (header == null) {
+        System.err.println("Compile server at " + socketPath + " did not reply");
+        return 1;
+      }
+      copy(is, header[1], System.out);
+      copy(is, header[2], System.err);
+      return header[0];
+    } catch (IOException e) {
+      System.err.println("Could not talk to compile server at " + socketPath + ": "
+          + e.getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * Returns the exit code, stdout length and stderr length from the reply header, or null if it's
+   * missing or malformed, e.g., because the server died.
+   */
+  static int[] parseHeader(String line) {
+    String[] fields = line.split(" ");
+    if (fields.length != 3) {
+      return null;
+    }
+    try {
+      int[] header = {
+          Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2])};
+      return header[1] >= 0 && header[2] >= 0 ? header : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static String readLine(InputStream is) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int c = is.read();
+    while (c != -1 && c != '\n') {
+      sb.append((char) c);
+      c = is.read();
+    }
+    return sb.toString();
+  }
+
+  private static void copy(DataInputStream is, int length, OutputStream os) throws IOException {
+    byte[] bytes = new byte[length];
+    is.readFully(bytes);
+    os.write(bytes);
+    os.flush();
+  }
+}
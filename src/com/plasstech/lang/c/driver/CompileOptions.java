@@ -0,0 +1,78 @@
+package com.plasstech.lang.c.driver;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+import com.plasstech.lang.c.codegen.tacky.GraphColoringAllocator;
+import com.plasstech.lang.c.codegen.tacky.LinearScanAllocator;
+import com.plasstech.lang.c.codegen.tacky.Optimization;
+import com.plasstech.lang.c.codegen.tacky.RegisterAllocator;
+import com.plasstech.lang.c.common.PhaseTimer;
+
+/**
+ * How to compile: the optimizations and the register allocator, from the -O level and the flags
+ * for each one. The command line, the batch compiler and the compile server all parse their flags
+ * here, so the same flags compile the same way in every mode.
+ * <p>
+ * The allocators don't keep any state, so one set of options can be shared by parallel compiles.
+ */
+record CompileOptions(RegisterAllocator allocator, Set<Optimization> optimizations) {
+  /** No optimizations, and every variable on the stack, like -O0. */
+  static final CompileOptions DEFAULT =
+      new CompileOptions(RegisterAllocator.NONE, EnumSet.noneOf(Optimization.class));
+
+  CompileOptions {
+    optimizations = Sets.immutableEnumSet(optimizations);
+  }
+
+  /**
+   * Parses the option flags in args, in order, so a later -O level replaces an earlier one. An
+   * explicit --regalloc overrides the allocator picked by the level, wherever it is. The args that
+   * aren't options (e.g., the stage and the files) are added to rest, in order.
+   */
+  static CompileOptions parse(List<String> args, List<String> rest) {
+    RegisterAllocator allocator = null;
+    // The allocator for the -O level, unless --regalloc picks one.
+    RegisterAllocator levelAllocator = RegisterAllocator.NONE;
+    Set<Optimization> optimizations = EnumSet.noneOf(Optimization.class);
+    for (String arg : args) {
+      if (arg.equals("--regalloc=coloring")) {
+        // Put pseudo-registers in hardware registers, instead of all on the stack.
+        allocator = new GraphColoringAllocator();
+      } else if (arg.equals("--regalloc=linear")) {
+        // Faster to compile, but doesn't allocate registers as well.
+        allocator = new LinearScanAllocator();
+      } else if (arg.equals("-O0")) {
+        optimizations.clear();
+        levelAllocator = RegisterAllocator.NONE;
+      } else if (arg.equals("-O") || arg.equals("-O1")) {
+        // Every TACKY optimization, and the allocator that compiles faster.
+        optimizations.addAll(EnumSet.allOf(Optimization.class));
+        levelAllocator = new LinearScanAllocator();
+      } else if (arg.equals("-O2")) {
+        optimizations.addAll(EnumSet.allOf(Optimization.class));
+        levelAllocator = new GraphColoringAllocator();
+      } else if (arg.equals("--fold-constants")) {
+        optimizations.add(Optimization.FOLD_CONSTANTS);
+      } else if (arg.equals("--eliminate-unreachable-code")) {
+        optimizations.add(Optimization.ELIMINATE_UNREACHABLE_CODE);
+      } else if (arg.equals("--propagate-copies")) {
+        optimizations.add(Optimization.PROPAGATE_COPIES);
+      } else if (arg.equals("--eliminate-dead-stores")) {
+        optimizations.add(Optimization.ELIMINATE_DEAD_STORES);
+      } else if (arg.equals("--peephole")) {
+        optimizations.add(Optimization.PEEPHOLE);
+      } else {
+        rest.add(arg);
+      }
+    }
+    return new CompileOptions(allocator != null ? allocator : levelAllocator, optimizations);
+  }
+
+  /** Returns a Driver for one compilation with these options. */
+  Driver newDriver(PhaseTimer timer) {
+    return new Driver(timer, allocator, optimizations);
+  }
+}
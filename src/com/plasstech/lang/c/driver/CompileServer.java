@@ -0,0 +1,169 @@
+package com.plasstech.lang.c.driver;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.plasstech.lang.c.common.PhaseTimer;
+import com.plasstech.lang.c.common.UniqueId;
+
+/**
+ * Long-running compiler that accepts requests on a Unix domain socket, so that a build doesn't pay
+ * for JVM startup and JIT warm-up on every file. Requests are handled one at a time, and each one
+ * gets a fresh Driver (and therefore symbol table) and fresh unique ids, so the output matches a
+ * cold run byte for byte.
+ * <p>
+ * Request: three lines: the stage flag ("-S" for assembly language), followed by the option flags
+ * (e.g., "-S -O2"), separated by spaces; the source path; and the output path ("-" to send the
+ * output back to the client). A request without option flags is compiled with the options the
+ * server was started with; otherwise, with only its own.
+ * <p>
+ * Response: a header line "exitcode stdoutbytes stderrbytes", followed by the stdout bytes (if
+ * they were requested) and the stderr bytes.
+ * <p>
+ * The stage flag "--shutdown" stops the server.
+ */
+public class CompileServer {
+  static final String SHUTDOWN = "--shutdown";
+  static final String TO_CLIENT = "-";
+
+  private final Path socketPath;
+  private final CompileOptions options;
+
+  public CompileServer(Path socketPath) {
+    this(socketPath, CompileOptions.DEFAULT);
+  }
+
+  CompileServer(Path socketPath, CompileOptions options) {
+    this.socketPath = socketPath;
+    this.options = options;
+  }
+
+  public void serve() {
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      // Clean up after a previous server that didn't exit cleanly.
+      Files.deleteIfExists(socketPath);
+      server.bind(UnixDomainSocketAddress.of(socketPath));
+      boolean running = true;
+      while (running) {
+        try (SocketChannel client = server.accept()) {
+          running = handle(client);
+        } catch (IOException e) {
+          // Only this request is lost; keep serving.
+          System.err.println("Could not handle request: " + e.getMessage());
+        } catch (Throwable e) {
+          // Same, e.g., for an OutOfMemoryError while reading the request.
+          System.err.println("Could not handle request: " + e);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not serve on " + socketPath, e);
+    } finally {
+      try {
+        Files.deleteIfExists(socketPath);
+      } catch (IOException e) {
+        // Nothing to be done.
+      }
+    }
+  }
+
+  /** Handles one request. Returns false if the server should stop. */
+  private boolean handle(SocketChannel client) throws IOException {
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+    String stageLine = reader.readLine();
+    if (stageLine == null || stageLine.equals(SHUTDOWN)) {
+      reply(client, 0, new byte[0], new byte[0]);
+      return stageLine == null;
+    }
+    String sourcePath = reader.readLine();
+    String outputPath = reader.readLine();
+    if (sourcePath == null || outputPath == null) {
+      reply(client, 1, new byte[0], "Malformed request\n".getBytes(StandardCharsets.UTF_8));
+      return true;
+    }
+    List<String> flags = Arrays.asList(stageLine.split(" "));
+    String stage = flags.get(0);
+    CompileOptions requestOptions = options;
+    if (flags.size() > 1) {
+      List<String> unknown = new ArrayList<>();
+      requestOptions = CompileOptions.parse(flags.subList(1, flags.size()), unknown);
+      if (!unknown.isEmpty()) {
+        String error = "Unknown options: " + String.join(" ", unknown) + "\n";
+        reply(client, 1, new byte[0], error.getBytes(StandardCharsets.UTF_8));
+        return true;
+      }
+    }
+
+    ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+    int rv;
+    byte[] out = new byte[0];
+    // Whatever goes wrong, the client always gets a reply.
+    try {
+      ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+      rv = compile(stage, requestOptions, Path.of(sourcePath), outBytes, errBytes);
+      if (outputPath.equals(TO_CLIENT)) {
+        out = outBytes.toByteArray();
+      } else {
+        Files.write(Path.of(outputPath), outBytes.toByteArray());
+      }
+    } catch (IOException e) {
+      errBytes.writeBytes(String.format("Could not write %s: %s\n", outputPath, e.getMessage())
+          .getBytes(StandardCharsets.UTF_8));
+      rv = 1;
+    } catch (Throwable e) {
+      errBytes.writeBytes(
+          String.format("Compile server error: %s\n", e).getBytes(StandardCharsets.UTF_8));
+      rv = 1;
+    }
+    reply(client, rv, out, errBytes.toByteArray());
+    return true;
+  }
+
+  private static int compile(String stage, CompileOptions options, Path sourcePath,
+      OutputStream outBytes, OutputStream errBytes) {
+    PrintStream out = new PrintStream(outBytes, true, StandardCharsets.UTF_8);
+    PrintStream err = new PrintStream(errBytes, true, StandardCharsets.UTF_8);
+    try {
+      CharSequence input = SourceReader.read(sourcePath);
+      // "-S" is the default: generate assembly language.
+      String driverStage = stage.equals("-S") ? null : stage;
+      return UniqueId.withFreshIds(
+          () -> options.newDriver(PhaseTimer.NONE).run(driverStage, input, out, err));
+    } catch (IOException e) {
+      err.println("Could not read " + sourcePath + ": " + e.getMessage());
+      return 1;
+    } catch (Throwable e) {
+      // Same as what the JVM does for an uncaught exception. Errors too: a StackOverflowError
+      // from a deeply nested expression mustn't stop the server.
+      err.print("Exception in thread \"main\" ");
+      e.printStackTrace(err);
+      return 1;
+    }
+  }
+
+  private static void reply(SocketChannel client, int rv, byte[] out, byte[] err)
+      throws IOException {
+    OutputStream os = Channels.newOutputStream(client);
+    String header = String.format("%d %d %d\n", rv, out.length, err.length);
+    os.write(header.getBytes(StandardCharsets.UTF_8));
+    os.write(out);
+    os.write(err);
+    os.flush();
+  }
+}
@@ -1,21 +1,33 @@
 package com.plasstech.lang.c.driver;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
-import com.google.common.base.Joiner;
 import com.plasstech.lang.c.codegen.AsmProgram;
 import com.plasstech.lang.c.codegen.CodeEmission;
 import com.plasstech.lang.c.codegen.tacky.AsmState;
+import com.plasstech.lang.c.codegen.tacky.Optimization;
+import com.plasstech.lang.c.codegen.tacky.Optimizer;
+import com.plasstech.lang.c.codegen.tacky.PeepholeOptimizer;
+import com.plasstech.lang.c.codegen.tacky.RegisterAllocator;
 import com.plasstech.lang.c.codegen.tacky.TackyCodeGen;
 import com.plasstech.lang.c.codegen.tacky.TackyProgram;
 import com.plasstech.lang.c.codegen.tacky.TackyToAsmCodeGen;
+import com.plasstech.lang.c.common.PhaseTimer;
 import com.plasstech.lang.c.lex.Scanner;
 import com.plasstech.lang.c.lex.ScannerException;
-import com.plasstech.lang.c.lex.Token;
-import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.lex.TokenArray;
+import com.plasstech.lang.c.parser.NodeCounter;
 import com.plasstech.lang.c.parser.Parser;
 import com.plasstech.lang.c.parser.ParserException;
 import com.plasstech.lang.c.parser.PrettyPrinter;
@@ -26,107 +38,179 @@ import com.plasstech.lang.c.typecheck.SymbolTable;
 public class Driver {
 
   public static void main(String args[]) {
-    new Driver().run(args);
+    // The options are parsed first, so they apply in every mode.
+    List<String> rest = new ArrayList<>();
+    CompileOptions options = CompileOptions.parse(Arrays.asList(args), rest);
+    if (rest.size() > 1 && rest.get(0).equals("--server")) {
+      // Keep compiling until told to stop, to avoid paying for JVM startup on every file.
+      new CompileServer(Path.of(rest.get(1)), options).serve();
+      return;
+    }
+    if (rest.size() > 1 && rest.get(0).equals("--batch")) {
+      // Compile each file (or each file in each @manifest) to its own .s, in parallel.
+      int rv = new BatchCompiler(options).compileAll(rest.subList(1, rest.size()));
+      System.exit(rv);
+    }
+    // [--] [--time-report] [--regalloc=coloring|linear] [-O|-O0|-O1|-O2] [--fold-constants]
+    // [--eliminate-unreachable-code] [--propagate-copies] [--eliminate-dead-stores] [--peephole]
+    // [stage] [file]. Without a file, read standard in.
+    String stage = null;
+    String path = null;
+    PhaseTimer timer = PhaseTimer.NONE;
+    for (String arg : rest) {
+      if (arg.equals("--")) {
+        continue;
+      }
+      if (arg.equals("--time-report")) {
+        // Report how long each phase took, on stderr.
+        timer = new PhaseTimer();
+      } else if (arg.startsWith("-")) {
+        stage = arg;
+      } else {
+        path = arg;
+      }
+    }
+    CharSequence input;
+    if (path != null) {
+      try {
+        input = SourceReader.read(Path.of(path));
+      } catch (IOException e) {
+        System.err.println("Could not read " + path + ": " + e.getMessage());
+        System.exit(-1);
+        return;
+      }
+    } else {
+      input = SourceReader.read(System.in);
+    }
+    int rv = options.newDriver(timer).run(stage, input, System.out, System.err);
+    if (timer.enabled()) {
+      System.out.flush();
+      timer.report(System.err);
+    }
+    if (rv != 0) {
+      System.exit(rv);
+    }
   }
 
   private Program program;
   private final SymbolTable symbolTable = new SymbolTable();
-  private final SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(symbolTable);
+  private final PhaseTimer timer;
+  private final RegisterAllocator allocator;
+  private final Set<Optimization> optimizations;
+  private final SemanticAnalyzer semanticAnalyzer;
+
+  public Driver() {
+    this(PhaseTimer.NONE, RegisterAllocator.NONE, EnumSet.noneOf(Optimization.class));
+  }
 
-  private void run(String args[]) {
+  public Driver(PhaseTimer timer, RegisterAllocator allocator,
+      Set<Optimization> optimizations) {
+    this.timer = timer;
+    this.allocator = allocator;
+    this.optimizations = optimizations;
+    this.semanticAnalyzer = new SemanticAnalyzer(symbolTable, timer);
+  }
+
+  /**
+   * Compiles the given input through the given stage (e.g., "--lex"), or all the way to assembly
+   * language if stage is null.
+   *
+   * @return the process exit code
+   */
+  int run(String stage, CharSequence input, PrintStream out, PrintStream err) {
     try {
-      String input = readStdin();
-      Scanner s = new Scanner(input);
-      if (args.length > 1) {
-        if (args[1].equals("--lex")) {
-          scan(s);
+      // The whole input is scanned before parsing, so scanning is its own phase.
+      TokenArray tokens = scan(input);
+      if (stage != null) {
+        if (stage.equals("--lex")) {
+          // Already done.
+          return 0;
         }
-        if (args[1].equals("--parse")) {
-          parse(s);
+        if (stage.equals("--parse")) {
+          parse(tokens);
         }
-        if (args[1].equals("--validate")) {
-          validate(s);
+        if (stage.equals("--validate")) {
+          validate(tokens);
         }
-        if (args[1].equals("--codegen")) {
-          codeGen(s);
+        if (stage.equals("--codegen")) {
+          codeGen(tokens);
         }
-        if (args[1].equals("--tacky")) {
-          tackyCodeGen(s);
+        if (stage.equals("--tacky")) {
+          tackyCodeGen(tokens);
         }
-        if (args[1].equals("--prettyprint")) {
-          prettyPrint(s);
+        if (stage.equals("--prettyprint")) {
+          prettyPrint(tokens, out);
         }
-        return;
+        return 0;
       }
 
       // Generate asm:
-      List<String> asm = generateAsm(s);
-      System.out.println(Joiner.on('\n').join(asm));
+      generateAsm(tokens, out);
+      return 0;
     } catch (ParserException e) {
-      System.err.println(e.getMessage());
-      System.exit(-1);
+      err.println(e.getMessage());
+      return -1;
     } catch (ScannerException e) {
-      System.err.println(e.getMessage());
-      System.exit(-1);
-    }
-  }
-
-  private static String readStdin() {
-    String input = "";
-    BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-    try {
-      String line = reader.readLine();
-      while (line != null) {
-        input += line + "\n";
-        line = reader.readLine();
-      }
-    } catch (IOException e) {
-      throw new RuntimeException("Could not read standard in", e);
+      err.println(e.getMessage());
+      return -1;
     }
-    return input;
   }
 
-  private void tackyCodeGen(Scanner s) {
-    validate(s);
+  private TackyProgram tackyCodeGen(TokenArray tokens) {
+    validate(tokens);
     // This doesn't output anything.
-    new TackyCodeGen(symbolTable).generate(program);
+    TackyProgram tp =
+        timer.time("tacky-gen", () -> new TackyCodeGen(symbolTable).generate(program));
+    if (!Optimizer.enabled(optimizations)) {
+      return tp;
+    }
+    TackyProgram unoptimized = tp;
+    return timer.time("optimize",
+        () -> new Optimizer(symbolTable, timer, optimizations).optimize(unoptimized));
   }
 
-  private List<String> generateAsm(Scanner s) {
-    validate(s);
-    TackyProgram tp = new TackyCodeGen(symbolTable).generate(program);
-    AsmState state = new TackyToAsmCodeGen(symbolTable).generate(tp);
-    return new CodeEmission(symbolTable).generate(state.program());
+  private void generateAsm(TokenArray tokens, PrintStream out) {
+    AsmProgram asmProgram = codeGen(tokens);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    timer.time("emit", () -> new CodeEmission(symbolTable).generate(asmProgram, writer));
   }
 
-  private AsmProgram codeGen(Scanner s) {
-    validate(s);
-    TackyProgram tp = new TackyCodeGen(symbolTable).generate(program);
-    TackyToAsmCodeGen tackyToAsmCodeGen = new TackyToAsmCodeGen(symbolTable);
+  private AsmProgram codeGen(TokenArray tokens) {
+    TackyProgram tp = tackyCodeGen(tokens);
+    // This times its own phases.
+    TackyToAsmCodeGen tackyToAsmCodeGen = new TackyToAsmCodeGen(symbolTable, timer, allocator);
     AsmState asmState = tackyToAsmCodeGen.generate(tp);
-    return asmState.program();
+    if (!optimizations.contains(Optimization.PEEPHOLE)) {
+      return asmState.program();
+    }
+    PeepholeOptimizer peephole = new PeepholeOptimizer();
+    AsmProgram optimized = timer.time("peephole", () -> peephole.optimize(asmState.program()));
+    peephole.removed().forEach((rule, count) -> timer.count("peephole " + rule, count));
+    return optimized;
   }
 
-  private void validate(Scanner s) {
-    Program initialProgram = parse(s);
+  private void validate(TokenArray tokens) {
+    Program initialProgram = parse(tokens);
     this.program = semanticAnalyzer.validate(initialProgram);
   }
 
-  private static void prettyPrint(Scanner s) {
-    Program program = parse(s);
-    new PrettyPrinter().prettyPrint(program);
+  private void prettyPrint(TokenArray tokens, PrintStream out) {
+    Program program = parse(tokens);
+    new PrettyPrinter(out).prettyPrint(program);
   }
 
-  private static Program parse(Scanner s) {
-    Parser p = new Parser(s);
-    return p.parse();
+  private Program parse(TokenArray tokens) {
+    Program parsed = timer.time("parse", () -> new Parser(tokens, timer).parse());
+    if (timer.enabled()) {
+      timer.count("ast nodes", NodeCounter.count(parsed));
+    }
+    return parsed;
   }
 
-  private static void scan(Scanner s) {
-    // Run the scanner
-    Token t = s.nextToken();
-    while (t.type() != TokenType.EOF) {
-      t = s.nextToken();
-    }
+  private TokenArray scan(CharSequence input) {
+    TokenArray tokens = timer.time("scan", () -> new Scanner(input).scanAll());
+    // Not counting the EOF
+    timer.count("tokens", tokens.size() - 1);
+    return tokens;
   }
 }
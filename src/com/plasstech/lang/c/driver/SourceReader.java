@@ -0,0 +1,46 @@
+package com.plasstech.lang.c.driver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.plasstech.lang.c.common.ByteCharSequence;
+
+/** Reads source text in bulk, without building intermediate strings. */
+class SourceReader {
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  /** Memory-maps the given file. */
+  static CharSequence read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed.
+      return new ByteCharSequence(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /** Reads all of the given stream (e.g., a pipe) into a single growable buffer. */
+  static CharSequence read(InputStream is) {
+    byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    int length = 0;
+    try {
+      while (true) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = is.read(buffer, length, buffer.length - length);
+        if (read < 0) {
+          break;
+        }
+        length += read;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read input", e);
+    }
+    return new ByteCharSequence(ByteBuffer.wrap(buffer, 0, length).slice());
+  }
+}
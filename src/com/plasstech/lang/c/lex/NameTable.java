@@ -0,0 +1,73 @@
+package com.plasstech.lang.c.lex;
+
+/**
+ * The names in one translation unit, so that each occurrence of a name shares one String. Names are
+ * looked up by their location in the source, so a name that's already in the table doesn't
+ * allocate anything.
+ * <p>
+ * This is an open-addressing hash table with linear probing, using the same hash as String.
+ */
+class NameTable {
+  private String[] names = new String[64];
+  private int size;
+
+  /** Returns the name that is the text from start to end, adding it if it's new. */
+  String intern(CharSequence text, int start, int end) {
+    int hash = hash(text, start, end);
+    int mask = names.length - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      String name = names[i];
+      if (name == null) {
+        name = text.subSequence(start, end).toString();
+        names[i] = name;
+        if (++size * 2 > names.length) {
+          grow();
+        }
+        return name;
+      }
+      if (spread(name.hashCode()) == hash && matches(name, text, start, end)) {
+        return name;
+      }
+    }
+  }
+
+  private static int hash(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; ++i) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    return spread(hash);
+  }
+
+  /** Mixes the high bits into the low ones, which pick the slot. */
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean matches(String name, CharSequence text, int start, int end) {
+    if (name.length() != end - start) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); ++i) {
+      if (name.charAt(i) != text.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void grow() {
+    String[] old = names;
+    names = new String[old.length * 2];
+    int mask = names.length - 1;
+    for (String name : old) {
+      if (name != null) {
+        int i = spread(name.hashCode()) & mask;
+        while (names[i] != null) {
+          i = (i + 1) & mask;
+        }
+        names[i] = name;
+      }
+    }
+  }
+}
@@ -1,15 +1,66 @@
 package com.plasstech.lang.c.lex;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.plasstech.lang.c.typecheck.Type;
 
+/**
+ * Splits the text into tokens, either one at a time with nextToken, or all at once into a
+ * TokenArray with scanAll. Keywords and symbols are looked up in tables built from TokenType, and
+ * tokens refer to their text in the source instead of copying it, so scanning doesn't allocate
+ * anything but the tokens.
+ */
 public class Scanner {
-  private final String text;
+  private record Keyword(String text, TokenType type) {}
+
+  // The keywords, indexed by their first letter minus 'a'.
+  private static final Keyword[][] KEYWORDS = new Keyword[26][];
+  // The one-character symbols, indexed by the character.
+  private static final TokenType[] ONE_CHAR_SYMBOLS = new TokenType[128];
+  // The two-character symbols, indexed by their first character.
+  private static final TokenType[][] TWO_CHAR_SYMBOLS = new TokenType[128][];
+
+  static {
+    List<List<Keyword>> keywords = new ArrayList<>();
+    for (int i = 0; i < KEYWORDS.length; ++i) {
+      keywords.add(new ArrayList<>());
+    }
+    List<List<TokenType>> twoCharSymbols = new ArrayList<>();
+    for (int i = 0; i < TWO_CHAR_SYMBOLS.length; ++i) {
+      twoCharSymbols.add(new ArrayList<>());
+    }
+    for (TokenType tt : TokenType.values()) {
+      if (tt.isKeyword) {
+        String text = tt.text.toLowerCase();
+        keywords.get(text.charAt(0) - 'a').add(new Keyword(text, tt));
+      } else if (tt.isSymbol() && !Character.isLetter(tt.text.charAt(0))) {
+        if (tt.text.length() == 1) {
+          ONE_CHAR_SYMBOLS[tt.text.charAt(0)] = tt;
+        } else {
+          twoCharSymbols.get(tt.text.charAt(0)).add(tt);
+        }
+      }
+    }
+    for (int i = 0; i < KEYWORDS.length; ++i) {
+      KEYWORDS[i] = keywords.get(i).toArray(Keyword[]::new);
+    }
+    for (int i = 0; i < TWO_CHAR_SYMBOLS.length; ++i) {
+      TWO_CHAR_SYMBOLS[i] = twoCharSymbols.get(i).toArray(TokenType[]::new);
+    }
+  }
+
+  private final CharSequence text;
+  private final NameTable names = new NameTable();
   private int loc; // absolute location in text
   private char cc;
+  // The location and literal type of the token that was just scanned.
+  private int start;
+  private int end;
+  private Type varType;
 
-  public Scanner(String text) {
+  public Scanner(CharSequence text) {
     this.text = text;
     advance();
   }
@@ -34,32 +85,74 @@ public class Scanner {
   }
 
   public Token nextToken() {
+    TokenType type = scan();
+    return new Token(type, text, start, end, varType);
+  }
+
+  /** Scans the rest of the text. The last token in the array is EOF. */
+  public TokenArray scanAll() {
+    // Tokens average 2-4 characters, including the whitespace between them, so this rarely grows.
+    int capacity = text.length() / 2 + 16;
+    int[] types = new int[capacity];
+    int[] starts = new int[capacity];
+    int[] ends = new int[capacity];
+    Type[] varTypes = new Type[capacity];
+    String[] identifiers = new String[capacity];
+    int size = 0;
+    TokenType type;
+    do {
+      type = scan();
+      if (size == capacity) {
+        capacity *= 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        varTypes = Arrays.copyOf(varTypes, capacity);
+        identifiers = Arrays.copyOf(identifiers, capacity);
+      }
+      types[size] = type.ordinal();
+      starts[size] = start;
+      ends[size] = end;
+      if (type == TokenType.NUMERIC_LITERAL) {
+        varTypes[size] = varType;
+      } else if (type == TokenType.IDENTIFIER) {
+        // Interned now, so that the array is read-only, and can be parsed by many threads.
+        identifiers[size] = names.intern(text, start, end);
+      }
+      size++;
+    } while (type != TokenType.EOF);
+    return new TokenArray(text, types, starts, ends, varTypes, identifiers, size);
+  }
+
+  /** Scans the next token, and sets its location and literal type. */
+  private TokenType scan() {
     // skip unwanted whitespace
-    Optional<Token> maybeEof = skipWhitespace();
-    if (maybeEof.isPresent()) {
-      return maybeEof.get();
-    }
+    skipWhitespace();
+    start = loc - 1;
+    varType = Type.NO_TYPE;
 
+    TokenType type;
     if (Character.isDigit(cc)) {
-      return makeNumber();
-    }
-    if (Character.isLetter(cc) || cc == '_') {
-      return makeText();
-    }
-    if (cc != 0) {
-      return makeSymbol();
+      type = makeNumber();
+    } else if (Character.isLetter(cc) || cc == '_') {
+      type = makeText();
+    } else if (cc != 0) {
+      type = makeSymbol();
+    } else {
+      type = TokenType.EOF;
+      start = text.length();
+      end = text.length();
     }
-
-    return eofToken();
+    return type;
   }
 
-  private Optional<Token> skipWhitespace() {
+  private void skipWhitespace() {
     while (true) {
       while (cc == ' ' || cc == '\n' || cc == '\t' || cc == '\r') {
         advance();
       }
       if (cc != '/') {
-        return Optional.empty();
+        return;
       }
       char next = peek();
       if (next == '/') {
@@ -70,7 +163,8 @@ public class Scanner {
           advance();
         }
         if (cc == 0) {
-          return Optional.of(eofToken());
+          // EOF
+          return;
         }
         advance(); // eat the \n
         continue;
@@ -86,7 +180,7 @@ public class Scanner {
           }
           // either EOF or we got a *
           if (cc == 0) {
-            return Optional.of(error("Unclosed comment"));
+            error("Unclosed comment");
           }
           advance(); // eat the star
           if (cc == '/') {
@@ -96,75 +190,85 @@ public class Scanner {
         }
         continue;
       }
-      return Optional.empty();
+      return;
     }
   }
 
-  private static Token eofToken() {
-    return new Token(TokenType.EOF, "");
-  }
-
-  private Token makeSymbol() {
-    String symbol = String.valueOf(cc);
+  private TokenType makeSymbol() {
+    char first = cc;
     advance();
-    if (cc != 0) {
-      // cc is already the next symbol
-      String twoCharSymbol = symbol + cc;
-      Optional<TokenType> tt = findSymbolByString(twoCharSymbol);
-      if (tt.isPresent()) {
-        advance();
-        return new Token(tt.get(), twoCharSymbol);
+    if (first < ONE_CHAR_SYMBOLS.length) {
+      // cc is already the next character
+      for (TokenType tt : TWO_CHAR_SYMBOLS[first]) {
+        if (tt.text.charAt(1) == cc) {
+          advance();
+          end = start + 2;
+          return tt;
+        }
+      }
+      TokenType tt = ONE_CHAR_SYMBOLS[first];
+      if (tt != null) {
+        end = start + 1;
+        return tt;
       }
     }
-    Optional<TokenType> tt = findSymbolByString(symbol);
-    if (tt.isPresent()) {
-      return new Token(tt.get(), symbol);
-    }
-    return error("Illegal character " + symbol);
+    return error("Illegal character " + first);
   }
 
-  private static Optional<TokenType> findSymbolByString(String symbol) {
-    for (TokenType tt : TokenType.values()) {
-      if (tt.isSymbol() && tt.text.equals(symbol)) {
-        return Optional.of(tt);
-      }
-    }
-    return Optional.empty();
+  /**
+   * Returns the name of the identifier token. Each name is only copied out of the source once, and
+   * shared by all the tokens for it.
+   */
+  public String name(Token token) {
+    return names.intern(text, token.start(), token.end());
   }
 
-  private Token makeText() {
-    StringBuilder sb = new StringBuilder();
-    if (Character.isLetter(cc) || cc == '_') {
-      sb.append(cc);
-      advance();
-    }
+  private TokenType makeText() {
     while (Character.isLetterOrDigit(cc) || cc == '_') {
-      sb.append(cc);
       advance();
     }
+    end = loc - 1;
 
-    String value = sb.toString();
-    try {
-      // Figure out if it's a keyword
-      if (value.toLowerCase().equals(value)) {
-        // all lower case
-        TokenType maybeTt = TokenType.valueOf(value.toUpperCase());
-        if (maybeTt.isKeyword) {
-          return new Token(maybeTt, value);
-        }
-      }
-    } catch (Exception e) {
+    Keyword keyword = findKeyword(start, end);
+    if (keyword != null) {
+      return keyword.type();
     }
     // Not a keyword, must be a variable.
-    return new Token(TokenType.IDENTIFIER, value);
+    return TokenType.IDENTIFIER;
   }
 
-  private Token makeNumber() {
-    StringBuilder sb = new StringBuilder();
+  /** Returns the keyword that is the text from start to end, or null if it's not a keyword. */
+  private Keyword findKeyword(int start, int end) {
+    int index = text.charAt(start) - 'a';
+    if (index < 0 || index >= KEYWORDS.length) {
+      return null;
+    }
+    for (Keyword keyword : KEYWORDS[index]) {
+      if (matches(keyword.text(), start, end)) {
+        return keyword;
+      }
+    }
+    return null;
+  }
+
+  private boolean matches(String word, int start, int end) {
+    if (word.length() != end - start) {
+      return false;
+    }
+    for (int i = 1; i < word.length(); ++i) {
+      if (word.charAt(i) != text.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private TokenType makeNumber() {
     while (Character.isDigit(cc) || cc == '_') {
-      sb.append(cc);
       advance();
     }
+    // The suffix isn't part of the text.
+    end = loc - 1;
     boolean longConstant = false;
     boolean unsignedConstant = false;
     if (cc == 'L' || cc == 'l') {
@@ -190,20 +294,19 @@ public class Scanner {
       return error("Illegal character " + cc);
     }
 
-    String value = sb.toString();
     if (unsignedConstant && longConstant) {
-      return new Token(TokenType.NUMERIC_LITERAL, value, Type.UNSIGNED_LONG);
-    }
-    if (longConstant) {
-      return new Token(TokenType.NUMERIC_LITERAL, value, Type.LONG);
-    }
-    if (unsignedConstant) {
-      return new Token(TokenType.NUMERIC_LITERAL, value, Type.UNSIGNED_INT);
+      varType = Type.UNSIGNED_LONG;
+    } else if (longConstant) {
+      varType = Type.LONG;
+    } else if (unsignedConstant) {
+      varType = Type.UNSIGNED_INT;
+    } else {
+      varType = Type.INT;
     }
-    return new Token(TokenType.NUMERIC_LITERAL, value, Type.INT);
+    return TokenType.NUMERIC_LITERAL;
   }
 
-  private Token error(String message) {
+  private TokenType error(String message) {
     throw new ScannerException(message);
   }
 }
@@ -2,12 +2,31 @@ package com.plasstech.lang.c.lex;
 
 import com.plasstech.lang.c.typecheck.Type;
 
-public record Token(TokenType type, String value, Type varType) {
-  public Token(TokenType type, String value) {
-    this(type, value, Type.NO_TYPE);
+/**
+ * A token: its type, and where its text is in the source, from start (inclusive) to end
+ * (exclusive). The text is only copied out of the source when it's asked for. The text of a numeric
+ * literal doesn't include its suffix; varType has its type instead.
+ */
+public record Token(TokenType type, CharSequence source, int start, int end, Type varType) {
+  public Token(TokenType type, CharSequence source, int start, int end) {
+    this(type, source, start, end, Type.NO_TYPE);
+  }
+
+  /**
+   * Returns the text of the token. Each call makes a new String: use Scanner.name for identifiers,
+   * which shares one String per name.
+   */
+  public String value() {
+    return source.subSequence(start, end).toString();
   }
 
   public boolean isKeyword() {
     return type.isKeyword;
   }
+
+  @Override
+  public String toString() {
+    // Not the whole source.
+    return String.format("Token[type=%s, value=%s, varType=%s]", type, value(), varType);
+  }
 }
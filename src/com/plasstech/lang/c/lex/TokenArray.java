@@ -0,0 +1,77 @@
+package com.plasstech.lang.c.lex;
+
+import java.util.Objects;
+
+import com.plasstech.lang.c.typecheck.Type;
+
+/**
+ * All the tokens of a translation unit, from Scanner.scanAll, so that the parser can look any
+ * distance ahead. The tokens are kept in parallel arrays, by index, instead of as Token objects:
+ * the type, the start and end of the text in the source, the type of numeric literals and the name
+ * of identifiers. The last token is always EOF.
+ * <p>
+ * A TokenArray isn't changed after it's made, so it can be read by many threads.
+ */
+public final class TokenArray {
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  private final CharSequence source;
+  private final int[] types;
+  private final int[] starts;
+  private final int[] ends;
+  // Only set for numeric literals.
+  private final Type[] varTypes;
+  // Only set for identifiers.
+  private final String[] names;
+  private final int size;
+
+  TokenArray(CharSequence source, int[] types, int[] starts, int[] ends, Type[] varTypes,
+      String[] names, int size) {
+    this.source = source;
+    this.types = types;
+    this.starts = starts;
+    this.ends = ends;
+    this.varTypes = varTypes;
+    this.names = names;
+    this.size = size;
+  }
+
+  /** The number of tokens, including the EOF at the end. */
+  public int size() {
+    return size;
+  }
+
+  public CharSequence source() {
+    return source;
+  }
+
+  public TokenType type(int index) {
+    return TOKEN_TYPES[types[Objects.checkIndex(index, size)]];
+  }
+
+  public int start(int index) {
+    return starts[Objects.checkIndex(index, size)];
+  }
+
+  public int end(int index) {
+    return ends[Objects.checkIndex(index, size)];
+  }
+
+  public Type varType(int index) {
+    Type varType = varTypes[Objects.checkIndex(index, size)];
+    return varType == null ? Type.NO_TYPE : varType;
+  }
+
+  /**
+   * Returns the name of the identifier at the index. Each name is only copied out of the source
+   * once, and shared by all the tokens for it.
+   */
+  public String name(int index) {
+    return names[Objects.checkIndex(index, size)];
+  }
+
+  /** Returns the token at the index as a Token, e.g., for error messages. */
+  public Token token(int index) {
+    return new Token(type(index), source, start(index), end(index), varType(index));
+  }
+}
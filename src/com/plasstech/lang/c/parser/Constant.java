@@ -22,6 +22,16 @@ public record Constant<T extends Number>(T value, Type type) implements Exp {
     return new Constant<UnsignedLong>(UnsignedLong.valueOf(value), Type.UNSIGNED_LONG);
   }
 
+  /** The bits are taken as unsigned. */
+  public static Constant<UnsignedInteger> ofUnsignedInt(int bits) {
+    return new Constant<UnsignedInteger>(UnsignedInteger.fromIntBits(bits), Type.UNSIGNED_INT);
+  }
+
+  /** The bits are taken as unsigned. */
+  public static Constant<UnsignedLong> ofUnsignedLong(long bits) {
+    return new Constant<UnsignedLong>(UnsignedLong.fromLongBits(bits), Type.UNSIGNED_LONG);
+  }
+
   @Override
   public <R> R accept(Visitor<R> visitor) {
     return visitor.visit(this);
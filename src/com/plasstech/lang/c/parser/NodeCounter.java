@@ -0,0 +1,147 @@
+package com.plasstech.lang.c.parser;
+
+import java.util.List;
+import java.util.Optional;
+
+/** Counts the nodes of an AST, for statistics. */
+public class NodeCounter implements AstNode.Visitor<Integer> {
+  public static int count(Program program) {
+    return program.accept(new NodeCounter());
+  }
+
+  private int count(AstNode node) {
+    return node.accept(this);
+  }
+
+  private int count(Optional<? extends AstNode> node) {
+    return node.map(this::count).orElse(0);
+  }
+
+  private int count(List<? extends AstNode> nodes) {
+    int total = 0;
+    for (AstNode node : nodes) {
+      total += count(node);
+    }
+    return total;
+  }
+
+  @Override
+  public Integer visit(Assignment n) {
+    return 1 + count(n.lvalue()) + count(n.rvalue());
+  }
+
+  @Override
+  public Integer visit(BinExp n) {
+    return 1 + count(n.left()) + count(n.right());
+  }
+
+  @Override
+  public Integer visit(Conditional n) {
+    return 1 + count(n.condition()) + count(n.left()) + count(n.right());
+  }
+
+  @Override
+  public <T extends Number> Integer visit(Constant<T> n) {
+    return 1;
+  }
+
+  @Override
+  public Integer visit(VarDecl n) {
+    return 1 + count(n.init());
+  }
+
+  @Override
+  public Integer visit(Expression n) {
+    return 1 + count(n.exp());
+  }
+
+  @Override
+  public Integer visit(FunDecl n) {
+    return 1 + count(n.body());
+  }
+
+  @Override
+  public Integer visit(If n) {
+    return 1 + count(n.condition()) + count(n.then()) + count(n.elseStmt());
+  }
+
+  @Override
+  public Integer visit(NullStatement n) {
+    return 1;
+  }
+
+  @Override
+  public Integer visit(Program n) {
+    return 1 + count(n.declarations());
+  }
+
+  @Override
+  public Integer visit(Return n) {
+    return 1 + count(n.exp());
+  }
+
+  @Override
+  public Integer visit(UnaryExp n) {
+    return 1 + count(n.exp());
+  }
+
+  @Override
+  public Integer visit(Var n) {
+    return 1;
+  }
+
+  @Override
+  public Integer visit(Block n) {
+    return 1 + count(n.items());
+  }
+
+  @Override
+  public Integer visit(Compound n) {
+    return 1 + count(n.block());
+  }
+
+  @Override
+  public Integer visit(Break n) {
+    return 1;
+  }
+
+  @Override
+  public Integer visit(Continue n) {
+    return 1;
+  }
+
+  @Override
+  public Integer visit(DoWhile n) {
+    return 1 + count(n.body()) + count(n.condition());
+  }
+
+  @Override
+  public Integer visit(For n) {
+    return 1 + count(n.init()) + count(n.condition()) + count(n.post()) + count(n.body());
+  }
+
+  @Override
+  public Integer visit(While n) {
+    return 1 + count(n.condition()) + count(n.body());
+  }
+
+  @Override
+  public Integer visit(InitDecl n) {
+    return 1 + count(n.decl());
+  }
+
+  @Override
+  public Integer visit(InitExp n) {
+    return 1 + count(n.exp());
+  }
+
+  @Override
+  public Integer visit(FunctionCall n) {
+    return 1 + count(n.args());
+  }
+
+  @Override
+  public Integer visit(Cast n) {
+    return 1 + count(n.exp());
+  }
+}
@@ -1,53 +1,178 @@
 package com.plasstech.lang.c.parser;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.primitives.UnsignedInteger;
-import com.google.common.primitives.UnsignedLong;
+import com.plasstech.lang.c.common.Parallel;
+import com.plasstech.lang.c.common.PhaseTimer;
 import com.plasstech.lang.c.lex.Scanner;
-import com.plasstech.lang.c.lex.Token;
+import com.plasstech.lang.c.lex.TokenArray;
 import com.plasstech.lang.c.lex.TokenType;
 import com.plasstech.lang.c.typecheck.FunType;
 import com.plasstech.lang.c.typecheck.Type;
 
+/**
+ * Recursive-descent parser. The whole translation unit is scanned before parsing, so the parser
+ * walks an index over the TokenArray and can look any number of tokens ahead.
+ * <p>
+ * Top-level declarations are independent, so they're parsed in parallel: a first pass over the
+ * tokens splits them at each semicolon or closing brace at the top level, then each part is parsed
+ * by its own Parser. Errors are reported in source order, as if the parts had been parsed one after
+ * another. On a single processor the parts are simply parsed in order.
+ */
 public class Parser {
-  private final Scanner scanner;
-  private Token token;
+  private final TokenArray tokens;
+  private final PhaseTimer timer;
+  // Whether to parse the parts of the unit in parallel.
+  private final boolean parallel;
+  // The index of the current token.
+  private int pos;
+  // The index where this parser's tokens end. It's the EOF, or the start of the next part of the
+  // unit, which this parser sees as EOF.
+  private final int end;
 
   public Parser(Scanner scanner) {
-    this.scanner = scanner;
-    advance();
+    this(scanner.scanAll());
+  }
+
+  public Parser(TokenArray tokens) {
+    this(tokens, PhaseTimer.NONE);
+  }
+
+  /** The timer's current phase also gets the time spent parsing on other threads. */
+  public Parser(TokenArray tokens, PhaseTimer timer) {
+    this(tokens, timer, Parallel.manyProcessors());
+  }
+
+  /** Parses the parts in parallel or not, however many processors there are. For tests. */
+  Parser(TokenArray tokens, boolean parallel) {
+    this(tokens, PhaseTimer.NONE, parallel);
+  }
+
+  private Parser(TokenArray tokens, PhaseTimer timer, boolean parallel) {
+    this(tokens, timer, parallel, 0, tokens.size() - 1);
+  }
+
+  private Parser(TokenArray tokens, PhaseTimer timer, boolean parallel, int start, int end) {
+    this.tokens = tokens;
+    this.timer = timer;
+    this.parallel = parallel;
+    this.pos = start;
+    this.end = end;
   }
 
   private void advance() {
-    this.token = scanner.nextToken();
+    // Stays on the EOF at the end.
+    if (pos < end) {
+      pos++;
+    }
   }
 
+  /** Returns the type of the current token. */
+  private TokenType peek() {
+    return peek(0);
+  }
+
+  /** Returns the type of the token n ahead of the current one, or EOF if that's past the end. */
+  private TokenType peek(int n) {
+    int index = pos + n;
+    return index < end ? tokens.type(index) : TokenType.EOF;
+  }
+
+  /** The result of parsing one part of the unit. */
+  private record Part(List<Declaration> declarations, RuntimeException error) {}
+
   public Program parse() {
+    int[] starts = partStarts(tokens);
+    IntStream indexes = IntStream.range(0, starts.length - 1);
+    if (parallel && starts.length > 2) {
+      indexes = indexes.parallel();
+    }
+    List<Part> parts = indexes
+        .mapToObj(i -> timer.timeWorker(() -> parsePart(starts[i], starts[i + 1])))
+        .toList();
     List<Declaration> fileLevelDecls = new ArrayList<>();
-    while (token.type() != TokenType.EOF) {
-      fileLevelDecls.add(parseDeclaration());
+    for (Part part : parts) {
+      if (part.error() != null) {
+        throw part.error();
+      }
+      fileLevelDecls.addAll(part.declarations());
     }
-    expect(TokenType.EOF);
     return new Program(fileLevelDecls);
   }
 
+  /**
+   * Splits the unit into parts that each hold one top-level declaration (if it's well-formed). A
+   * part ends after a semicolon outside of any braces, or after the brace that closes a function
+   * body. Returns the index of the start of each part, then the index of the EOF.
+   */
+  private static int[] partStarts(TokenArray tokens) {
+    IntStream.Builder starts = IntStream.builder();
+    starts.add(0);
+    int eof = tokens.size() - 1;
+    int depth = 0;
+    for (int i = 0; i < eof; ++i) {
+      switch (tokens.type(i)) {
+        case OBRACE -> depth++;
+        case CBRACE -> {
+          depth--;
+          if (depth <= 0) {
+            // An extra closing brace ends the part too, and the error is found when it's parsed.
+            depth = 0;
+            starts.add(i + 1);
+          }
+        }
+        case SEMICOLON -> {
+          if (depth == 0) {
+            starts.add(i + 1);
+          }
+        }
+        default -> {}
+      }
+    }
+    int[] result = starts.build().toArray();
+    if (result[result.length - 1] != eof) {
+      // The last part is cut short, e.g., by a missing closing brace.
+      result = Arrays.copyOf(result, result.length + 1);
+      result[result.length - 1] = eof;
+    }
+    return result;
+  }
+
+  /** Parses the declarations in the part of the unit from start to end, with a new Parser. */
+  private Part parsePart(int start, int end) {
+    return new Parser(tokens, timer, parallel, start, end).parsePart();
+  }
+
+  /** Parses the declarations in this parser's part of the unit. */
+  private Part parsePart() {
+    try {
+      List<Declaration> declarations = new ArrayList<>(1);
+      while (peek() != TokenType.EOF) {
+        declarations.add(parseDeclaration());
+      }
+      return new Part(declarations, null);
+    } catch (RuntimeException e) {
+      return new Part(null, e);
+    }
+  }
+
   private static final Set<TokenType> TYPE_SPECIFIERS =
       ImmutableSet.of(TokenType.INT, TokenType.LONG, TokenType.SIGNED, TokenType.UNSIGNED);
 
   private List<TokenType> parseTypeSpecifiers() {
     List<TokenType> types = new ArrayList<>();
-    while (token.type() != TokenType.EOF && TYPE_SPECIFIERS.contains(token.type())) {
-      types.add(token.type());
+    while (peek() != TokenType.EOF && TYPE_SPECIFIERS.contains(peek())) {
+      types.add(peek());
       advance();
     }
 
@@ -55,32 +180,32 @@ public class Parser {
   }
 
   private List<Param> parseParamList() {
-    return switch (token.type()) {
+    return switch (peek()) {
       case VOID -> {
         expect(TokenType.VOID);
         yield ImmutableList.of();
       }
       case INT, LONG, SIGNED, UNSIGNED -> {
         List<Param> params = new ArrayList<>();
-        while (token.type() != TokenType.EOF) {
+        while (peek() != TokenType.EOF) {
           if (params.size() > 0) {
             expect(TokenType.COMMA);
           }
           // Convert one or more type specifiers into a type
           Type type = extractType(parseTypeSpecifiers());
-          if (token.type() != TokenType.IDENTIFIER) {
-            error("Expected identifier, saw " + token);
+          if (peek() != TokenType.IDENTIFIER) {
+            error("Expected identifier, saw " + tokens.token(pos));
             break;
           }
-          params.add(new Param(token.value(), type));
+          params.add(new Param(tokens.name(pos), type));
           expect(TokenType.IDENTIFIER);
-          if (token.type() != TokenType.COMMA) {
+          if (peek() != TokenType.COMMA) {
             break;
           }
         }
         yield params;
       }
-      default -> throw new IllegalArgumentException("Unexpected value: " + token.type());
+      default -> throw new IllegalArgumentException("Unexpected value: " + peek());
     };
   }
 
@@ -93,7 +218,7 @@ public class Parser {
 
   private List<BlockItem> parseBlockItems() {
     List<BlockItem> statements = new ArrayList<>();
-    while (token.type() != TokenType.CBRACE) {
+    while (peek() != TokenType.CBRACE) {
       BlockItem item = parseBlockItem();
       statements.add(item);
     }
@@ -111,14 +236,14 @@ public class Parser {
 
   private BlockItem parseBlockItem() {
     // Is there a better way to do this? I fear...
-    if (DECL_STARTERS.contains(token.type())) {
+    if (DECL_STARTERS.contains(peek())) {
       return parseDeclaration();
     }
     return parseStatement();
   }
 
   private Statement parseStatement() {
-    Statement item = switch (token.type()) {
+    Statement item = switch (peek()) {
       case RETURN -> parseReturn();
       case SEMICOLON -> {
         advance();
@@ -137,7 +262,7 @@ public class Parser {
   }
 
   private ForInit parseForInit() {
-    if (DECL_STARTERS.contains(token.type())) {
+    if (DECL_STARTERS.contains(peek())) {
       Declaration maybeVarDecl = parseDeclaration();
       if (maybeVarDecl instanceof VarDecl varDecl) {
         return new InitDecl(varDecl);
@@ -151,7 +276,7 @@ public class Parser {
 
   private Optional<Exp> parseOptionalExp(TokenType separator) {
     Optional<Exp> maybeExp = Optional.empty();
-    if (token.type() != separator) {
+    if (peek() != separator) {
       maybeExp = Optional.of(parseExp());
     }
     expect(separator);
@@ -211,7 +336,7 @@ public class Parser {
     expect(TokenType.CPAREN);
     Statement then = parseStatement();
     Optional<Statement> elseStmt = Optional.empty();
-    if (token.type() == TokenType.ELSE) {
+    if (peek() == TokenType.ELSE) {
       advance();
       elseStmt = Optional.of(parseStatement());
     }
@@ -240,10 +365,10 @@ public class Parser {
   private TypeAndStorageClass parseTypeAndStorageClass() {
     List<StorageClass> storageClasses = new ArrayList<>();
     List<TokenType> typeSpecifiers = new ArrayList<>();
-    while (token.type() == TokenType.EOF
-        || TYPE_SPECIFIERS.contains(token.type())
-        || token.type() == TokenType.EXTERN || token.type() == TokenType.STATIC) {
-      switch (token.type()) {
+    while (peek() == TokenType.EOF
+        || TYPE_SPECIFIERS.contains(peek())
+        || peek() == TokenType.EXTERN || peek() == TokenType.STATIC) {
+      switch (peek()) {
         case EOF:
           error("Unexpected EOF");
           return null;
@@ -252,13 +377,13 @@ public class Parser {
         case LONG:
         case UNSIGNED:
         case SIGNED:
-          typeSpecifiers.add(token.type());
+          typeSpecifiers.add(peek());
           advance();
           break;
 
         case STATIC:
         case EXTERN:
-          storageClasses.add(StorageClass.of(token.type()));
+          storageClasses.add(StorageClass.of(peek()));
           advance();
           break;
 
@@ -283,7 +408,7 @@ public class Parser {
       error("Must specify a type");
       return null;
     }
-    Set<TokenType> uniqueSpecifiers = new HashSet<>(typeSpecifiers);
+    Set<TokenType> uniqueSpecifiers = EnumSet.copyOf(typeSpecifiers);
     if (uniqueSpecifiers.contains(TokenType.UNSIGNED)
         && uniqueSpecifiers.contains(TokenType.SIGNED)) {
       error("Cannot specify both unsigned and signed: %s", typeSpecifiers);
@@ -312,13 +437,13 @@ public class Parser {
   private Declaration parseDeclaration() {
     // Eats the "int" too.
     TypeAndStorageClass tasc = parseTypeAndStorageClass();
-    String varName = token.value();
+    String varName = tokens.name(pos);
     expect(TokenType.IDENTIFIER);
-    if (token.type() == TokenType.SEMICOLON) {
+    if (peek() == TokenType.SEMICOLON) {
       advance();
       return new VarDecl(varName, tasc.type, tasc.storageClass);
     }
-    if (token.type() == TokenType.EQ) {
+    if (peek() == TokenType.EQ) {
       //  Declaration with initialization
       expect(TokenType.EQ);
       Exp init = parseExp();
@@ -330,7 +455,7 @@ public class Parser {
     List<Param> params = parseParamList();
     expect(TokenType.CPAREN);
     Optional<Block> block = Optional.empty();
-    if (token.type() != TokenType.SEMICOLON) {
+    if (peek() != TokenType.SEMICOLON) {
       block = Optional.of(parseBlock());
     } else {
       expect(TokenType.SEMICOLON);
@@ -374,8 +499,8 @@ public class Parser {
 
   private Exp parseExp(int minPrec) {
     Exp left = parseFactor();
-    while (PRECEDENCES.containsKey(token.type()) && PRECEDENCES.get(token.type()) >= minPrec) {
-      TokenType tt = token.type();
+    while (PRECEDENCES.containsKey(peek()) && PRECEDENCES.get(peek()) >= minPrec) {
+      TokenType tt = peek();
       advance();
       if (tt == TokenType.EQ) {
         // Stay same precedence
@@ -401,76 +526,61 @@ public class Parser {
   }
 
   private Exp parseFactor() {
-    TokenType tt = token.type();
+    TokenType tt = peek();
     return switch (tt) {
       case IDENTIFIER -> parseVarOrFnCall();
 
       case OPAREN -> {
-        advance();
-        Exp result = switch (token.type()) {
-          case INT, LONG, UNSIGNED, SIGNED -> {
-            // cast
-            Type type = extractType(parseTypeSpecifiers());
-            expect(TokenType.CPAREN);
-            Exp innerExp = parseFactor();
-            yield new Cast(type, innerExp);
-          }
-
-          default -> {
-            // Just parentheses
-            Exp innerExp = parseExp();
-            expect(TokenType.CPAREN);
-            yield innerExp;
-          }
-        };
-        yield result;
+        if (TYPE_SPECIFIERS.contains(peek(1))) {
+          // cast
+          expect(TokenType.OPAREN);
+          Type type = extractType(parseTypeSpecifiers());
+          expect(TokenType.CPAREN);
+          Exp innerExp = parseFactor();
+          yield new Cast(type, innerExp);
+        }
+        // Just parentheses
+        expect(TokenType.OPAREN);
+        Exp innerExp = parseExp();
+        expect(TokenType.CPAREN);
+        yield innerExp;
       }
 
       case NUMERIC_LITERAL -> {
-        String valueAsString = token.value();
-        Type vt = token.varType();
+        Type vt = tokens.varType(pos);
+        long value = parseUnsignedLong();
         expect(TokenType.NUMERIC_LITERAL);
 
-        BigInteger bigInt = new BigInteger(valueAsString);
         // From page 250 and page 278. This is bloody confusing.
-        if (bigInt.compareTo(UnsignedLong.MAX_VALUE.bigIntegerValue()) > 1) {
-          error("Constant is too large to represent as an int or long: %s", valueAsString);
-          yield null;
-        }
-
-        boolean fitsInInt = bigInt.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) != 1;
-        boolean fitsInLong = bigInt.compareTo(BigInteger.valueOf(Long.MAX_VALUE)) != 1;
+        boolean fitsInInt = Long.compareUnsigned(value, Integer.MAX_VALUE) <= 0;
+        boolean fitsInLong = value >= 0;
         if (vt.equals(Type.INT)) {
           if (fitsInInt) {
             // It will fit in an int.
-            int valueAsInt = Integer.parseInt(valueAsString);
-            yield Constant.of(valueAsInt);
+            yield Constant.of((int) value);
           }
           // we asked for int, but it won't fit in int, it's a long.
           if (fitsInLong) {
-            long valueAsLong = Long.parseLong(valueAsString);
-            yield Constant.of(valueAsLong);
+            yield Constant.of(value);
           }
-          error("Too big for a long: %s", valueAsString);
+          error("Too big for a long: %s", Long.toUnsignedString(value));
         }
         if (vt.equals(Type.LONG)) {
           if (fitsInLong) {
-            long valueAsLong = Long.parseLong(valueAsString);
-            yield Constant.of(valueAsLong);
+            yield Constant.of(value);
           }
           // if it won't fit in long, this is an error.
-          error("Too big for a long: %s", valueAsString);
+          error("Too big for a long: %s", Long.toUnsignedString(value));
         }
         if (vt.equals(Type.UNSIGNED_LONG)) {
-          yield Constant.ofUnsignedLong(valueAsString);
+          yield Constant.ofUnsignedLong(value);
         }
-        boolean fitsInUnsignedInt =
-            bigInt.compareTo(UnsignedInteger.MAX_VALUE.bigIntegerValue()) != 1;
+        boolean fitsInUnsignedInt = Long.compareUnsigned(value, 0xffffffffL) <= 0;
         // maybe unsigned int, or maybe unsigned long
         if (fitsInUnsignedInt) {
-          yield Constant.ofUnsignedInt(valueAsString);
+          yield Constant.ofUnsignedInt((int) value);
         }
-        yield Constant.ofUnsignedLong(valueAsString);
+        yield Constant.ofUnsignedLong(value);
       }
 
       case MINUS, TWIDDLE, BANG -> {
@@ -487,17 +597,27 @@ public class Parser {
     };
   }
 
+  /** Parses the digits of the current numeric literal in place, as an unsigned long. */
+  private long parseUnsignedLong() {
+    try {
+      return Long.parseUnsignedLong(tokens.source(), tokens.start(pos), tokens.end(pos), 10);
+    } catch (NumberFormatException e) {
+      error("Constant is too large to represent as an int or long: %s", tokens.token(pos).value());
+      return 0;
+    }
+  }
+
   private Exp parseVarOrFnCall() {
-    String variableName = token.value();
+    String variableName = tokens.name(pos);
     advance();
-    if (token.type() != TokenType.OPAREN) {
+    if (peek() != TokenType.OPAREN) {
       return new Var(variableName);
     }
 
     // function call
     expect(TokenType.OPAREN);
     List<Exp> args = new ArrayList<>();
-    while (token.type() != TokenType.CPAREN && token.type() != TokenType.EOF) {
+    while (peek() != TokenType.CPAREN && peek() != TokenType.EOF) {
       if (args.size() > 0) {
         expect(TokenType.COMMA);
       }
@@ -512,10 +632,10 @@ public class Parser {
   }
 
   private void expect(TokenType tt) {
-    if (token.type() == tt) {
+    if (peek() == tt) {
       advance();
       return;
     }
-    error("Expected `%s`, saw `%s`", tt.toString(), token.type().toString());
+    error("Expected `%s`, saw `%s`", tt.toString(), peek().toString());
   }
 }
@@ -1,8 +1,6 @@
 package com.plasstech.lang.c.typecheck;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 import com.plasstech.lang.c.common.UniqueId;
@@ -43,12 +41,11 @@ import com.plasstech.lang.c.parser.While;
  * 8, p 175, Chapter 10, 227-229
  */
 class Resolver implements Validator {
-  private record ScopedIdentifier(String variable, boolean fromCurrentScope, boolean hasLinkage) {
-  }
+  private record ScopedIdentifier(String variable, boolean hasLinkage) {}
 
   @Override
   public Program validate(Program input) {
-    Map<String, ScopedIdentifier> identifierMap = new HashMap<>();
+    ScopedMap<ScopedIdentifier> identifierMap = new ScopedMap<>();
     List<Declaration> declarations =
         input.declarations().stream().map(d -> switch (d) {
           case FunDecl fd -> resolveFunDecl(fd, identifierMap);
@@ -59,10 +56,10 @@ class Resolver implements Validator {
   }
 
   // Page 176
-  private Declaration resolveFunDecl(FunDecl decl, Map<String, ScopedIdentifier> identifierMap) {
+  private Declaration resolveFunDecl(FunDecl decl, ScopedMap<ScopedIdentifier> identifierMap) {
     ScopedIdentifier scopedIdentifier = identifierMap.get(decl.name());
     if (scopedIdentifier != null) {
-      if (scopedIdentifier.fromCurrentScope() && !scopedIdentifier.hasLinkage()) {
+      if (identifierMap.inCurrentScope(decl.name()) && !scopedIdentifier.hasLinkage()) {
         error("Duplicate declaration of function '%s' ", decl.name());
       }
     }
@@ -71,42 +68,41 @@ class Resolver implements Validator {
     if (decl.hasStorageClass(StorageClass.EXTERN) && decl.body().isPresent()) {
       error("Cannot define extern function '%s'", decl.name());
     }
-    identifierMap.put(decl.name(), new ScopedIdentifier(decl.name(), true, true));
-    Map<String, ScopedIdentifier> innerMap = copy(identifierMap);
+    identifierMap.put(decl.name(), new ScopedIdentifier(decl.name(), true));
+    // The parameters and the body are in the same scope.
+    identifierMap.enterScope();
     List<String> newParams =
-        decl.paramNames().stream().map(param -> resolveParam(param, innerMap)).toList();
-    Optional<Block> newBlock = decl.body().map(oldBlock -> resolveBlock(oldBlock, innerMap));
+        decl.paramNames().stream().map(param -> resolveParam(param, identifierMap)).toList();
+    Optional<Block> newBlock = decl.body().map(oldBlock -> resolveBlock(oldBlock, identifierMap));
+    identifierMap.exitScope();
     return new FunDecl(decl.name(), decl.funType(), newParams, newBlock, decl.storageClass());
   }
 
   // Page 228
   private Declaration resolveFileScopeVarDecl(VarDecl vd,
-      Map<String, ScopedIdentifier> identifierMap) {
+      ScopedMap<ScopedIdentifier> identifierMap) {
     // File-level variables have linkage (? but what about storageclass?)
-    identifierMap.put(vd.name(),
-        new ScopedIdentifier(vd.name(), /* fromCurrentScope= */true, /* hasLinkage= */true));
+    identifierMap.put(vd.name(), new ScopedIdentifier(vd.name(), /* hasLinkage= */true));
     return vd;
   }
 
-  private String resolveParam(String name, Map<String, ScopedIdentifier> identifierMap) {
-    ScopedIdentifier variable = identifierMap.get(name);
-    if (variable != null && variable.fromCurrentScope()) {
+  private String resolveParam(String name, ScopedMap<ScopedIdentifier> identifierMap) {
+    if (identifierMap.inCurrentScope(name)) {
       error("Duplicate parameter '%s'", name);
     }
     String newName = UniqueId.makeUnique("resolved_param_" + name);
     // Locals don't have linkage
-    identifierMap.put(name,
-        new ScopedIdentifier(newName, /* fromCurrentScope= */true, /* hasLinkage= */false));
+    identifierMap.put(name, new ScopedIdentifier(newName, /* hasLinkage= */false));
     return newName;
   }
 
-  private Block resolveBlock(Block block, Map<String, ScopedIdentifier> identifierMap) {
+  private Block resolveBlock(Block block, ScopedMap<ScopedIdentifier> identifierMap) {
     List<BlockItem> resolvedItems =
         block.items().stream().map(item -> resolveBlockItem(item, identifierMap)).toList();
     return new Block(resolvedItems);
   }
 
-  private BlockItem resolveBlockItem(BlockItem item, Map<String, ScopedIdentifier> identifierMap) {
+  private BlockItem resolveBlockItem(BlockItem item, ScopedMap<ScopedIdentifier> identifierMap) {
     return switch (item) {
       case VarDecl d -> resolveLocalVarDecl(d, identifierMap);
       case FunDecl d -> {
@@ -122,13 +118,13 @@ class Resolver implements Validator {
   }
 
   private Statement resolveStatement(Statement statement,
-      Map<String, ScopedIdentifier> identifierMap) {
+      ScopedMap<ScopedIdentifier> identifierMap) {
     return switch (statement) {
       case Expression e -> new Expression(resolveExp(e.exp(), identifierMap));
       case Return r -> new Return(resolveExp(r.exp(), identifierMap));
       case If i -> resolveIf(i, identifierMap);
       case NullStatement n -> n;
-      case Compound c -> new Compound(resolveBlock(c.block(), copy(identifierMap)));
+      case Compound c -> resolveCompound(c, identifierMap);
       case For f -> resolveFor(f, identifierMap);
       case While w -> resolveWhile(w, identifierMap);
       case DoWhile dw -> resolveDoWhile(dw, identifierMap);
@@ -138,72 +134,71 @@ class Resolver implements Validator {
     };
   }
 
-  private DoWhile resolveDoWhile(DoWhile dw, Map<String, ScopedIdentifier> identifierMap) {
+  private Compound resolveCompound(Compound c, ScopedMap<ScopedIdentifier> identifierMap) {
+    // Page 139
+    identifierMap.enterScope();
+    Block block = resolveBlock(c.block(), identifierMap);
+    identifierMap.exitScope();
+    return new Compound(block);
+  }
+
+  private DoWhile resolveDoWhile(DoWhile dw, ScopedMap<ScopedIdentifier> identifierMap) {
     // Do we need to create a new scope?!
     return new DoWhile(resolveStatement(dw.body(), identifierMap),
         resolveExp(dw.condition(), identifierMap));
   }
 
-  private While resolveWhile(While w, Map<String, ScopedIdentifier> identifierMap) {
+  private While resolveWhile(While w, ScopedMap<ScopedIdentifier> identifierMap) {
     return new While(resolveExp(w.condition(), identifierMap),
         resolveStatement(w.body(), identifierMap));
   }
 
-  private For resolveFor(For f, Map<String, ScopedIdentifier> identifierMap) {
-    Map<String, ScopedIdentifier> newMap = copy(identifierMap);
-    return new For(
-        resolveForInit(f.init(), newMap),
-        f.condition().map(c -> resolveExp(c, newMap)),
-        f.post().map(p -> resolveExp(p, newMap)),
-        resolveStatement(f.body(), newMap));
+  private For resolveFor(For f, ScopedMap<ScopedIdentifier> identifierMap) {
+    identifierMap.enterScope();
+    For resolved = new For(
+        resolveForInit(f.init(), identifierMap),
+        f.condition().map(c -> resolveExp(c, identifierMap)),
+        f.post().map(p -> resolveExp(p, identifierMap)),
+        resolveStatement(f.body(), identifierMap));
+    identifierMap.exitScope();
+    return resolved;
   }
 
-  private ForInit resolveForInit(ForInit init, Map<String, ScopedIdentifier> newMap) {
+  private ForInit resolveForInit(ForInit init, ScopedMap<ScopedIdentifier> identifierMap) {
     return switch (init) {
-      case InitDecl id -> new InitDecl(resolveLocalVarDecl(id.decl(), newMap));
-      case InitExp ie -> new InitExp(ie.exp().map(e -> resolveExp(e, newMap)));
+      case InitDecl id -> new InitDecl(resolveLocalVarDecl(id.decl(), identifierMap));
+      case InitExp ie -> new InitExp(ie.exp().map(e -> resolveExp(e, identifierMap)));
       default -> throw new IllegalArgumentException("Unexpected value: " + init);
     };
   }
 
-  private static Map<String, ScopedIdentifier> copy(Map<String, ScopedIdentifier> identifierMap) {
-    // Copy variable map with the from current block flag set to false. Page 139
-    Map<String, ScopedIdentifier> copy = new HashMap<>();
-    for (Map.Entry<String, ScopedIdentifier> entry : identifierMap.entrySet()) {
-      ScopedIdentifier oldSi = entry.getValue();
-      copy.put(entry.getKey(),
-          new ScopedIdentifier(oldSi.variable, false, oldSi.hasLinkage));
-    }
-    return copy;
-  }
-
-  private Statement resolveIf(If i, Map<String, ScopedIdentifier> identifierMap) {
+  private Statement resolveIf(If i, ScopedMap<ScopedIdentifier> identifierMap) {
     Exp cond = resolveExp(i.condition(), identifierMap);
     Statement then = resolveStatement(i.then(), identifierMap);
     Optional<Statement> elseStmt = i.elseStmt().map(stmt -> resolveStatement(stmt, identifierMap));
     return new If(cond, then, elseStmt);
   }
 
-  private VarDecl resolveLocalVarDecl(VarDecl decl, Map<String, ScopedIdentifier> identifierMap) {
+  private VarDecl resolveLocalVarDecl(VarDecl decl, ScopedMap<ScopedIdentifier> identifierMap) {
     String name = decl.name();
     ScopedIdentifier prevEntry = identifierMap.get(name);
     if (prevEntry != null) {
-      if (prevEntry.fromCurrentScope()) {
+      if (identifierMap.inCurrentScope(name)) {
         if (!(prevEntry.hasLinkage() && decl.hasStorageClass(StorageClass.EXTERN)))
           error("Duplicate variable definition '%s'", decl.name());
       }
     }
     if (decl.hasStorageClass(StorageClass.EXTERN)) {
-      identifierMap.put(decl.name(), new ScopedIdentifier(decl.name(), true, true));
+      identifierMap.put(decl.name(), new ScopedIdentifier(decl.name(), true));
       return decl;
     }
     String unique = UniqueId.makeUnique("resolved_var_" + name);
-    identifierMap.put(name, new ScopedIdentifier(unique, true, false));
+    identifierMap.put(name, new ScopedIdentifier(unique, false));
     Optional<Exp> init = decl.init().map(exp -> resolveExp(exp, identifierMap));
     return new VarDecl(unique, decl.type(), init, decl.storageClass());
   }
 
-  private Exp resolveExp(Exp e, Map<String, ScopedIdentifier> identifierMap) {
+  private Exp resolveExp(Exp e, ScopedMap<ScopedIdentifier> identifierMap) {
     // Java 21 FTW
     return switch (e) {
       case Assignment a -> resolveAssignment(a, identifierMap);
@@ -224,7 +219,7 @@ class Resolver implements Validator {
   }
 
   // Page 175
-  private Exp resolveFunctionCall(FunctionCall fc, Map<String, ScopedIdentifier> identifierMap) {
+  private Exp resolveFunctionCall(FunctionCall fc, ScopedMap<ScopedIdentifier> identifierMap) {
     ScopedIdentifier mapped = identifierMap.get(fc.identifier());
     if (mapped != null) {
       // It's in the map
@@ -238,7 +233,7 @@ class Resolver implements Validator {
     return null;
   }
 
-  private Exp resolveAssignment(Assignment a, Map<String, ScopedIdentifier> identifierMap) {
+  private Exp resolveAssignment(Assignment a, ScopedMap<ScopedIdentifier> identifierMap) {
     if (!(a.lvalue() instanceof Var)) {
       error("lvalues can only be variables; saw: %s", a.lvalue());
     }
@@ -246,7 +241,7 @@ class Resolver implements Validator {
         resolveExp(a.rvalue(), identifierMap));
   }
 
-  private Exp resolveVar(Var v, Map<String, ScopedIdentifier> identifierMap) {
+  private Exp resolveVar(Var v, ScopedMap<ScopedIdentifier> identifierMap) {
     ScopedIdentifier mapped = identifierMap.get(v.identifier());
     if (mapped != null) {
       return new Var(mapped.variable());
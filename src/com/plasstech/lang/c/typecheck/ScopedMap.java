@@ -0,0 +1,62 @@
+package com.plasstech.lang.c.typecheck;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map from names to values, with nested scopes: a value put in an inner scope shadows the
+ * outer one until the inner scope is exited.
+ * <p>
+ * There is one map for all the scopes, plus an undo log of what each put replaced. Entering a
+ * scope just marks the log, and exiting it undoes the puts since the mark, so neither depends on
+ * how many names are visible. Puts at the outermost scope are never undone, so they aren't logged.
+ */
+class ScopedMap<V> {
+  private record Entry<V>(V value, int depth) {}
+
+  /** What a put replaced: the previous entry for the name, or null if there wasn't one. */
+  private record Undo<V>(String name, Entry<V> previous) {}
+
+  private final Map<String, Entry<V>> entries = new HashMap<>();
+  private final Deque<Undo<V>> undoLog = new ArrayDeque<>();
+  // The size of the undo log when each enclosing scope was entered.
+  private final Deque<Integer> marks = new ArrayDeque<>();
+
+  void enterScope() {
+    marks.push(undoLog.size());
+  }
+
+  void exitScope() {
+    int mark = marks.pop();
+    while (undoLog.size() > mark) {
+      Undo<V> undo = undoLog.pop();
+      if (undo.previous() == null) {
+        entries.remove(undo.name());
+      } else {
+        entries.put(undo.name(), undo.previous());
+      }
+    }
+  }
+
+  /** Returns the innermost value for the name, or null if it isn't in any enclosing scope. */
+  V get(String name) {
+    Entry<V> entry = entries.get(name);
+    return entry == null ? null : entry.value();
+  }
+
+  /** Returns if the name was put in the current scope, rather than an enclosing one. */
+  boolean inCurrentScope(String name) {
+    Entry<V> entry = entries.get(name);
+    return entry != null && entry.depth() == marks.size();
+  }
+
+  /** Puts the value in the current scope. */
+  void put(String name, V value) {
+    Entry<V> previous = entries.put(name, new Entry<>(value, marks.size()));
+    if (!marks.isEmpty()) {
+      undoLog.push(new Undo<>(name, previous));
+    }
+  }
+}
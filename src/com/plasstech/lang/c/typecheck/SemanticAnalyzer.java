@@ -1,22 +1,28 @@
 package com.plasstech.lang.c.typecheck;
 
+import com.plasstech.lang.c.common.PhaseTimer;
 import com.plasstech.lang.c.parser.Program;
 
 public class SemanticAnalyzer implements Validator {
   private final SymbolTable symbols;
+  private final PhaseTimer timer;
 
   public SemanticAnalyzer(SymbolTable symbols) {
+    this(symbols, PhaseTimer.NONE);
+  }
+
+  public SemanticAnalyzer(SymbolTable symbols, PhaseTimer timer) {
     this.symbols = symbols;
+    this.timer = timer;
   }
 
   @Override
   public Program validate(Program program) {
     Validator resolver = new Resolver();
-    program = resolver.validate(program);
+    Program resolved = timer.time("resolve", () -> resolver.validate(program));
     Validator loopLabeler = new LoopLabeler();
-    program = loopLabeler.validate(program);
+    Program labeled = timer.time("loop-label", () -> loopLabeler.validate(resolved));
     Validator typeChecker = new TypeChecker(symbols);
-    program = typeChecker.validate(program);
-    return program;
+    return timer.time("type-check", () -> typeChecker.validate(labeled));
   }
 }
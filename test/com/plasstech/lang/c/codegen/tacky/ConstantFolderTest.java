@@ -0,0 +1,196 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.typecheck.InitialValue;
+import com.plasstech.lang.c.typecheck.StaticAttr;
+import com.plasstech.lang.c.typecheck.Symbol;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+import com.plasstech.lang.c.typecheck.Type;
+
+public class ConstantFolderTest {
+  private static final TackyVar INT_DST = new TackyVar("dst", Type.INT);
+  private static final TackyVar LONG_DST = new TackyVar("dst", Type.LONG);
+  private static final TackyVar UINT_DST = new TackyVar("dst", Type.UNSIGNED_INT);
+  private static final TackyVar ULONG_DST = new TackyVar("dst", Type.UNSIGNED_LONG);
+
+  private static List<TackyInstruction> fold(TackyInstruction... instructions) {
+    TackyFunction fn =
+        new TackyFunction("f", true, ImmutableList.of(), ImmutableList.copyOf(instructions));
+    return new ConstantFolder(new SymbolTable()).fold(fn).body();
+  }
+
+  private static TackyConstant intConst(long val) {
+    return new TackyConstant(Type.INT, val);
+  }
+
+  private static TackyConstant longConst(long val) {
+    return new TackyConstant(Type.LONG, val);
+  }
+
+  private static TackyInstruction binary(TackyVar dst, TackyVal left, TokenType op,
+      TackyVal right) {
+    return new TackyBinary(dst, left, op, right);
+  }
+
+  @Test
+  public void arithmetic() {
+    assertThat(fold(binary(INT_DST, intConst(3), TokenType.STAR, intConst(4))))
+        .containsExactly(new TackyCopy(intConst(12), INT_DST));
+    assertThat(fold(binary(INT_DST, intConst(3), TokenType.MINUS, intConst(4))))
+        .containsExactly(new TackyCopy(intConst(-1), INT_DST));
+    assertThat(fold(binary(INT_DST, intConst(-7), TokenType.SLASH, intConst(2))))
+        .containsExactly(new TackyCopy(intConst(-3), INT_DST));
+    assertThat(fold(binary(INT_DST, intConst(-7), TokenType.PERCENT, intConst(2))))
+        .containsExactly(new TackyCopy(intConst(-1), INT_DST));
+  }
+
+  @Test
+  public void intWrapsAround() {
+    assertThat(
+        fold(binary(INT_DST, intConst(Integer.MAX_VALUE), TokenType.PLUS, intConst(1))))
+        .containsExactly(new TackyCopy(intConst(Integer.MIN_VALUE), INT_DST));
+    assertThat(fold(binary(INT_DST, intConst(65536), TokenType.STAR, intConst(65536))))
+        .containsExactly(new TackyCopy(intConst(0), INT_DST));
+  }
+
+  @Test
+  public void longDoesNotWrapAt32Bits() {
+    assertThat(fold(binary(LONG_DST, longConst(65536), TokenType.STAR, longConst(65536))))
+        .containsExactly(new TackyCopy(longConst(1L << 32), LONG_DST));
+    assertThat(
+        fold(binary(LONG_DST, longConst(Long.MAX_VALUE), TokenType.PLUS, longConst(1))))
+        .containsExactly(new TackyCopy(longConst(Long.MIN_VALUE), LONG_DST));
+  }
+
+  @Test
+  public void unsigned() {
+    TackyConstant uintMax = new TackyConstant(Type.UNSIGNED_INT, 0xffffffffL);
+    TackyConstant two = new TackyConstant(Type.UNSIGNED_INT, 2);
+    assertThat(fold(binary(UINT_DST, uintMax, TokenType.SLASH, two))).containsExactly(
+        new TackyCopy(new TackyConstant(Type.UNSIGNED_INT, 0x7fffffffL), UINT_DST));
+    assertThat(fold(binary(UINT_DST, uintMax, TokenType.PLUS, two)))
+        .containsExactly(new TackyCopy(new TackyConstant(Type.UNSIGNED_INT, 1), UINT_DST));
+    // -1 as an unsigned int is greater than 2.
+    assertThat(fold(binary(INT_DST, new TackyConstant(Type.UNSIGNED_INT, -1), TokenType.GT, two)))
+        .containsExactly(new TackyCopy(intConst(1), INT_DST));
+
+    TackyConstant ulongMax = new TackyConstant(Type.UNSIGNED_LONG, -1);
+    TackyConstant ten = new TackyConstant(Type.UNSIGNED_LONG, 10);
+    assertThat(fold(binary(ULONG_DST, ulongMax, TokenType.PERCENT, ten)))
+        .containsExactly(new TackyCopy(new TackyConstant(Type.UNSIGNED_LONG, 5), ULONG_DST));
+    assertThat(fold(binary(INT_DST, ulongMax, TokenType.LT, ten)))
+        .containsExactly(new TackyCopy(intConst(0), INT_DST));
+  }
+
+  @Test
+  public void comparisonsAreInts() {
+    assertThat(fold(binary(INT_DST, longConst(1L << 40), TokenType.GT, longConst(3))))
+        .containsExactly(new TackyCopy(intConst(1), INT_DST));
+    assertThat(fold(binary(INT_DST, intConst(3), TokenType.EQEQ, intConst(4))))
+        .containsExactly(new TackyCopy(intConst(0), INT_DST));
+    assertThat(fold(binary(INT_DST, intConst(-3), TokenType.LEQ, intConst(-3))))
+        .containsExactly(new TackyCopy(intConst(1), INT_DST));
+  }
+
+  @Test
+  public void undefinedDivisionIsLeftAlone() {
+    TackyInstruction byZero = binary(INT_DST, intConst(3), TokenType.SLASH, intConst(0));
+    assertThat(fold(byZero)).containsExactly(byZero);
+    TackyInstruction overflow =
+        binary(INT_DST, intConst(Integer.MIN_VALUE), TokenType.SLASH, intConst(-1));
+    assertThat(fold(overflow)).containsExactly(overflow);
+    TackyInstruction longOverflow =
+        binary(LONG_DST, longConst(Long.MIN_VALUE), TokenType.PERCENT, longConst(-1));
+    assertThat(fold(longOverflow)).containsExactly(longOverflow);
+  }
+
+  @Test
+  public void variablesAreLeftAlone() {
+    TackyInstruction instruction =
+        binary(INT_DST, new TackyVar("x", Type.INT), TokenType.PLUS, intConst(0));
+    assertThat(fold(instruction)).containsExactly(instruction);
+  }
+
+  @Test
+  public void unary() {
+    assertThat(fold(new TackyUnary(INT_DST, TokenType.MINUS, intConst(Integer.MIN_VALUE))))
+        .containsExactly(new TackyCopy(intConst(Integer.MIN_VALUE), INT_DST));
+    assertThat(fold(new TackyUnary(INT_DST, TokenType.TWIDDLE, intConst(0))))
+        .containsExactly(new TackyCopy(intConst(-1), INT_DST));
+    assertThat(fold(new TackyUnary(INT_DST, TokenType.BANG, longConst(1L << 32))))
+        .containsExactly(new TackyCopy(intConst(0), INT_DST));
+    assertThat(fold(new TackyUnary(LONG_DST, TokenType.MINUS, longConst(5))))
+        .containsExactly(new TackyCopy(longConst(-5), LONG_DST));
+  }
+
+  @Test
+  public void conversions() {
+    assertThat(fold(new TackySignExtend(intConst(-2), LONG_DST)))
+        .containsExactly(new TackyCopy(longConst(-2), LONG_DST));
+    assertThat(fold(new TackyTruncate(longConst(0x1_8000_0001L), INT_DST)))
+        .containsExactly(new TackyCopy(intConst(Integer.MIN_VALUE + 1), INT_DST));
+  }
+
+  @Test
+  public void jumps() {
+    assertThat(fold(new TackyJumpZero(intConst(0), "a"))).containsExactly(new TackyJump("a"));
+    assertThat(fold(new TackyJumpZero(intConst(2), "a"))).isEmpty();
+    assertThat(fold(new TackyJumpNotZero(longConst(1L << 32), "a")))
+        .containsExactly(new TackyJump("a"));
+    assertThat(fold(new TackyJumpNotZero(intConst(0), "a"))).isEmpty();
+    TackyInstruction jump = new TackyJumpZero(new TackyVar("x", Type.INT), "a");
+    assertThat(fold(jump)).containsExactly(jump);
+  }
+
+  @Test
+  public void variablesSetOnceToConstants() {
+    TackyVar x = new TackyVar("x", Type.INT);
+    TackyVar y = new TackyVar("y", Type.INT);
+    assertThat(fold(
+        new TackyCopy(intConst(3), x),
+        new TackyLabel("a"),
+        binary(y, x, TokenType.STAR, intConst(2)),
+        new TackyJumpZero(y, "a"),
+        new TackyReturn(y)))
+        .containsExactly(
+            new TackyCopy(intConst(3), x),
+            new TackyLabel("a"),
+            new TackyCopy(intConst(6), y),
+            new TackyReturn(y))
+        .inOrder();
+  }
+
+  @Test
+  public void variablesSetTwiceAreLeftAlone() {
+    TackyVar x = new TackyVar("x", Type.INT);
+    TackyInstruction add = binary(INT_DST, x, TokenType.PLUS, intConst(1));
+    TackyInstruction negate = new TackyUnary(x, TokenType.MINUS, INT_DST);
+    assertThat(fold(new TackyCopy(intConst(3), x), add, negate))
+        .containsExactly(new TackyCopy(intConst(3), x), add, negate)
+        .inOrder();
+  }
+
+  @Test
+  public void parametersAndStaticsAreLeftAlone() {
+    SymbolTable symbolTable = new SymbolTable();
+    symbolTable.put("g",
+        new Symbol("g", Type.INT, new StaticAttr(InitialValue.TENTATIVE, true)));
+    TackyVar g = new TackyVar("g", Type.INT);
+    TackyVar p = new TackyVar("p", Type.INT);
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(intConst(3), g),
+        new TackyCopy(intConst(4), p),
+        new TackyFunCall("h", ImmutableList.of(), INT_DST),
+        binary(INT_DST, g, TokenType.PLUS, p),
+        new TackyReturn(INT_DST));
+    TackyFunction fn = new TackyFunction("f", true, ImmutableList.of("p"), body);
+    assertThat(new ConstantFolder(symbolTable).fold(fn).body()).isEqualTo(body);
+  }
+}
@@ -0,0 +1,142 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+import com.plasstech.lang.c.typecheck.Type;
+
+public class ControlFlowGraphTest {
+  private static final TackyVar X = new TackyVar("x", Type.INT);
+  private static final TackyConstant ONE = new TackyConstant(Type.INT, 1);
+
+  private static List<TackyInstruction> generate(String input) {
+    SymbolTable symbolTable = new SymbolTable();
+    Program program =
+        new SemanticAnalyzer(symbolTable).validate(new Parser(new Scanner(input)).parse());
+    TackyProgram tp = new TackyCodeGen(symbolTable).generate(program);
+    return ((TackyFunction) tp.topLevelDefinitions().get(0)).body();
+  }
+
+  @Test
+  public void empty() {
+    ControlFlowGraph graph = ControlFlowGraph.build(ImmutableList.of());
+    assertThat(graph.blockCount()).isEqualTo(0);
+    assertThat(graph.successors(graph.entry())).asList().containsExactly(graph.exit());
+    assertThat(graph.flatten()).isEmpty();
+  }
+
+  @Test
+  public void straightLine() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(ONE, X),
+        new TackyBinary(X, X, TokenType.PLUS, ONE),
+        new TackyReturn(X));
+    ControlFlowGraph graph = ControlFlowGraph.build(body);
+    assertThat(graph.blockCount()).isEqualTo(1);
+    assertThat(graph.successors(graph.entry())).asList().containsExactly(0);
+    assertThat(graph.successors(0)).asList().containsExactly(graph.exit());
+    assertThat(graph.predecessors(graph.exit())).asList().containsExactly(0);
+    assertThat(graph.flatten()).isEqualTo(body);
+  }
+
+  @Test
+  public void ifElse() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyJumpZero(X, "else"), // 0
+        new TackyCopy(ONE, X), // 1
+        new TackyJump("end"),
+        new TackyLabel("else"), // 2
+        new TackyCopy(ONE, X),
+        new TackyLabel("end"), // 3
+        new TackyReturn(X));
+    ControlFlowGraph graph = ControlFlowGraph.build(body);
+    assertThat(graph.blockCount()).isEqualTo(4);
+    assertThat(graph.successors(0)).asList().containsExactly(1, 2);
+    assertThat(graph.successors(1)).asList().containsExactly(3);
+    // Falls through to the next label.
+    assertThat(graph.successors(2)).asList().containsExactly(3);
+    assertThat(graph.predecessors(3)).asList().containsExactly(1, 2);
+    assertThat(graph.successors(3)).asList().containsExactly(graph.exit());
+    assertThat(graph.flatten()).isEqualTo(body);
+  }
+
+  @Test
+  public void jumpToNextLabelIsOneEdge() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyJumpNotZero(X, "next"),
+        new TackyLabel("next"),
+        new TackyReturn(X));
+    ControlFlowGraph graph = ControlFlowGraph.build(body);
+    assertThat(graph.successors(0)).asList().containsExactly(1);
+    assertThat(graph.predecessors(1)).asList().containsExactly(0);
+  }
+
+  @Test
+  public void codeAfterReturnHasNoPredecessors() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyReturn(X),
+        new TackyReturn(ONE));
+    ControlFlowGraph graph = ControlFlowGraph.build(body);
+    assertThat(graph.blockCount()).isEqualTo(2);
+    assertThat(graph.predecessors(1)).isEmpty();
+    assertThat(graph.predecessors(graph.exit())).asList().containsExactly(0, 1);
+  }
+
+  @Test
+  public void remove() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyReturn(X),
+        new TackyLabel("dead"),
+        new TackyJump("dead"));
+    ControlFlowGraph graph = ControlFlowGraph.build(body);
+    assertThat(graph.successors(1)).asList().containsExactly(1);
+    graph.remove(1);
+    assertThat(graph.isRemoved(1)).isTrue();
+    assertThat(graph.successors(1)).isEmpty();
+    assertThat(graph.predecessors(1)).isEmpty();
+    assertThat(graph.flatten()).containsExactly(new TackyReturn(X));
+  }
+
+  @Test
+  public void loops() {
+    List<TackyInstruction> body = generate("""
+        int main(void) {
+          int sum = 0;
+          for (int i = 0; i < 10; i = i + 1) {
+            if (i == 5) continue;
+            while (sum > 100) {
+              sum = sum - 1;
+              if (sum == 50) break;
+            }
+            sum = sum + i;
+          }
+          return sum;
+        }
+        """);
+    ControlFlowGraph graph = ControlFlowGraph.build(body);
+    assertThat(graph.flatten()).isEqualTo(body);
+    for (int node = 0; node < graph.blockCount() + 2; ++node) {
+      for (int successor : graph.successors(node)) {
+        assertThat(graph.predecessors(successor)).asList().contains(node);
+      }
+    }
+    // Every block, except the implicit "return 0" after the return, can be reached.
+    int unreachable = 0;
+    for (int b = 0; b < graph.blockCount(); ++b) {
+      if (graph.predecessors(b).length == 0) {
+        unreachable++;
+      }
+    }
+    assertThat(unreachable).isEqualTo(1);
+  }
+}
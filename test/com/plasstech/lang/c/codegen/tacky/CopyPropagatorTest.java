@@ -0,0 +1,155 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.typecheck.InitialValue;
+import com.plasstech.lang.c.typecheck.StaticAttr;
+import com.plasstech.lang.c.typecheck.Symbol;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+import com.plasstech.lang.c.typecheck.Type;
+
+public class CopyPropagatorTest {
+  private static final TackyVar X = new TackyVar("x", Type.INT);
+  private static final TackyVar Y = new TackyVar("y", Type.INT);
+  private static final TackyVar Z = new TackyVar("z", Type.INT);
+  private static final TackyVar G = new TackyVar("g", Type.INT);
+  private static final TackyVar L = new TackyVar("l", Type.LONG);
+  private static final TackyConstant ONE = new TackyConstant(Type.INT, 1);
+  private static final TackyConstant TWO = new TackyConstant(Type.INT, 2);
+
+  private final SymbolTable symbolTable = new SymbolTable();
+
+  private List<TackyInstruction> propagate(TackyInstruction... instructions) {
+    TackyFunction fn =
+        new TackyFunction("f", true, ImmutableList.of(), ImmutableList.copyOf(instructions));
+    return new CopyPropagator(symbolTable).propagate(fn).body();
+  }
+
+  @Test
+  public void constantIntoBinary() {
+    assertThat(propagate(
+        new TackyCopy(TWO, X),
+        new TackyBinary(Y, X, TokenType.PLUS, ONE),
+        new TackyReturn(Y)))
+        .containsExactly(
+            new TackyCopy(TWO, X),
+            new TackyBinary(Y, TWO, TokenType.PLUS, ONE),
+            new TackyReturn(Y))
+        .inOrder();
+  }
+
+  @Test
+  public void variableIntoReturn() {
+    assertThat(propagate(
+        new TackyCopy(Y, X),
+        new TackyReturn(X)))
+        .containsExactly(new TackyCopy(Y, X), new TackyReturn(Y))
+        .inOrder();
+  }
+
+  @Test
+  public void killedBySourceWrite() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(Y, X),
+        new TackyUnary(Y, TokenType.MINUS, Z),
+        new TackyReturn(X));
+    assertThat(propagate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void killedByDestinationWrite() {
+    assertThat(propagate(
+        new TackyCopy(ONE, X),
+        new TackyCopy(TWO, X),
+        new TackyReturn(X)))
+        .containsExactly(new TackyCopy(ONE, X), new TackyCopy(TWO, X), new TackyReturn(TWO))
+        .inOrder();
+  }
+
+  @Test
+  public void staticKilledByCall() {
+    symbolTable.put("g",
+        new Symbol("g", Type.INT, new StaticAttr(InitialValue.TENTATIVE, true)));
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(G, X),
+        new TackyFunCall("h", ImmutableList.of(), Y),
+        new TackyReturn(X));
+    assertThat(propagate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void localSurvivesCall() {
+    assertThat(propagate(
+        new TackyCopy(Y, X),
+        new TackyFunCall("h", ImmutableList.of(X), Z),
+        new TackyReturn(X)))
+        .containsExactly(
+            new TackyCopy(Y, X),
+            new TackyFunCall("h", ImmutableList.of(Y), Z),
+            new TackyReturn(Y))
+        .inOrder();
+  }
+
+  @Test
+  public void differentCopiesOnEachBranch() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyJumpZero(Z, "else"),
+        new TackyCopy(ONE, X),
+        new TackyJump("end"),
+        new TackyLabel("else"),
+        new TackyCopy(TWO, X),
+        new TackyLabel("end"),
+        new TackyReturn(X));
+    assertThat(propagate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void sameCopyOnEachBranch() {
+    assertThat(propagate(
+        new TackyJumpZero(Z, "else"),
+        new TackyCopy(ONE, X),
+        new TackyJump("end"),
+        new TackyLabel("else"),
+        new TackyCopy(ONE, X),
+        new TackyLabel("end"),
+        new TackyReturn(X)).getLast())
+        .isEqualTo(new TackyReturn(ONE));
+  }
+
+  @Test
+  public void killedInLoop() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(ONE, X),
+        new TackyLabel("top"),
+        new TackyBinary(Y, X, TokenType.PLUS, ONE),
+        new TackyBinary(X, X, TokenType.PLUS, ONE),
+        new TackyJumpNotZero(Y, "top"),
+        new TackyReturn(X));
+    assertThat(propagate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void redundantCopiesAreRemoved() {
+    assertThat(propagate(
+        new TackyCopy(Y, X),
+        new TackyCopy(Y, X),
+        new TackyCopy(X, Y),
+        new TackyReturn(X)))
+        .containsExactly(new TackyCopy(Y, X), new TackyReturn(Y))
+        .inOrder();
+  }
+
+  @Test
+  public void differentTypesAreNotPropagated() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(X, L),
+        new TackyReturn(L));
+    assertThat(propagate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+}
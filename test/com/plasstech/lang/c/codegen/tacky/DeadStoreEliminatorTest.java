@@ -0,0 +1,119 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.typecheck.InitialValue;
+import com.plasstech.lang.c.typecheck.StaticAttr;
+import com.plasstech.lang.c.typecheck.Symbol;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+import com.plasstech.lang.c.typecheck.Type;
+
+public class DeadStoreEliminatorTest {
+  private static final TackyVar X = new TackyVar("x", Type.INT);
+  private static final TackyVar Y = new TackyVar("y", Type.INT);
+  private static final TackyVar G = new TackyVar("g", Type.INT);
+  private static final TackyConstant ONE = new TackyConstant(Type.INT, 1);
+  private static final TackyConstant TWO = new TackyConstant(Type.INT, 2);
+
+  private final SymbolTable symbolTable = new SymbolTable();
+
+  private List<TackyInstruction> eliminate(TackyInstruction... instructions) {
+    TackyFunction fn =
+        new TackyFunction("f", true, ImmutableList.of(), ImmutableList.copyOf(instructions));
+    return new DeadStoreEliminator(symbolTable).eliminate(fn).body();
+  }
+
+  @Test
+  public void unusedCopy() {
+    assertThat(eliminate(
+        new TackyCopy(ONE, X),
+        new TackyReturn(ONE)))
+        .containsExactly(new TackyReturn(ONE));
+  }
+
+  @Test
+  public void overwrittenBeforeRead() {
+    assertThat(eliminate(
+        new TackyCopy(ONE, X),
+        new TackyCopy(TWO, X),
+        new TackyReturn(X)))
+        .containsExactly(new TackyCopy(TWO, X), new TackyReturn(X))
+        .inOrder();
+  }
+
+  @Test
+  public void chainOfDeadStores() {
+    // y is only used to compute x, which isn't used.
+    assertThat(eliminate(
+        new TackyUnary(Y, TokenType.MINUS, ONE),
+        new TackyBinary(X, Y, TokenType.PLUS, ONE),
+        new TackyReturn(TWO)))
+        .containsExactly(new TackyReturn(TWO));
+  }
+
+  @Test
+  public void keepsCalls() {
+    assertThat(eliminate(
+        new TackyFunCall("h", ImmutableList.of(), X),
+        new TackyReturn(ONE)))
+        .containsExactly(new TackyFunCall("h", ImmutableList.of(), X), new TackyReturn(ONE))
+        .inOrder();
+  }
+
+  @Test
+  public void keepsStaticWrites() {
+    symbolTable.put("g",
+        new Symbol("g", Type.INT, new StaticAttr(InitialValue.TENTATIVE, true)));
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(ONE, G),
+        new TackyCopy(TWO, G),
+        new TackyReturn(ONE));
+    assertThat(eliminate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void liveOnOneBranch() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(ONE, X),
+        new TackyJumpZero(Y, "else"),
+        new TackyReturn(X),
+        new TackyLabel("else"),
+        new TackyReturn(TWO));
+    assertThat(eliminate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void liveAroundLoop() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(ONE, X),
+        new TackyLabel("top"),
+        new TackyBinary(X, X, TokenType.PLUS, ONE),
+        new TackyJumpNotZero(Y, "top"),
+        new TackyReturn(TWO));
+    // x is read in the loop, but only to compute x, which is never used after the loop.
+    // Liveness alone can't see that, so everything stays.
+    assertThat(eliminate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void deadInsideLoop() {
+    assertThat(eliminate(
+        new TackyLabel("top"),
+        new TackyCopy(ONE, X),
+        new TackyCopy(TWO, X),
+        new TackyJumpNotZero(X, "top"),
+        new TackyReturn(ONE)))
+        .containsExactly(
+            new TackyLabel("top"),
+            new TackyCopy(TWO, X),
+            new TackyJumpNotZero(X, "top"),
+            new TackyReturn(ONE))
+        .inOrder();
+  }
+}
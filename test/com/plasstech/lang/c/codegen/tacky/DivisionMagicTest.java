@@ -0,0 +1,160 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Runs the multiply-high sequences that use the magic numbers, the same way the generated code
+ * does, and checks them against Java's division.
+ */
+public class DivisionMagicTest {
+  private static final Random RANDOM = new Random(17);
+
+  @Test
+  public void signedBySeven() {
+    // From Hacker's Delight, table 10-1.
+    DivisionMagic.Signed magic = DivisionMagic.signed(32, 7);
+    assertThat(magic.multiplier()).isEqualTo(0x92492493L - (1L << 32));
+    assertThat(magic.addDividend()).isTrue();
+    assertThat(magic.shift()).isEqualTo(2);
+  }
+
+  @Test
+  public void signedByThree() {
+    DivisionMagic.Signed magic = DivisionMagic.signed(32, 3);
+    assertThat(magic.multiplier()).isEqualTo(0x55555556L);
+    assertThat(magic.addDividend()).isFalse();
+    assertThat(magic.shift()).isEqualTo(0);
+  }
+
+  @Test
+  public void unsignedBySeven() {
+    DivisionMagic.Unsigned magic = DivisionMagic.unsigned(32, 7);
+    assertThat(magic.multiplier()).isEqualTo(0x24924925L);
+    assertThat(magic.add()).isTrue();
+    assertThat(magic.shift()).isEqualTo(3);
+  }
+
+  @Test
+  public void signedInts() {
+    for (long divisor : divisors(32)) {
+      if (divisor < 3 || Long.bitCount(divisor) == 1 || divisor > Integer.MAX_VALUE) {
+        continue;
+      }
+      DivisionMagic.Signed magic = DivisionMagic.signed(32, divisor);
+      for (long dividend : dividends(32)) {
+        int n = (int) dividend;
+        long high = ((long) n * (int) magic.multiplier()) >> 32;
+        int q = (int) high;
+        if (magic.addDividend()) {
+          q += n;
+        }
+        q >>= magic.shift();
+        q += q >>> 31;
+        assertWithMessage("%s / %s", n, divisor).that(q).isEqualTo(n / (int) divisor);
+      }
+    }
+  }
+
+  @Test
+  public void signedLongs() {
+    for (long divisor : divisors(64)) {
+      if (divisor < 3 || Long.bitCount(divisor) == 1) {
+        continue;
+      }
+      DivisionMagic.Signed magic = DivisionMagic.signed(64, divisor);
+      for (long n : dividends(64)) {
+        long q = Math.multiplyHigh(n, magic.multiplier());
+        if (magic.addDividend()) {
+          q += n;
+        }
+        q >>= magic.shift();
+        q += q >>> 63;
+        assertWithMessage("%s / %s", n, divisor).that(q).isEqualTo(n / divisor);
+      }
+    }
+  }
+
+  @Test
+  public void unsignedInts() {
+    for (long divisor : divisors(32)) {
+      divisor &= 0xffffffffL;
+      if (divisor < 3 || Long.bitCount(divisor) == 1) {
+        continue;
+      }
+      DivisionMagic.Unsigned magic = DivisionMagic.unsigned(32, divisor);
+      for (long dividend : dividends(32)) {
+        long n = dividend & 0xffffffffL;
+        long t = (n * (magic.multiplier() & 0xffffffffL)) >>> 32;
+        long q;
+        if (magic.add()) {
+          q = (((n - t) >>> 1) + t) >>> (magic.shift() - 1);
+        } else {
+          q = t >>> magic.shift();
+        }
+        assertWithMessage("%s / %s", n, divisor).that(q).isEqualTo(n / divisor);
+      }
+    }
+  }
+
+  @Test
+  public void unsignedLongs() {
+    for (long divisor : divisors(64)) {
+      if (Long.compareUnsigned(divisor, 3) < 0 || Long.bitCount(divisor) == 1) {
+        continue;
+      }
+      DivisionMagic.Unsigned magic = DivisionMagic.unsigned(64, divisor);
+      for (long n : dividends(64)) {
+        long t = Math.unsignedMultiplyHigh(n, magic.multiplier());
+        long q;
+        if (magic.add()) {
+          q = (((n - t) >>> 1) + t) >>> (magic.shift() - 1);
+        } else {
+          q = t >>> magic.shift();
+        }
+        assertWithMessage("%s / %s", Long.toUnsignedString(n), Long.toUnsignedString(divisor))
+            .that(q).isEqualTo(Long.divideUnsigned(n, divisor));
+      }
+    }
+  }
+
+  /** Small divisors, divisors near powers of two, and random ones. */
+  private static List<Long> divisors(int bits) {
+    List<Long> divisors = new ArrayList<>();
+    for (long d = 3; d < 1000; ++d) {
+      divisors.add(d);
+    }
+    for (int k = 10; k < bits; ++k) {
+      divisors.add((1L << k) - 1);
+      divisors.add((1L << k) + 1);
+    }
+    for (int i = 0; i < 200; ++i) {
+      long d = RANDOM.nextLong();
+      divisors.add(bits == 32 ? (int) d : d);
+    }
+    return divisors;
+  }
+
+  /** Zero, the extremes, values near them, and random ones. */
+  private static List<Long> dividends(int bits) {
+    long min = bits == 32 ? Integer.MIN_VALUE : Long.MIN_VALUE;
+    long max = bits == 32 ? Integer.MAX_VALUE : Long.MAX_VALUE;
+    List<Long> dividends = new ArrayList<>();
+    for (long n = -100; n <= 100; ++n) {
+      dividends.add(n);
+      dividends.add(min + n + 100);
+      dividends.add(max - n - 100);
+    }
+    for (int i = 0; i < 200; ++i) {
+      long n = RANDOM.nextLong();
+      dividends.add(bits == 32 ? (int) n : n);
+    }
+    return dividends;
+  }
+}
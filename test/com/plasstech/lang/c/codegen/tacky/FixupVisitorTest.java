@@ -3,6 +3,8 @@ package com.plasstech.lang.c.codegen.tacky;
 import static com.google.common.truth.Truth.assertThat;
 import static com.plasstech.lang.c.codegen.RegisterOperand.R10;
 import static com.plasstech.lang.c.codegen.RegisterOperand.R11;
+import static com.plasstech.lang.c.codegen.RegisterOperand.RAX;
+import static com.plasstech.lang.c.codegen.RegisterOperand.RCX;
 
 import java.util.List;
 
@@ -10,12 +12,15 @@ import org.junit.Test;
 
 import com.plasstech.lang.c.codegen.AsmBinary;
 import com.plasstech.lang.c.codegen.AssemblyType;
+import com.plasstech.lang.c.codegen.Cmp;
 import com.plasstech.lang.c.codegen.Data;
 import com.plasstech.lang.c.codegen.Imm;
 import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.Lea;
 import com.plasstech.lang.c.codegen.Mov;
 import com.plasstech.lang.c.codegen.Movsx;
 import com.plasstech.lang.c.codegen.Push;
+import com.plasstech.lang.c.codegen.Xor;
 import com.plasstech.lang.c.lex.TokenType;
 
 public class FixupVisitorTest {
@@ -62,9 +67,12 @@ public class FixupVisitorTest {
 
   @Test
   public void addLongToReg() {
-    AsmBinary addBig = new AsmBinary(TokenType.PLUS, AssemblyType.Quadword, LONG_IMM_3, R10);
+    // There's no add of a 64-bit immediate, even to a register.
+    AsmBinary addBig = new AsmBinary(TokenType.PLUS, AssemblyType.Quadword, LONG_IMM_3, RAX);
     List<Instruction> instructions = fv.visit(addBig);
-    assertThat(instructions).containsExactly(addBig);
+    assertThat(instructions).containsExactly(
+        new Mov(AssemblyType.Quadword, LONG_IMM_3, R10),
+        new AsmBinary(TokenType.PLUS, AssemblyType.Quadword, R10, RAX));
   }
 
   @Test
@@ -98,4 +106,118 @@ public class FixupVisitorTest {
         new Mov(AssemblyType.Quadword, LONG_IMM_3, R10),
         new Push(R10));
   }
+
+  @Test
+  public void movZeroToRegisterIsXor() {
+    Mov op = new Mov(AssemblyType.Quadword, new Imm(0), RAX);
+    assertThat(fv.visit(op)).containsExactly(new Xor(AssemblyType.Longword, RAX, RAX));
+  }
+
+  @Test
+  public void movZeroToMemoryStaysMov() {
+    Mov op = new Mov(AssemblyType.Longword, new Imm(0), GLOBAL);
+    assertThat(fv.visit(op)).containsExactly(op);
+  }
+
+  @Test
+  public void cmpZeroWithRegisterIsTest() {
+    Cmp op = new Cmp(AssemblyType.Longword, new Imm(0), RAX);
+    assertThat(fv.visit(op))
+        .containsExactly(new com.plasstech.lang.c.codegen.Test(AssemblyType.Longword, RAX, RAX));
+  }
+
+  @Test
+  public void testMemoryIsCmpZero() {
+    var op = new com.plasstech.lang.c.codegen.Test(AssemblyType.Longword, GLOBAL, GLOBAL);
+    assertThat(fv.visit(op)).containsExactly(new Cmp(AssemblyType.Longword, new Imm(0), GLOBAL));
+  }
+
+  @Test
+  public void testImm() {
+    var op = new com.plasstech.lang.c.codegen.Test(AssemblyType.Longword, new Imm(1), new Imm(1));
+    assertThat(fv.visit(op)).containsExactly(
+        new Mov(AssemblyType.Longword, new Imm(1), R10),
+        new com.plasstech.lang.c.codegen.Test(AssemblyType.Longword, R10, R10));
+  }
+
+  @Test
+  public void leaRegisters() {
+    Lea op = new Lea(AssemblyType.Longword, RAX, RCX, 1, 0, R10);
+    assertThat(fv.visit(op)).containsExactly(op);
+  }
+
+  @Test
+  public void leaIntoBaseIsAdd() {
+    Lea op = new Lea(AssemblyType.Longword, RAX, RCX, 1, 0, RAX);
+    assertThat(fv.visit(op))
+        .containsExactly(new AsmBinary(TokenType.PLUS, AssemblyType.Longword, RCX, RAX));
+  }
+
+  @Test
+  public void leaIntoIndexIsAdd() {
+    Lea op = new Lea(AssemblyType.Longword, RAX, RCX, 1, 0, RCX);
+    assertThat(fv.visit(op))
+        .containsExactly(new AsmBinary(TokenType.PLUS, AssemblyType.Longword, RAX, RCX));
+  }
+
+  @Test
+  public void leaDisplacementIntoBaseIsAdd() {
+    Lea op = new Lea(AssemblyType.Quadword, RAX, null, 1, 7, RAX);
+    assertThat(fv.visit(op))
+        .containsExactly(new AsmBinary(TokenType.PLUS, AssemblyType.Quadword, new Imm(7), RAX));
+  }
+
+  @Test
+  public void leaIndexAndDisplacementIntoBaseStaysLea() {
+    Lea op = new Lea(AssemblyType.Longword, RAX, RCX, 1, 7, RAX);
+    assertThat(fv.visit(op)).containsExactly(op);
+  }
+
+  @Test
+  public void leaScaledIntoBaseStaysLea() {
+    Lea op = new Lea(AssemblyType.Longword, RAX, RAX, 4, 0, RAX);
+    assertThat(fv.visit(op)).containsExactly(op);
+  }
+
+  @Test
+  public void leaIntoMemory() {
+    Lea op = new Lea(AssemblyType.Longword, RAX, RCX, 1, 0, GLOBAL);
+    assertThat(fv.visit(op)).containsExactly(
+        new Lea(AssemblyType.Longword, RAX, RCX, 1, 0, R11),
+        new Mov(AssemblyType.Longword, R11, GLOBAL));
+  }
+
+  @Test
+  public void leaFromMemory() {
+    Lea op = new Lea(AssemblyType.Longword, GLOBAL, RCX, 1, 0, RAX);
+    assertThat(fv.visit(op)).containsExactly(
+        new Mov(AssemblyType.Longword, GLOBAL, RAX),
+        new AsmBinary(TokenType.PLUS, AssemblyType.Longword, RCX, RAX))
+        .inOrder();
+  }
+
+  @Test
+  public void leaFromMemoryIntoIndex() {
+    // The destination already has the index, so just add the base.
+    Lea op = new Lea(AssemblyType.Longword, GLOBAL, RCX, 1, 0, RCX);
+    assertThat(fv.visit(op))
+        .containsExactly(new AsmBinary(TokenType.PLUS, AssemblyType.Longword, GLOBAL, RCX));
+  }
+
+  @Test
+  public void leaDisplacementInMemory() {
+    Lea op = new Lea(AssemblyType.Quadword, GLOBAL, null, 1, 5, GLOBAL);
+    assertThat(fv.visit(op))
+        .containsExactly(new AsmBinary(TokenType.PLUS, AssemblyType.Quadword, new Imm(5), GLOBAL));
+  }
+
+  @Test
+  public void leaScaledInMemory() {
+    Lea op = new Lea(AssemblyType.Longword, GLOBAL, GLOBAL, 2, 0, GLOBAL);
+    assertThat(fv.visit(op)).containsExactly(
+        new Mov(AssemblyType.Longword, GLOBAL, R11),
+        new AsmBinary(TokenType.STAR, AssemblyType.Longword, new Imm(3), R11),
+        new Mov(AssemblyType.Longword, R11, GLOBAL))
+        .inOrder();
+  }
 }
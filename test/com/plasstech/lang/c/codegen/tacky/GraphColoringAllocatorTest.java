@@ -0,0 +1,129 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.plasstech.lang.c.codegen.AsmFunction;
+import com.plasstech.lang.c.codegen.AsmTopLevel;
+import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.Pop;
+import com.plasstech.lang.c.codegen.Push;
+import com.plasstech.lang.c.codegen.RegisterOperand;
+import com.plasstech.lang.c.common.PhaseTimer;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+
+public class GraphColoringAllocatorTest {
+  private List<Instruction> generate(String input, String function) {
+    Program program = new Parser(new Scanner(input)).parse();
+    SymbolTable symbolTable = new SymbolTable();
+    program = new SemanticAnalyzer(symbolTable).validate(program);
+    TackyProgram tp = new TackyCodeGen(symbolTable).generate(program);
+    AsmState asmState =
+        new TackyToAsmCodeGen(symbolTable, PhaseTimer.NONE, new GraphColoringAllocator())
+            .generate(tp);
+    for (AsmTopLevel topLevel : asmState.program().topLevelNodes()) {
+      if (topLevel instanceof AsmFunction fn && fn.name().equals(function)) {
+        return fn.instructions();
+      }
+    }
+    throw new AssertionError("No function " + function);
+  }
+
+  private static boolean usesStack(List<Instruction> instructions) {
+    return instructions.stream().anyMatch(i -> i.toString().contains("(%rbp)"));
+  }
+
+  @Test
+  public void noSpills() {
+    String input = """
+        int main(void) {
+          int a = 1;
+          int b = a * 2 + 3;
+          int c = b - a;
+          return a + b * c;
+        }
+        """;
+    List<Instruction> instructions = generate(input, "main");
+    assertThat(usesStack(instructions)).isFalse();
+    assertThat(instructions.stream().anyMatch(Push.class::isInstance)).isFalse();
+  }
+
+  @Test
+  public void movesAreCoalesced() {
+    String input = """
+        int main(void) {
+          int a = 1;
+          int b = a;
+          int c = b;
+          return c;
+        }
+        """;
+    List<Instruction> instructions = generate(input, "main");
+    // Everything ends up in RAX. (The last two are the implicit "return 0".)
+    assertThat(instructions.stream().map(Object::toString))
+        .containsExactly("movl $1, %eax", "ret", "xorl %eax, %eax", "ret")
+        .inOrder();
+  }
+
+  @Test
+  public void addZeroIsCoalesced() {
+    String input = """
+        int f(int a) {
+          int b = a + 0;
+          return 0 + b;
+        }
+        """;
+    List<Instruction> instructions = generate(input, "f");
+    // Adding 0 is a move, so a and b share EAX with the parameter's copy.
+    assertThat(instructions.stream().map(Object::toString))
+        .containsExactly("movl %edi, %eax", "ret", "xorl %eax, %eax", "ret")
+        .inOrder();
+  }
+
+  @Test
+  public void liveAcrossCallIsCalleeSaved() {
+    String input = """
+        int f(int x);
+        int main(void) {
+          int a = f(1);
+          int b = f(2);
+          return a + b;
+        }
+        """;
+    List<Instruction> instructions = generate(input, "main");
+    // a is live across the second call, so it's in a callee-saved register, which has to be
+    // saved and restored.
+    assertThat(instructions).contains(new Push(RegisterOperand.RBX));
+    assertThat(instructions).contains(new Pop(RegisterOperand.RBX));
+    int pop = instructions.indexOf(new Pop(RegisterOperand.RBX));
+    assertThat(instructions.get(pop + 1).toString()).isEqualTo("ret");
+    assertThat(usesStack(instructions)).isFalse();
+    // One register pushed: 8 more bytes keep the stack aligned.
+    assertThat(instructions.get(0).toString()).isEqualTo("subq $8, %RSP");
+  }
+
+  @Test
+  public void spillsWhenNeeded() {
+    String input = """
+        int f(void);
+        int main(void) {
+          int a = f(); int b = f(); int c = f(); int d = f(); int e = f(); int g = f();
+          int h = f(); int i = f();
+          return a + b + c + d + e + g + h + i + f();
+        }
+        """;
+    List<Instruction> instructions = generate(input, "main");
+    // Only 5 callee-saved registers, for 8 values that are live across calls.
+    assertThat(usesStack(instructions)).isTrue();
+    for (RegisterOperand register : RegisterOperand.CALLEE_SAVED) {
+      assertThat(instructions).contains(new Push(register));
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.lex.TokenType;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+import com.plasstech.lang.c.typecheck.Type;
+
+public class OptimizerTest {
+  private static final TackyVar X = new TackyVar("x", Type.INT);
+  private static final TackyVar Y = new TackyVar("y", Type.INT);
+  private static final TackyConstant ONE = new TackyConstant(Type.INT, 1);
+  private static final TackyConstant TWO = new TackyConstant(Type.INT, 2);
+  private static final Set<Optimization> ALL = EnumSet.allOf(Optimization.class);
+
+  private static List<TackyInstruction> optimize(Set<Optimization> optimizations,
+      TackyInstruction... instructions) {
+    TackyFunction fn =
+        new TackyFunction("f", true, ImmutableList.of(), ImmutableList.copyOf(instructions));
+    return new Optimizer(new SymbolTable(), optimizations).optimize(fn).body();
+  }
+
+  @Test
+  public void nothingEnabled() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyBinary(X, ONE, TokenType.PLUS, ONE),
+        new TackyReturn(X));
+    assertThat(optimize(EnumSet.noneOf(Optimization.class),
+        body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void onlyEnabledPassesRun() {
+    // Copy propagation and dead store elimination would both change this.
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyCopy(Y, X),
+        new TackyBinary(Y, X, TokenType.PLUS, ONE),
+        new TackyCopy(TWO, X),
+        new TackyReturn(Y));
+    assertThat(optimize(EnumSet.of(Optimization.FOLD_CONSTANTS),
+        body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void iteratesToFixedPoint() {
+    // Copy propagation makes a constant to fold, which makes another copy to propagate, which
+    // makes both copies dead.
+    assertThat(optimize(ALL,
+        new TackyCopy(ONE, X),
+        new TackyBinary(Y, X, TokenType.PLUS, ONE),
+        new TackyReturn(Y)))
+        .containsExactly(new TackyReturn(TWO));
+  }
+
+  @Test
+  public void foldedBranchBecomesUnreachable() {
+    assertThat(optimize(ALL,
+        new TackyCopy(ONE, X),
+        new TackyJumpZero(X, "else"),
+        new TackyReturn(ONE),
+        new TackyLabel("else"),
+        new TackyReturn(TWO)))
+        .containsExactly(new TackyReturn(ONE));
+  }
+
+  @Test
+  public void wholeProgram() {
+    String input = """
+        static int counter = 3;
+        int twice(int a) {
+          int b = a;
+          return b + b;
+        }
+        int main(void) {
+          int x = 2;
+          int y = x * 3;
+          if (y > 5) {
+            counter = y;
+          }
+          return twice(counter);
+        }
+        """;
+    SymbolTable symbolTable = new SymbolTable();
+    Program program =
+        new SemanticAnalyzer(symbolTable).validate(new Parser(new Scanner(input)).parse());
+    TackyProgram tp = new TackyCodeGen(symbolTable).generate(program);
+    TackyProgram optimized = new Optimizer(symbolTable, ALL).optimize(tp);
+
+    assertThat(optimized.topLevelDefinitions()).hasSize(tp.topLevelDefinitions().size());
+    for (int i = 0; i < tp.topLevelDefinitions().size(); ++i) {
+      TackyTopLevel before = tp.topLevelDefinitions().get(i);
+      TackyTopLevel after = optimized.topLevelDefinitions().get(i);
+      assertThat(after.getClass()).isEqualTo(before.getClass());
+      if (before instanceof TackyStaticVariable) {
+        assertThat(after).isEqualTo(before);
+      }
+    }
+    TackyFunction main = optimized.topLevelDefinitions().stream()
+        .filter(TackyFunction.class::isInstance)
+        .map(TackyFunction.class::cast)
+        .filter(fn -> fn.identifier().equals("main"))
+        .findFirst()
+        .orElseThrow();
+    // y is 6, so the branch is always taken: all that's left is the store to the static and the
+    // call.
+    assertThat(main.body()).contains(new TackyCopy(new TackyConstant(Type.INT, 6),
+        new TackyVar("counter", Type.INT)));
+    assertThat(main.body().stream().filter(TackyJumpZero.class::isInstance).count())
+        .isEqualTo(0);
+  }
+}
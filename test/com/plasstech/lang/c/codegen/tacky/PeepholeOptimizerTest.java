@@ -0,0 +1,118 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.plasstech.lang.c.codegen.RegisterOperand.R10;
+import static com.plasstech.lang.c.codegen.RegisterOperand.RAX;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.codegen.AsmBinary;
+import com.plasstech.lang.c.codegen.AssemblyType;
+import com.plasstech.lang.c.codegen.Cmp;
+import com.plasstech.lang.c.codegen.CondCode;
+import com.plasstech.lang.c.codegen.Imm;
+import com.plasstech.lang.c.codegen.Instruction;
+import com.plasstech.lang.c.codegen.Jmp;
+import com.plasstech.lang.c.codegen.JmpCC;
+import com.plasstech.lang.c.codegen.Label;
+import com.plasstech.lang.c.codegen.Mov;
+import com.plasstech.lang.c.codegen.Ret;
+import com.plasstech.lang.c.codegen.Stack;
+import com.plasstech.lang.c.lex.TokenType;
+
+public class PeepholeOptimizerTest {
+  private static final AssemblyType L = AssemblyType.Longword;
+  private static final Stack SLOT = new Stack(-8);
+
+  private final PeepholeOptimizer peephole = new PeepholeOptimizer();
+
+  private List<Instruction> optimize(Instruction... instructions) {
+    return peephole.optimize(ImmutableList.copyOf(instructions));
+  }
+
+  @Test
+  public void selfMove() {
+    assertThat(optimize(new Mov(L, RAX, RAX), new Ret())).containsExactly(new Ret());
+    assertThat(peephole.removed()).containsEntry("self-move", 1);
+  }
+
+  @Test
+  public void storeThenLoad() {
+    assertThat(optimize(new Mov(L, R10, SLOT), new Mov(L, SLOT, R10)))
+        .containsExactly(new Mov(L, R10, SLOT));
+    assertThat(peephole.removed()).containsEntry("redundant-move", 1);
+  }
+
+  @Test
+  public void loadThenStore() {
+    assertThat(optimize(new Mov(L, SLOT, R10), new Mov(L, R10, SLOT)))
+        .containsExactly(new Mov(L, SLOT, R10));
+  }
+
+  @Test
+  public void repeatedMove() {
+    assertThat(optimize(new Mov(L, SLOT, R10), new Mov(L, SLOT, R10)))
+        .containsExactly(new Mov(L, SLOT, R10));
+  }
+
+  @Test
+  public void differentSizesAreKept() {
+    List<Instruction> instructions = ImmutableList.of(
+        new Mov(L, R10, SLOT),
+        new Mov(AssemblyType.Quadword, SLOT, R10));
+    assertThat(optimize(instructions.toArray(Instruction[]::new))).isEqualTo(instructions);
+  }
+
+  @Test
+  public void identityArithmetic() {
+    List<Instruction> kept = ImmutableList.of(
+        new AsmBinary(TokenType.PLUS, L, new Imm(1), RAX),
+        new AsmBinary(TokenType.STAR, L, new Imm(0), RAX));
+    assertThat(optimize(
+        new AsmBinary(TokenType.PLUS, L, new Imm(0), RAX),
+        new AsmBinary(TokenType.MINUS, L, new Imm(0), SLOT),
+        new AsmBinary(TokenType.STAR, L, new Imm(1), RAX),
+        kept.get(0),
+        kept.get(1)))
+        .isEqualTo(kept);
+    assertThat(peephole.removed()).containsEntry("identity-arithmetic", 3);
+  }
+
+  @Test
+  public void jumpToNext() {
+    assertThat(optimize(
+        new Cmp(L, new Imm(0), RAX),
+        new JmpCC(CondCode.E, "a"),
+        new Label("a"),
+        new Jmp("b"),
+        new Label("b")))
+        .containsExactly(new Cmp(L, new Imm(0), RAX), new Label("a"), new Label("b"))
+        .inOrder();
+    assertThat(peephole.removed()).containsEntry("jump-to-next", 2);
+  }
+
+  @Test
+  public void jumpOverLabelIsKept() {
+    List<Instruction> instructions = ImmutableList.of(
+        new Jmp("b"),
+        new Label("a"),
+        new Label("b"));
+    assertThat(optimize(instructions.toArray(Instruction[]::new))).isEqualTo(instructions);
+  }
+
+  @Test
+  public void rewritesCascade() {
+    // Removing the self-move puts the jump right before its label.
+    assertThat(optimize(
+        new Mov(L, RAX, R10),
+        new Jmp("a"),
+        new Mov(L, RAX, RAX),
+        new Label("a"),
+        new Mov(L, R10, RAX)))
+        .containsExactly(new Mov(L, RAX, R10), new Label("a"), new Mov(L, R10, RAX))
+        .inOrder();
+  }
+}
@@ -341,4 +341,57 @@ public class TackyCodeGenTest {
     cg.generate(prog);
     assertThat(beforeGenerationSymbols).isNotEqualTo(symtab.values());
   }
+
+  @Test
+  public void logicalConditionIsJumps() {
+    String input = """
+        int main(void) {
+          int a = 1;
+          int b = 2;
+          int c = 3;
+          if ((a && b) || !c) {
+            return 1;
+          }
+          return 2;
+        }
+        """;
+    List<TackyInstruction> instructions = getFirstTackyFunctionBody(generate(input));
+    // No 0/1 results: just copies of the variables' initial values, and jumps on the variables.
+    assertThat(instructions.stream().filter(TackyCopy.class::isInstance).count()).isEqualTo(3);
+    assertThat(instructions.stream().filter(TackyUnary.class::isInstance).count()).isEqualTo(0);
+    assertThat(instructions.stream()
+        .filter(i -> i instanceof TackyJumpZero || i instanceof TackyJumpNotZero)
+        .count()).isEqualTo(3);
+  }
+
+  @Test
+  public void logicalValueIsStillComputed() {
+    String input = "int main(void) { int a = 1; int b = 2; return a && b; }";
+    List<TackyInstruction> instructions = getFirstTackyFunctionBody(generate(input));
+    // The two variables, and the 0 and 1 results.
+    assertThat(instructions.stream().filter(TackyCopy.class::isInstance).count()).isEqualTo(4);
+  }
+
+  @Test
+  public void loopConditionIsJumps() {
+    String input = """
+        int main(void) {
+          int a = 1;
+          int b = 2;
+          while (a || b) {
+            a = 0;
+            b = 0;
+          }
+          return a;
+        }
+        """;
+    List<TackyInstruction> instructions = getFirstTackyFunctionBody(generate(input));
+    // Only the four assignments.
+    assertThat(instructions.stream().filter(TackyCopy.class::isInstance).count()).isEqualTo(4);
+    // If a is true, skip testing b; if b is false, leave the loop.
+    assertThat(instructions.stream().filter(TackyJumpNotZero.class::isInstance).count())
+        .isEqualTo(1);
+    assertThat(instructions.stream().filter(TackyJumpZero.class::isInstance).count())
+        .isEqualTo(1);
+  }
 }
@@ -109,6 +109,75 @@ public class TackyToAsmCodeGenTest {
     printAsm(generateAsm(program));
   }
 
+  @Test
+  public void divideByConstant() {
+    String input = "int main(void) { int x = 100; return x / 7 + x % 7; }";
+    List<String> asm = generateAsm(input);
+    assertThat(asm.stream().anyMatch(line -> line.contains("idiv"))).isFalse();
+    assertThat(asm).contains("  movl $-1840700269, %eax");
+    // The one-operand form.
+    assertThat(asm.stream().anyMatch(line -> line.startsWith("  imull") && !line.contains(",")))
+        .isTrue();
+  }
+
+  @Test
+  public void divideByPowerOfTwo() {
+    String input = "int main(void) { int x = -100; return x / 4; }";
+    List<String> asm = generateAsm(input);
+    assertThat(asm.stream().anyMatch(line -> line.contains("idiv"))).isFalse();
+    assertThat(asm).contains("  sarl $2, %eax");
+  }
+
+  @Test
+  public void divideByVariable() {
+    String input = "int main(void) { int x = 100; int y = 7; return x / y; }";
+    assertThat(generateAsm(input).stream().anyMatch(line -> line.contains("idivl"))).isTrue();
+  }
+
+  @Test
+  public void multiplyByPowerOfTwo() {
+    String input = "long main(void) { long x = 3; return 8l * x; }";
+    List<String> asm = generateAsm(input);
+    assertThat(asm.stream().anyMatch(line -> line.contains("imul"))).isFalse();
+    assertThat(asm.stream().anyMatch(line -> line.startsWith("  shlq $3, "))).isTrue();
+  }
+
+  @Test
+  public void comparisonIsFusedWithJump() {
+    String input = "int main(void) { int x = 3; if (x < 10) return 1; return 2; }";
+    List<String> asm = generateAsm(input);
+    assertThat(asm.stream().anyMatch(line -> line.contains("set"))).isFalse();
+    // Jumps to the else if x >= 10.
+    assertThat(asm.stream().anyMatch(line -> line.startsWith("  jge "))).isTrue();
+  }
+
+  @Test
+  public void unsignedComparisonIsFusedWithJump() {
+    String input = """
+        int main(void) {
+          unsigned int x = 3u;
+          while (x > 1u) x = x - 1u;
+          return 0;
+        }
+        """;
+    List<String> asm = generateAsm(input);
+    assertThat(asm.stream().anyMatch(line -> line.contains("set"))).isFalse();
+    assertThat(asm.stream().anyMatch(line -> line.startsWith("  jbe "))).isTrue();
+  }
+
+  @Test
+  public void unsignedComparison() {
+    String input = "int main(void) { unsigned long x = 3ul; return x < 10ul; }";
+    assertThat(generateAsm(input).stream().anyMatch(line -> line.startsWith("  setb "))).isTrue();
+  }
+
+  @Test
+  public void comparisonUsedTwiceIsNotFused() {
+    String input = "int main(void) { int x = 3; int b = x < 10; if (b) return b; return 2; }";
+    List<String> asm = generateAsm(input);
+    assertThat(asm.stream().anyMatch(line -> line.startsWith("  setl "))).isTrue();
+  }
+
   private static void printAsm(List<String> asm) {
     System.out.println(Joiner.on("\n").join(asm));
   }
@@ -0,0 +1,128 @@
+package com.plasstech.lang.c.codegen.tacky;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.Parser;
+import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.typecheck.SemanticAnalyzer;
+import com.plasstech.lang.c.typecheck.SymbolTable;
+import com.plasstech.lang.c.typecheck.Type;
+
+public class UnreachableCodeEliminatorTest {
+  private static final TackyVar X = new TackyVar("x", Type.INT);
+  private static final TackyConstant ONE = new TackyConstant(Type.INT, 1);
+  private static final TackyConstant TWO = new TackyConstant(Type.INT, 2);
+
+  private static List<TackyInstruction> eliminate(TackyInstruction... instructions) {
+    TackyFunction fn =
+        new TackyFunction("f", true, ImmutableList.of(), ImmutableList.copyOf(instructions));
+    return new UnreachableCodeEliminator().eliminate(fn).body();
+  }
+
+  @Test
+  public void codeAfterReturn() {
+    assertThat(eliminate(
+        new TackyReturn(X),
+        new TackyReturn(ONE)))
+        .containsExactly(new TackyReturn(X));
+  }
+
+  @Test
+  public void blockThatIsJumpedOver() {
+    assertThat(eliminate(
+        new TackyJump("end"),
+        new TackyLabel("skipped"),
+        new TackyCopy(ONE, X),
+        new TackyLabel("end"),
+        new TackyReturn(X)))
+        // The jump is now to the next block, and then the end label isn't needed.
+        .containsExactly(new TackyReturn(X));
+  }
+
+  @Test
+  public void jumpToNextLabel() {
+    assertThat(eliminate(
+        new TackyCopy(ONE, X),
+        new TackyJumpZero(X, "next"),
+        new TackyLabel("next"),
+        new TackyReturn(X)))
+        .containsExactly(new TackyCopy(ONE, X), new TackyReturn(X))
+        .inOrder();
+  }
+
+  @Test
+  public void keepsRealBranches() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyJumpZero(X, "else"),
+        new TackyCopy(ONE, X),
+        new TackyJump("end"),
+        new TackyLabel("else"),
+        new TackyCopy(TWO, X),
+        new TackyLabel("end"),
+        new TackyReturn(X));
+    assertThat(eliminate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void keepsLoops() {
+    List<TackyInstruction> body = ImmutableList.of(
+        new TackyLabel("top"),
+        new TackyCopy(ONE, X),
+        new TackyJumpNotZero(X, "top"),
+        new TackyReturn(X));
+    assertThat(eliminate(body.toArray(TackyInstruction[]::new))).isEqualTo(body);
+  }
+
+  @Test
+  public void unreachableLoop() {
+    assertThat(eliminate(
+        new TackyReturn(X),
+        new TackyLabel("top"),
+        new TackyCopy(ONE, X),
+        new TackyJump("top")))
+        .containsExactly(new TackyReturn(X));
+  }
+
+  @Test
+  public void foldedIf() {
+    // if (1) x = 1; else x = 2; return x;  after folding the condition.
+    assertThat(eliminate(
+        new TackyCopy(ONE, X),
+        new TackyJump("end"),
+        new TackyLabel("else"),
+        new TackyCopy(TWO, X),
+        new TackyLabel("end"),
+        new TackyReturn(X)))
+        .containsExactly(new TackyCopy(ONE, X), new TackyReturn(X))
+        .inOrder();
+  }
+
+  @Test
+  public void generatedCode() {
+    String input = """
+        int main(void) {
+          int x = 3;
+          if (x) {
+            return 1;
+          }
+          return 2;
+        }
+        """;
+    SymbolTable symbolTable = new SymbolTable();
+    Program program =
+        new SemanticAnalyzer(symbolTable).validate(new Parser(new Scanner(input)).parse());
+    TackyFunction fn =
+        (TackyFunction) new TackyCodeGen(symbolTable).generate(program).topLevelDefinitions()
+            .get(0);
+    List<TackyInstruction> body = new UnreachableCodeEliminator().eliminate(fn).body();
+    // The implicit "return 0" is gone.
+    assertThat(body.getLast()).isEqualTo(new TackyReturn(TWO));
+    assertThat(body.stream().filter(TackyReturn.class::isInstance).count()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,60 @@
+package com.plasstech.lang.c.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ByteCharSequenceTest {
+  private static ByteCharSequence of(String text) {
+    return new ByteCharSequence(ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1)));
+  }
+
+  @Test
+  public void chars() {
+    ByteCharSequence chars = of("int a;");
+    assertThat(chars.length()).isEqualTo(6);
+    assertThat(chars.charAt(0)).isEqualTo('i');
+    assertThat(chars.charAt(5)).isEqualTo(';');
+    assertThat(chars.toString()).isEqualTo("int a;");
+  }
+
+  @Test
+  public void highBytesArentNegative() {
+    // In a comment, say.
+    ByteCharSequence chars = of("caf\u00e9");
+    assertThat(chars.charAt(3)).isEqualTo('\u00e9');
+    assertThat(chars.toString()).isEqualTo("caf\u00e9");
+  }
+
+  @Test
+  public void subSequence() {
+    ByteCharSequence chars = of("int abc = 1;");
+    CharSequence name = chars.subSequence(4, 7);
+    assertThat(name.length()).isEqualTo(3);
+    assertThat(name.charAt(0)).isEqualTo('a');
+    assertThat(name.toString()).isEqualTo("abc");
+    assertThat(name.subSequence(1, 3).toString()).isEqualTo("bc");
+    assertThat(chars.subSequence(5, 5).toString()).isEmpty();
+  }
+
+  @Test
+  public void slice() {
+    // As SourceReader makes from a partly filled buffer.
+    ByteBuffer buffer = ByteBuffer.wrap("int a;xxxx".getBytes(StandardCharsets.ISO_8859_1), 0, 6);
+    ByteCharSequence chars = new ByteCharSequence(buffer.slice());
+    assertThat(chars.length()).isEqualTo(6);
+    assertThat(chars.toString()).isEqualTo("int a;");
+  }
+
+  @Test
+  public void empty() {
+    ByteCharSequence chars = of("");
+    assertThat(chars.length()).isEqualTo(0);
+    assertThat(chars.toString()).isEmpty();
+    assertThrows(IndexOutOfBoundsException.class, () -> chars.charAt(0));
+  }
+}
@@ -0,0 +1,55 @@
+package com.plasstech.lang.c.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class PhaseTimerTest {
+  private static final int MEGABYTE = 1 << 20;
+
+  private final PhaseTimer timer = new PhaseTimer();
+
+  /** Returns the bytes allocated by the given phase, from the report. */
+  private long allocated(String phase) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    timer.report(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+    for (String line : bytes.toString(StandardCharsets.UTF_8).split("\n")) {
+      String[] fields = line.trim().split(" +");
+      if (fields[0].equals(phase)) {
+        return Long.parseLong(fields[3]);
+      }
+    }
+    throw new AssertionError("No phase " + phase);
+  }
+
+  private static byte[] allocate() {
+    return new byte[16 * MEGABYTE];
+  }
+
+  @Test
+  public void countsWorkerThreads() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      byte[] result = timer.time("optimize", () -> CompletableFuture
+          .supplyAsync(() -> timer.timeWorker(PhaseTimerTest::allocate), executor).join());
+      assertThat(result).hasLength(16 * MEGABYTE);
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(allocated("optimize")).isAtLeast(16 * MEGABYTE);
+  }
+
+  @Test
+  public void workerOnPhaseThreadCountedOnce() {
+    timer.time("optimize", () -> timer.timeWorker(PhaseTimerTest::allocate));
+    assertThat(allocated("optimize")).isAtLeast(16 * MEGABYTE);
+    assertThat(allocated("optimize")).isLessThan(32 * MEGABYTE);
+  }
+}
@@ -0,0 +1,98 @@
+package com.plasstech.lang.c.driver;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchCompilerTest {
+  private static final String INPUT = """
+      int f(int a, int b) {
+        int c = a * b;
+        int d = c - a;
+        return c + d * b;
+      }
+      """;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Compiles INPUT the way Driver.main does for the given args, and returns the assembly. */
+  private String batch(String... args) throws IOException {
+    Path unit = folder.newFile("unit.i").toPath();
+    Files.writeString(unit, INPUT);
+    List<String> rest = new ArrayList<>();
+    CompileOptions options = CompileOptions.parse(List.of(args), rest);
+    assertThat(rest).containsExactly("--batch");
+    assertThat(new BatchCompiler(options).compileAll(List.of(unit.toString()))).isEqualTo(0);
+    return Files.readString(BatchCompiler.outputPath(unit));
+  }
+
+  private Path unit(String name, String text) throws IOException {
+    Path unit = folder.getRoot().toPath().resolve(name);
+    Files.writeString(unit, text);
+    return unit;
+  }
+
+  private static int compileAll(Path... units) {
+    return new BatchCompiler(CompileOptions.DEFAULT)
+        .compileAll(Arrays.stream(units).map(Path::toString).toList());
+  }
+
+  @Test
+  public void failedUnitLeavesNoOutput() throws IOException {
+    Path good = unit("good.i", "int main(void) { return 1; }");
+    Path bad = unit("bad.i", "int main(void) { return 1 }");
+    // From an earlier compile.
+    Files.writeString(BatchCompiler.outputPath(bad), "stale");
+    assertThat(compileAll(good, bad)).isNotEqualTo(0);
+    assertThat(Files.readString(BatchCompiler.outputPath(good))).contains("main:");
+    assertThat(Files.exists(BatchCompiler.outputPath(bad))).isFalse();
+    // Nothing but the units and the good output.
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      assertThat(files.map(path -> path.getFileName().toString()).toList())
+          .containsExactly("good.i", "bad.i", "good.s");
+    }
+  }
+
+  @Test
+  public void missingUnitLeavesNoOutput() throws IOException {
+    Path missing = folder.getRoot().toPath().resolve("missing.i");
+    assertThat(compileAll(missing)).isEqualTo(1);
+    assertThat(Files.exists(BatchCompiler.outputPath(missing))).isFalse();
+  }
+
+  @Test
+  public void errorInOneUnitDoesntStopTheOthers() throws IOException {
+    String nested = "(".repeat(200_000) + "1" + ")".repeat(200_000);
+    Path deep = unit("deep.i", "int main(void) { return " + nested + "; }");
+    Path good = unit("good.i", "int main(void) { return 1; }");
+    assertThat(compileAll(deep, good)).isEqualTo(1);
+    assertThat(Files.exists(BatchCompiler.outputPath(deep))).isFalse();
+    assertThat(Files.readString(BatchCompiler.outputPath(good))).contains("main:");
+  }
+
+  @Test
+  public void defaultUsesStack() throws IOException {
+    assertThat(batch("--batch")).contains("(%rbp)");
+  }
+
+  @Test
+  public void optimizedAllocatesRegisters() throws IOException {
+    assertThat(batch("--batch", "-O2")).doesNotContain("(%rbp)");
+  }
+
+  @Test
+  public void regallocFlag() throws IOException {
+    assertThat(batch("--regalloc=linear", "--batch")).doesNotContain("(%rbp)");
+  }
+}
@@ -0,0 +1,159 @@
+package com.plasstech.lang.c.driver;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompileServerTest {
+  private record Reply(int rv, String out, String err) {}
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path socket;
+  private Thread server;
+
+  @Before
+  public void startServer() throws Exception {
+    socket = folder.getRoot().toPath().resolve("cc.sock");
+    server = new Thread(() -> new CompileServer(socket).serve());
+    server.start();
+    // Wait for it to listen.
+    for (int i = 0; i < 100 && !Files.exists(socket); ++i) {
+      Thread.sleep(50);
+    }
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    send(CompileServer.SHUTDOWN + "\n");
+    server.join(10_000);
+    assertThat(server.isAlive()).isFalse();
+  }
+
+  /** Sends the request, the way CompileClient does, and returns the reply. */
+  private Reply send(String request) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socket));
+      OutputStream os = Channels.newOutputStream(channel);
+      os.write(request.getBytes(StandardCharsets.UTF_8));
+      os.flush();
+      channel.shutdownOutput();
+
+      DataInputStream is = new DataInputStream(Channels.newInputStream(channel));
+      StringBuilder line = new StringBuilder();
+      for (int c = is.read(); c != -1 && c != '\n'; c = is.read()) {
+        line.append((char) c);
+      }
+      int[] header = CompileClient.parseHeader(line.toString());
+      assertThat(header).isNotNull();
+      byte[] out = new byte[header[1]];
+      is.readFully(out);
+      byte[] err = new byte[header[2]];
+      is.readFully(err);
+      return new Reply(header[0], new String(out, StandardCharsets.UTF_8),
+          new String(err, StandardCharsets.UTF_8));
+    }
+  }
+
+  private Path source(String name, String text) throws IOException {
+    Path path = folder.getRoot().toPath().resolve(name);
+    Files.writeString(path, text);
+    return path;
+  }
+
+  @Test
+  public void compiles() throws IOException {
+    Path source = source("good.i", "int main(void) { return 2; }");
+    Reply reply = send("-S\n" + source + "\n-\n");
+    assertThat(reply.rv()).isEqualTo(0);
+    assertThat(reply.out()).contains("main:");
+    assertThat(reply.err()).isEmpty();
+  }
+
+  @Test
+  public void compilesToFile() throws IOException {
+    Path source = source("good.i", "int main(void) { return 2; }");
+    Path output = folder.getRoot().toPath().resolve("good.s");
+    Reply reply = send("-S -O2\n" + source + "\n" + output + "\n");
+    assertThat(reply.rv()).isEqualTo(0);
+    assertThat(reply.out()).isEmpty();
+    assertThat(Files.readString(output)).contains("main:");
+  }
+
+  @Test
+  public void malformedRequest() throws IOException {
+    Reply reply = send("-S\n");
+    assertThat(reply.rv()).isEqualTo(1);
+    assertThat(reply.err()).contains("Malformed request");
+  }
+
+  @Test
+  public void unknownOption() throws IOException {
+    Path source = source("good.i", "int main(void) { return 2; }");
+    Reply reply = send("-S -O9\n" + source + "\n-\n");
+    assertThat(reply.rv()).isEqualTo(1);
+    assertThat(reply.err()).contains("Unknown options: -O9");
+  }
+
+  @Test
+  public void compileError() throws IOException {
+    Path source = source("bad.i", "int main(void) { return 2 }");
+    Reply reply = send("-S\n" + source + "\n-\n");
+    assertThat(reply.rv()).isNotEqualTo(0);
+    assertThat(reply.err()).isNotEmpty();
+  }
+
+  @Test
+  public void missingSource() throws IOException {
+    Reply reply = send("-S\n" + folder.getRoot().toPath().resolve("missing.i") + "\n-\n");
+    assertThat(reply.rv()).isEqualTo(1);
+    assertThat(reply.err()).contains("Could not read");
+  }
+
+  @Test
+  public void unwritableOutput() throws IOException {
+    Path source = source("good.i", "int main(void) { return 2; }");
+    Path output = folder.getRoot().toPath().resolve("no/such/dir/good.s");
+    Reply reply = send("-S\n" + source + "\n" + output + "\n");
+    assertThat(reply.rv()).isEqualTo(1);
+    assertThat(reply.err()).contains("Could not write");
+  }
+
+  @Test
+  public void survivesStackOverflow() throws IOException {
+    String nested = "(".repeat(200_000) + "1" + ")".repeat(200_000);
+    Path deep = source("deep.i", "int main(void) { return " + nested + "; }");
+    Reply reply = send("-S\n" + deep + "\n-\n");
+    assertThat(reply.rv()).isEqualTo(1);
+    assertThat(reply.err()).contains("StackOverflowError");
+
+    // The server is still there.
+    Path source = source("good.i", "int main(void) { return 2; }");
+    assertThat(send("-S\n" + source + "\n-\n").rv()).isEqualTo(0);
+  }
+
+  @Test
+  public void parseHeader() {
+    assertThat(CompileClient.parseHeader("0 12 3")).asList().containsExactly(0, 12, 3).inOrder();
+    assertThat(CompileClient.parseHeader("")).isNull();
+    assertThat(CompileClient.parseHeader("1 2")).isNull();
+    assertThat(CompileClient.parseHeader("a b c")).isNull();
+    assertThat(CompileClient.parseHeader("0 -1 0")).isNull();
+  }
+}
@@ -0,0 +1,87 @@
+package com.plasstech.lang.c.driver;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceReaderTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** A big input, with a different line each time so that misplaced bytes show. */
+  private static String text(int lines) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lines; ++i) {
+      sb.append("int x").append(i).append(" = ").append(i).append(";\n");
+    }
+    return sb.toString();
+  }
+
+  /** Like a pipe: returns at most a few bytes from each read. */
+  private static InputStream trickle(String text) {
+    return new FilterInputStream(
+        new ByteArrayInputStream(text.getBytes(StandardCharsets.ISO_8859_1))) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return super.read(b, off, Math.min(len, 1000));
+      }
+    };
+  }
+
+  @Test
+  public void mappedFile() throws IOException {
+    String text = text(10_000);
+    Path path = folder.newFile("big.i").toPath();
+    Files.writeString(path, text, StandardCharsets.ISO_8859_1);
+    CharSequence source = SourceReader.read(path);
+    assertThat(source.length()).isEqualTo(text.length());
+    assertThat(source.toString()).isEqualTo(text);
+  }
+
+  @Test
+  public void emptyFile() throws IOException {
+    Path path = folder.newFile("empty.i").toPath();
+    CharSequence source = SourceReader.read(path);
+    assertThat(source.length()).isEqualTo(0);
+    assertThat(source.toString()).isEmpty();
+  }
+
+  @Test
+  public void stream() {
+    String text = "int main(void) { return 0; }\n";
+    assertThat(SourceReader.read(trickle(text)).toString()).isEqualTo(text);
+  }
+
+  @Test
+  public void streamGrowsBuffer() {
+    // Several times the initial buffer.
+    String text = text(20_000);
+    assertThat(text.length()).isGreaterThan(4 * 64 * 1024);
+    CharSequence source = SourceReader.read(trickle(text));
+    assertThat(source.length()).isEqualTo(text.length());
+    assertThat(source.toString()).isEqualTo(text);
+  }
+
+  @Test
+  public void streamExactlyFillsBuffer() {
+    String text = "x".repeat(64 * 1024);
+    assertThat(SourceReader.read(trickle(text)).toString()).isEqualTo(text);
+  }
+
+  @Test
+  public void emptyStream() {
+    CharSequence source = SourceReader.read(InputStream.nullInputStream());
+    assertThat(source.length()).isEqualTo(0);
+    assertThat(source.toString()).isEmpty();
+  }
+}
@@ -0,0 +1,61 @@
+package com.plasstech.lang.c.lex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class NameTableTest {
+  private NameTable table = new NameTable();
+
+  @Test
+  public void sameName() {
+    String text = "foo bar foo";
+    String first = table.intern(text, 0, 3);
+    assertThat(first).isEqualTo("foo");
+    assertThat(table.intern(text, 8, 11)).isSameInstanceAs(first);
+    assertThat(table.intern(text, 4, 7)).isEqualTo("bar");
+  }
+
+  @Test
+  public void prefix() {
+    String text = "food";
+    assertThat(table.intern(text, 0, 4)).isEqualTo("food");
+    assertThat(table.intern(text, 0, 3)).isEqualTo("foo");
+  }
+
+  @Test
+  public void sameHash() {
+    // "Aa" and "BB" have the same String hash code.
+    String text = "Aa BB";
+    assertThat(table.intern(text, 0, 2)).isEqualTo("Aa");
+    assertThat(table.intern(text, 3, 5)).isEqualTo("BB");
+    assertThat(table.intern(text, 0, 2)).isEqualTo("Aa");
+  }
+
+  @Test
+  public void grows() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      sb.append("name").append(i).append(' ');
+    }
+    String text = sb.toString();
+    List<String> names = new ArrayList<>();
+    int start = 0;
+    for (int end = text.indexOf(' '); end >= 0; end = text.indexOf(' ', start)) {
+      names.add(table.intern(text, start, end));
+      start = end + 1;
+    }
+    start = 0;
+    int i = 0;
+    for (int end = text.indexOf(' '); end >= 0; end = text.indexOf(' ', start)) {
+      String name = table.intern(text, start, end);
+      assertThat(name).isEqualTo("name" + i);
+      assertThat(name).isSameInstanceAs(names.get(i));
+      start = end + 1;
+      ++i;
+    }
+  }
+}
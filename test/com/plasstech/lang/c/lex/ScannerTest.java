@@ -93,6 +93,38 @@ public class ScannerTest {
     assertThat(s.nextToken().type()).isEqualTo(TokenType.EOF);
   }
 
+  @Test
+  public void nextTokenKeywordPrefixesAndSuffixes() {
+    Scanner s = new Scanner("in integer returns d do_ _int Int");
+    assertIdentifier(s.nextToken(), "in");
+    assertIdentifier(s.nextToken(), "integer");
+    assertIdentifier(s.nextToken(), "returns");
+    assertIdentifier(s.nextToken(), "d");
+    assertIdentifier(s.nextToken(), "do_");
+    assertIdentifier(s.nextToken(), "_int");
+    assertIdentifier(s.nextToken(), "Int");
+    assertThat(s.nextToken().type()).isEqualTo(TokenType.EOF);
+  }
+
+  @Test
+  public void nextTokenEveryKeywordAndSymbol() {
+    for (TokenType tt : TokenType.values()) {
+      String text;
+      if (tt.isKeyword) {
+        text = tt.text.toLowerCase();
+      } else if (tt.isSymbol() && !Character.isLetter(tt.text.charAt(0))) {
+        text = tt.text;
+      } else {
+        continue;
+      }
+      Scanner s = new Scanner(text);
+      Token t = s.nextToken();
+      assertThat(t.type()).isEqualTo(tt);
+      assertThat(t.value()).isEqualTo(text);
+      assertThat(s.nextToken().type()).isEqualTo(TokenType.EOF);
+    }
+  }
+
   @Test
   public void nextTokenIntConstant() {
     Scanner s = new Scanner("0 1 23");
@@ -240,4 +272,71 @@ public class ScannerTest {
     assertThrows(ScannerException.class, () -> new Scanner("\\").nextToken());
     assertThrows(ScannerException.class, () -> new Scanner("/*").nextToken());
   }
+
+  @Test
+  public void nameIsShared() {
+    Scanner s = new Scanner("abc + abc abd");
+    String first = s.name(s.nextToken());
+    s.nextToken();
+    String second = s.name(s.nextToken());
+    String third = s.name(s.nextToken());
+    assertThat(first).isEqualTo("abc");
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(third).isEqualTo("abd");
+  }
+
+  @Test
+  public void tokenLocation() {
+    Scanner s = new Scanner("  x1 >= 23L");
+    Token t = s.nextToken();
+    assertThat(t.start()).isEqualTo(2);
+    assertThat(t.end()).isEqualTo(4);
+    t = s.nextToken();
+    assertThat(t.start()).isEqualTo(5);
+    assertThat(t.end()).isEqualTo(7);
+    t = s.nextToken();
+    assertThat(t.value()).isEqualTo("23");
+    assertThat(t.varType()).isEqualTo(Type.LONG);
+  }
+
+  @Test
+  public void scanAll() {
+    TokenArray tokens = new Scanner(" x = 12u; // x\n return x;").scanAll();
+    assertThat(tokens.size()).isEqualTo(8);
+    assertThat(tokens.type(0)).isEqualTo(TokenType.IDENTIFIER);
+    assertThat(tokens.start(0)).isEqualTo(1);
+    assertThat(tokens.end(0)).isEqualTo(2);
+    assertThat(tokens.type(1)).isEqualTo(TokenType.EQ);
+    assertThat(tokens.type(2)).isEqualTo(TokenType.NUMERIC_LITERAL);
+    assertThat(tokens.token(2).value()).isEqualTo("12");
+    assertThat(tokens.varType(2)).isEqualTo(Type.UNSIGNED_INT);
+    assertThat(tokens.varType(3)).isEqualTo(Type.NO_TYPE);
+    assertThat(tokens.type(4)).isEqualTo(TokenType.RETURN);
+    assertThat(tokens.name(5)).isSameInstanceAs(tokens.name(0));
+    assertThat(tokens.type(7)).isEqualTo(TokenType.EOF);
+  }
+
+  @Test
+  public void scanAllEmpty() {
+    TokenArray tokens = new Scanner("/* nothing */").scanAll();
+    assertThat(tokens.size()).isEqualTo(1);
+    assertThat(tokens.type(0)).isEqualTo(TokenType.EOF);
+  }
+
+  @Test
+  public void scanAllGrows() {
+    TokenArray tokens = new Scanner("a+b+c+d+e+f+g+h+i+j+k+l+m+n+o+p+q+r+s+t+u+v+w+x+y+z").scanAll();
+    assertThat(tokens.size()).isEqualTo(52);
+    assertThat(tokens.name(50)).isEqualTo("z");
+  }
+
+  @Test
+  public void scanAllBadSymbol() {
+    assertThrows(ScannerException.class, () -> new Scanner("a = @;").scanAll());
+  }
+
+  private static void assertIdentifier(Token token, String name) {
+    assertThat(token.type()).isEqualTo(TokenType.IDENTIFIER);
+    assertThat(token.value()).isEqualTo(name);
+  }
 }
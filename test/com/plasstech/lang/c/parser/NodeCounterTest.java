@@ -0,0 +1,40 @@
+package com.plasstech.lang.c.parser;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import com.plasstech.lang.c.lex.Scanner;
+
+public class NodeCounterTest {
+  private static int count(String input) {
+    return NodeCounter.count(new Parser(new Scanner(input)).parse());
+  }
+
+  @Test
+  public void declaration() {
+    // Program, FunDecl (without a body)
+    assertThat(count("int main(void);")).isEqualTo(2);
+  }
+
+  @Test
+  public void returnConstant() {
+    // Program, FunDecl, Block, Return, Constant
+    assertThat(count("int main(void) { return 1; }")).isEqualTo(5);
+  }
+
+  @Test
+  public void loop() {
+    String input = """
+        int main(void) {
+          for (int i = 0; i < 3; i = i + 1) ;
+          return 0;
+        }
+        """;
+    // Program, FunDecl, Block,
+    // For, InitDecl, VarDecl, Constant, BinExp, Var, Constant,
+    // Assignment, Var, BinExp, Var, Constant, NullStatement,
+    // Return, Constant
+    assertThat(count(input)).isEqualTo(18);
+  }
+}
@@ -4,6 +4,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
@@ -19,6 +20,26 @@ public class ParserTest {
     return p.parse();
   }
 
+  /**
+   * Parses the parts of the unit in parallel or not, whatever the machine. In parallel, the parts
+   * are parsed by a pool of several threads, even on one processor.
+   */
+  private static Program parse(String input, boolean parallel) {
+    Parser parser = new Parser(new Scanner(input).scanAll(), parallel);
+    if (!parallel) {
+      return parser.parse();
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      // A parallel stream runs on the pool of the task that starts it.
+      return pool.submit(parser::parse).join();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static final boolean[] BOTH_MODES = {false, true};
+
   @Test
   public void chapter1Parser() {
     String input = "int main(void) { return 1; }";
@@ -1359,4 +1380,83 @@ public class ParserTest {
       assertThat(vd.init().get()).isEqualTo(Constant.ofUnsignedLong("9223372036854775813"));
     }
   }
+
+  @Test
+  public void constantTypes() {
+    List<String> constants = List.of("2147483647", "2147483648", "9223372036854775807l",
+        "4294967295u", "4294967296u", "18446744073709551615ul");
+    List<Constant<?>> expected = List.of(Constant.of(2147483647), Constant.of(2147483648L),
+        Constant.of(Long.MAX_VALUE), Constant.ofUnsignedInt("4294967295"),
+        Constant.ofUnsignedLong("4294967296"), Constant.ofUnsignedLong("18446744073709551615"));
+    for (int i = 0; i < constants.size(); ++i) {
+      Program prog = parse("long a = " + constants.get(i) + ";");
+      VarDecl vd = (VarDecl) prog.declarations().get(0);
+      assertThat(vd.init().get()).isEqualTo(expected.get(i));
+    }
+  }
+
+  @Test
+  public void constantTooBig() {
+    assertThrows(ParserException.class, () -> parse("long a = 9223372036854775808l;"));
+    assertThrows(ParserException.class, () -> parse("long a = 18446744073709551616ul;"));
+    assertThrows(ParserException.class, () -> parse("long a = 18446744073709551616;"));
+  }
+
+  @Test
+  public void topLevelDeclarationsInOrder() {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 100; ++i) {
+      input.append(String.format("""
+          int g%d = %d;
+          int f%d(int a) { if (a) { return g%d; } return 0; }
+          static long h%d(void);
+          """, i, i, i, i, i));
+    }
+    for (boolean parallel : BOTH_MODES) {
+      Program prog = parse(input.toString(), parallel);
+      assertThat(prog.declarations()).hasSize(300);
+      for (int i = 0; i < 100; ++i) {
+        assertThat(((VarDecl) prog.declarations().get(3 * i)).name()).isEqualTo("g" + i);
+        assertThat(((FunDecl) prog.declarations().get(3 * i + 1)).name()).isEqualTo("f" + i);
+        assertThat(((FunDecl) prog.declarations().get(3 * i + 2)).name()).isEqualTo("h" + i);
+      }
+    }
+  }
+
+  @Test
+  public void firstErrorIsReported() {
+    String input = """
+        int a = 1;
+        int f(void) { return 1 }
+        int b = ;
+        int g(void) { return; }
+        """;
+    for (boolean parallel : BOTH_MODES) {
+      ParserException e = assertThrows(ParserException.class, () -> parse(input, parallel));
+      assertThat(e.getMessage()).isEqualTo("Expected `;`, saw `}`");
+    }
+  }
+
+  @Test
+  public void extraClosingBrace() {
+    String input = """
+        int f(void) { return 1; } }
+        int a = 1;
+        """;
+    assertThrows(ParserException.class, () -> parse(input));
+  }
+
+  @Test
+  public void missingClosingBrace() {
+    String input = """
+        int f(void) { return 1;
+        int a = 1;
+        """;
+    assertThrows(ParserException.class, () -> parse(input));
+  }
+
+  @Test
+  public void strayTopLevelSemicolon() {
+    assertThrows(ParserException.class, () -> parse("int a; ; int b;"));
+  }
 }
@@ -3,11 +3,18 @@ package com.plasstech.lang.c.typecheck;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
+import java.util.List;
+
 import org.junit.Test;
 
 import com.plasstech.lang.c.lex.Scanner;
+import com.plasstech.lang.c.parser.BlockItem;
+import com.plasstech.lang.c.parser.FunDecl;
 import com.plasstech.lang.c.parser.Parser;
 import com.plasstech.lang.c.parser.Program;
+import com.plasstech.lang.c.parser.Return;
+import com.plasstech.lang.c.parser.Var;
+import com.plasstech.lang.c.parser.VarDecl;
 
 public class ResolverTest {
   private Validator validator = new Resolver();
@@ -176,6 +183,41 @@ public class ResolverTest {
     validate(input);
   }
 
+  @Test
+  public void shadowEndsWithBlock() {
+    String input = """
+        int main(void) {
+          int x = 1;
+          {
+            int x = 2;
+          }
+          return x;
+        }
+        """;
+    Program program = validate(input);
+    FunDecl main = (FunDecl) program.declarations().get(0);
+    List<BlockItem> items = main.body().get().items();
+    VarDecl outer = (VarDecl) items.get(0);
+    Return returnStatement = (Return) items.get(2);
+    assertThat(returnStatement.exp()).isEqualTo(new Var(outer.name()));
+  }
+
+  @Test
+  public void declareAfterBlockOk() {
+    String input = """
+        int main(void) {
+          {
+            int x = 2;
+          }
+          for (int y = 0; y < 1; y = y + 1) {}
+          int x = 1;
+          int y = 3;
+          return x + y;
+        }
+        """;
+    validate(input);
+  }
+
   @Test
   public void shadowedBlockError() {
     String input = """
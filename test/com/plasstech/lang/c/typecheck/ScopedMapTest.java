@@ -0,0 +1,70 @@
+package com.plasstech.lang.c.typecheck;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class ScopedMapTest {
+  private ScopedMap<String> map = new ScopedMap<>();
+
+  @Test
+  public void missing() {
+    assertThat(map.get("a")).isNull();
+    assertThat(map.inCurrentScope("a")).isFalse();
+  }
+
+  @Test
+  public void outerScope() {
+    map.put("a", "outer");
+    map.enterScope();
+    assertThat(map.get("a")).isEqualTo("outer");
+    assertThat(map.inCurrentScope("a")).isFalse();
+  }
+
+  @Test
+  public void shadowed() {
+    map.put("a", "outer");
+    map.enterScope();
+    map.put("a", "inner");
+    assertThat(map.get("a")).isEqualTo("inner");
+    assertThat(map.inCurrentScope("a")).isTrue();
+    map.exitScope();
+    assertThat(map.get("a")).isEqualTo("outer");
+    assertThat(map.inCurrentScope("a")).isTrue();
+  }
+
+  @Test
+  public void exitRemovesNewNames() {
+    map.enterScope();
+    map.put("a", "inner");
+    map.exitScope();
+    assertThat(map.get("a")).isNull();
+  }
+
+  @Test
+  public void redeclaredInScope() {
+    map.put("a", "outer");
+    map.enterScope();
+    map.put("a", "first");
+    map.put("a", "second");
+    assertThat(map.get("a")).isEqualTo("second");
+    map.exitScope();
+    assertThat(map.get("a")).isEqualTo("outer");
+  }
+
+  @Test
+  public void nested() {
+    map.put("a", "0");
+    map.enterScope();
+    map.put("b", "1");
+    map.enterScope();
+    map.put("a", "2");
+    assertThat(map.get("b")).isEqualTo("1");
+    assertThat(map.inCurrentScope("b")).isFalse();
+    map.exitScope();
+    assertThat(map.get("a")).isEqualTo("0");
+    assertThat(map.inCurrentScope("b")).isTrue();
+    map.exitScope();
+    assertThat(map.get("b")).isNull();
+  }
+}